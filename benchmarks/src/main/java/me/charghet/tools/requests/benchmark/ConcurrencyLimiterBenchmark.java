@@ -0,0 +1,46 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.ConcurrencyLimiter;
+import me.charghet.tools.requests.RequestException;
+
+/**
+ * ConcurrencyLimiter 申请和归还许可的基准测试。
+ * <p> 8个线程竞争同一个主机的许可，上限足够大，不会排队，测量的是每个请求在限流器上的额外开销。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(8)
+@State(Scope.Benchmark)
+public class ConcurrencyLimiterBenchmark {
+    private ConcurrencyLimiter limiter;
+    @Setup
+    public void setup() {
+        limiter = new ConcurrencyLimiter(64, 256);
+    }
+    @Benchmark
+    public ConcurrencyLimiter.Permit acquireRelease() throws RequestException {
+        ConcurrencyLimiter.Permit permit = limiter.acquire("127.0.0.1");
+        permit.release(true);
+        return permit;
+    }
+}
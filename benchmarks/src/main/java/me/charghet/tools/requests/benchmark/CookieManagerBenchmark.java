@@ -0,0 +1,57 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.CookieManager;
+
+/**
+ * CookieManager 在不同cookie数量下添加和拼接cookie的基准测试。
+ * <p> 添加的cookie与已有的cookie同名，cookie数量保持不变，测量的是查找并替换的开销。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class CookieManagerBenchmark {
+    /**
+     * CookieManager中的cookie数量。
+     */
+    @Param({"1", "16", "128"})
+    public int jarSize;
+    private CookieManager cookieManager;
+    private String last;
+    @Setup
+    public void setup() {
+        cookieManager = new CookieManager();
+        for(int i = 0;i < jarSize;i++) {
+            cookieManager.add("cookie" + i, "value" + i);
+        }
+        last = "cookie" + (jarSize - 1);
+    }
+    @Benchmark
+    public CookieManager add() {
+        cookieManager.add(last, "updated");
+        return cookieManager;
+    }
+    @Benchmark
+    public String getString() {
+        return cookieManager.getString();
+    }
+}
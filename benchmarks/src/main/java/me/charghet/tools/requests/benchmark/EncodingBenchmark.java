@@ -0,0 +1,66 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.FormatException;
+import me.charghet.tools.requests.URLParam;
+import me.charghet.tools.requests.URLUtil;
+
+/**
+ * URLParam 和 URLUtil 中urlencode编码的基准测试。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+    /**
+     * url参数的个数。
+     */
+    @Param({"4", "32"})
+    public int params;
+    private URLParam param;
+    private String url;
+    private String getURL;
+    @Setup
+    public void setup() {
+        param = new URLParam();
+        StringBuilder query = new StringBuilder();
+        for(int i = 0;i < params;i++) {
+            String value = i % 2 == 0 ? "value " + i : "中文参数" + i;
+            param.add("key" + i, value);
+            query.append(i == 0 ? "" : "&").append("key").append(i).append('=').append(value);
+        }
+        url = "http://127.0.0.1:8080/路径/api/v1/资源/list";
+        getURL = url + "?" + query;
+    }
+    @Benchmark
+    public String getEncodeString() throws FormatException {
+        return param.getEncodeString();
+    }
+    @Benchmark
+    public String encodeURL() throws FormatException {
+        return URLUtil.encodeURL(url);
+    }
+    @Benchmark
+    public String encodeGetURL() throws FormatException {
+        return URLUtil.encodeGetURL(getURL);
+    }
+}
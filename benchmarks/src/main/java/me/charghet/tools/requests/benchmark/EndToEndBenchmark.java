@@ -0,0 +1,92 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.ConcurrencyLimiter;
+import me.charghet.tools.requests.FormatException;
+import me.charghet.tools.requests.NioEngine;
+import me.charghet.tools.requests.RequestException;
+import me.charghet.tools.requests.Session;
+
+/**
+ * 通过Session向本地服务器发送get和post请求的端到端基准测试。
+ * <p> 分别测量HttpURLConnection和NioEngine两种发送方式，以及是否启用ConcurrencyLimiter。
+ * 4个线程共享同一个Session，测量的是吞吐量。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(4)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+    /**
+     * 发送请求的方式，url 为HttpURLConnection，nio 为NioEngine。
+     */
+    @Param({"url", "nio"})
+    public String transport;
+    /**
+     * 是否启用默认参数的ConcurrencyLimiter。
+     */
+    @Param({"false", "true"})
+    public boolean limiter;
+    private LocalServer server;
+    private NioEngine engine;
+    private Session session;
+    private String getURL;
+    private String postURL;
+    private String form;
+    @Setup
+    public void setup() throws IOException {
+        server = new LocalServer(4, 0);
+        session = Session.createDefaultSession();
+        if("nio".equals(transport)) {
+            engine = new NioEngine();
+            session.setNioEngine(engine);
+        }
+        if(limiter) {
+            session.setConcurrencyLimiter(new ConcurrencyLimiter());
+        }
+        getURL = server.base() + "/get";
+        postURL = server.base() + "/post";
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0;i < 32;i++) {
+            sb.append(i == 0 ? "" : "&").append("key").append(i).append("=value").append(i);
+        }
+        form = sb.toString();
+    }
+    @TearDown
+    public void tearDown() {
+        if(engine != null) {
+            engine.close();
+        }
+        server.stop();
+    }
+    @Benchmark
+    public int get() throws RequestException {
+        return session.get(getURL).getLength();
+    }
+    @Benchmark
+    public int post() throws RequestException, FormatException {
+        return session.post(postURL, form).getLength();
+    }
+}
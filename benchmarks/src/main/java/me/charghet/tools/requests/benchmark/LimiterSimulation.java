@@ -0,0 +1,90 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.charghet.tools.requests.ConcurrencyLimiter;
+import me.charghet.tools.requests.RequestException;
+import me.charghet.tools.requests.Response;
+import me.charghet.tools.requests.Session;
+
+/**
+ * 在注入延迟的本地服务器上模拟 ConcurrencyLimiter 的调整过程，每秒输出一次并发上限、吞吐量和延迟。
+ * <p> 多个客户端线程循环向 /overload 发送get请求（闭环），服务端依次经过三个阶段：
+ * 正常（延迟20毫秒、容量16）、变慢（延迟60毫秒、容量8）、恢复（同正常）。
+ * 限流器的延迟阈值为100毫秒，超出上限的请求最多排队1秒。
+ * <p> 用法：java -cp target/benchmarks.jar me.charghet.tools.requests.benchmark.LimiterSimulation [线程数] [每阶段秒数] [nolimit]
+ * <p> 默认为64个线程、每阶段10秒；指定nolimit时不使用限流器，用于对比。
+ *
+ * @author charghet
+ *
+ */
+public class LimiterSimulation {
+    private static final String HOST = "127.0.0.1";
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        boolean limited = args.length <= 2 || !"nolimit".equals(args[2]);
+        LocalServer server = new LocalServer(4, 0);
+        Session session = new Session();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 200);
+        limiter.setLatencyThreshold(100);
+        limiter.setMaxWait(1000);
+        if(limited) {
+            session.setConcurrencyLimiter(limiter);
+        }
+        String url = server.base() + "/overload";
+        LongAdder ok = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder latency = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0;i < clients;i++) {
+            Thread thread = new Thread(() -> {
+                while(!Thread.currentThread().isInterrupted()) {
+                    long start = System.nanoTime();
+                    try {
+                        Response response = session.get(url);
+                        if(response.getStatusCode() == 200) {
+                            ok.increment();
+                            latency.add(System.nanoTime() - start);
+                        }else {
+                            failed.increment();
+                        }
+                    }catch(RequestException e) {
+                        rejected.increment();
+                    }
+                }
+            }, "simulation-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        System.out.println((limited ? "ConcurrencyLimiter" : "不使用限流器") + "，" + clients + "个线程，" + url);
+        System.out.println("   t  phase     limit  inflight  server    ok/s   503/s  reject/s  avg(ms)");
+        String[] phases = {"normal", "degraded", "recovered"};
+        for(int t = 0;t < seconds * phases.length;t++) {
+            int phase = t / seconds;
+            if(t % seconds == 0) {
+                server.setOverloadDelay(phase == 1 ? 60 : 20);
+                server.setCapacity(phase == 1 ? 8 : 16);
+            }
+            long okBefore = ok.sum();
+            long failedBefore = failed.sum();
+            long rejectedBefore = rejected.sum();
+            long latencyBefore = latency.sum();
+            Thread.sleep(1000);
+            long n = ok.sum() - okBefore;
+            double average = n == 0 ? 0 : (latency.sum() - latencyBefore) / (double)n / TimeUnit.MILLISECONDS.toNanos(1);
+            System.out.printf("%4d  %-9s %5s  %8s  %6d  %6d  %6d  %8d  %7.1f%n", t + 1, phases[phase],
+                    limited ? Integer.toString(limiter.getLimit(HOST)) : "-", limited ? Integer.toString(limiter.getInflight(HOST)) : "-",
+                    server.getActive(), n, failed.sum() - failedBefore, rejected.sum() - rejectedBefore, average);
+        }
+        threads.forEach(Thread::interrupt);
+        server.stop();
+        System.exit(0);
+    }
+}
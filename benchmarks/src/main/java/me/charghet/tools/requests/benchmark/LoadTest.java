@@ -0,0 +1,46 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+
+import me.charghet.tools.requests.LoadGenerator;
+import me.charghet.tools.requests.LoadResult;
+import me.charghet.tools.requests.Request;
+import me.charghet.tools.requests.RequestException;
+import me.charghet.tools.requests.Session;
+
+/**
+ * 以固定速率向url地址发送get请求并输出延迟百分位和吞吐量，未指定url地址时向本地服务器发送。
+ * <p> 用法：java -cp target/benchmarks.jar me.charghet.tools.requests.benchmark.LoadTest [速率] [秒数] [url]
+ * <p> 默认为每秒1000个请求、10秒，另有2秒预热。本地服务器使用4个处理线程。
+ *
+ * @author charghet
+ *
+ */
+public class LoadTest {
+    public static void main(String[] args) throws IOException, RequestException {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 1000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        LocalServer server = null;
+        String url;
+        if(args.length > 2) {
+            url = args[2];
+        }else {
+            server = new LocalServer(4, 0);
+            url = server.base() + "/get";
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(Session.createDefaultSession(), Request.get(url));
+            generator.setRate(rate);
+            generator.setWarmup(2000);
+            generator.setDuration(seconds * 1000);
+            LoadResult result = generator.run();
+            System.out.println(url);
+            result.print();
+        }finally {
+            if(server != null) {
+                server.stop();
+            }
+        }
+        System.exit(0);
+    }
+}
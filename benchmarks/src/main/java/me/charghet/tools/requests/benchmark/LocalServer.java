@@ -0,0 +1,139 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 基准测试使用的本地http服务器，基于JDK内置的 com.sun.net.httpserver。
+ * <ul>
+ * <li>/get：返回固定的响应体。</li>
+ * <li>/post：读取全部请求体，返回收到的字节数。</li>
+ * <li>/slow：不占用处理线程，延迟指定的毫秒数后返回固定的响应体。</li>
+ * <li>/overload：模拟容量有限的服务端，同时处理的请求数超过容量时延迟按比例增加，超过容量的4倍时立即返回503。
+ * 基础延迟和容量可以在运行中修改，用于注入延迟。</li>
+ * </ul>
+ *
+ * @author charghet
+ *
+ */
+class LocalServer {
+    private static final byte[] BODY = "{\"code\":0,\"msg\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile long overloadDelay = 20;
+    private volatile int capacity = 16;
+    /**
+     * 在随机端口上启动服务器。
+     *
+     * @param threads 处理请求的线程数
+     * @param delayMillis /slow 的响应延迟（毫秒）
+     * @throws IOException 如果启动失败
+     */
+    LocalServer(int threads, long delayMillis) throws IOException {
+        // 响应头和响应体分两次写出，不关闭Nagle算法时每个请求都会等待对方的延迟确认（约40毫秒）
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16384);
+        executor = Executors.newFixedThreadPool(threads);
+        scheduler = Executors.newScheduledThreadPool(2);
+        server.setExecutor(executor);
+        server.createContext("/get", exchange -> respond(exchange, BODY));
+        server.createContext("/post", exchange -> {
+            long n = 0;
+            byte[] buffer = new byte[8192];
+            try(InputStream in = exchange.getRequestBody()) {
+                int r;
+                while((r = in.read(buffer)) != -1) {
+                    n += r;
+                }
+            }
+            respond(exchange, Long.toString(n).getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/slow", exchange -> scheduler.schedule(() -> {
+            try {
+                respond(exchange, BODY);
+            }catch(IOException e) {
+                exchange.close();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS));
+        server.createContext("/overload", exchange -> {
+            int n = active.incrementAndGet();
+            int c = capacity;
+            if(n > c * 4) {
+                active.decrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            long delay = overloadDelay * Math.max(c, n) / c;
+            scheduler.schedule(() -> {
+                active.decrementAndGet();
+                try {
+                    respond(exchange, BODY);
+                }catch(IOException e) {
+                    exchange.close();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        });
+        server.start();
+    }
+    /**
+     * 设置 /overload 在容量以内时的延迟。
+     *
+     * @param millis 延迟（毫秒）
+     */
+    void setOverloadDelay(long millis) {
+        overloadDelay = millis;
+    }
+    /**
+     * 设置 /overload 同时处理的请求数的容量。
+     *
+     * @param capacity 容量
+     */
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+    /**
+     * 获得 /overload 当前同时处理的请求数。
+     *
+     * @return 请求数
+     */
+    int getActive() {
+        return active.get();
+    }
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    /**
+     * 获得服务器的根地址。
+     *
+     * @return 如 http://127.0.0.1:端口
+     */
+    String base() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    /**
+     * 关闭服务器。
+     */
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+}
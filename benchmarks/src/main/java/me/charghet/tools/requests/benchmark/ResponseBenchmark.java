@@ -0,0 +1,76 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.fastjson.JSONObject;
+
+import me.charghet.tools.requests.Response;
+
+/**
+ * Response 读取响应体、转换为文本和解析JSON的基准测试。
+ * <p> 响应体从内存中读取，不经过网络。配合 -prof gc 可以得到每次读取分配的字节数（gc.alloc.rate.norm），
+ * 已知长度时应接近响应体大小，未知长度时只多出池中数据块的少量开销。
+ * <p> Response会缓存解析结果，getJSON 每次都构造新的Response，其结果包含读取响应体的时间。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ResponseBenchmark {
+    /**
+     * 响应体的大小（字节）。
+     */
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+    /**
+     * 是否提供Content-Length。
+     */
+    @Param({"true", "false"})
+    public boolean knownLength;
+    private byte[] body;
+    private Response response;
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for(int i = 0;json.length() < size - 64;i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\"}");
+        }
+        json.append("],\"code\":0}");
+        while(json.length() < size) {
+            json.append(' ');
+        }
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+        response = new Response(new StubConnection(body, knownLength));
+    }
+    @Benchmark
+    public Response readBytes() throws IOException {
+        return new Response(new StubConnection(body, knownLength));
+    }
+    @Benchmark
+    public String getText() {
+        return response.getText();
+    }
+    @Benchmark
+    public JSONObject getJSON() throws IOException {
+        return new Response(new StubConnection(body, knownLength)).getJSON();
+    }
+}
@@ -0,0 +1,63 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.FormatException;
+import me.charghet.tools.requests.Session;
+
+/**
+ * Session 创建和设置请求头的基准测试。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class SessionHeadersBenchmark {
+    private String[][] headers;
+    private Session session;
+    @Setup
+    public void setup() {
+        headers = new String[][] {
+            {"Accept", "application/json"},
+            {"Accept-Language", "zh-CN,zh;q=0.9"},
+            {"User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64)"},
+            {"Connection", "keep-alive"},
+            {"X-Request-Id", "0123456789abcdef"}
+        };
+        session = Session.createDefaultSession();
+    }
+    @Benchmark
+    public Session createDefaultSession() {
+        return Session.createDefaultSession();
+    }
+    @Benchmark
+    public Session setHeaders() throws FormatException {
+        session.setHeaders(headers);
+        return session;
+    }
+    @Benchmark
+    public Session addHeader() {
+        session.addHeader("X-Request-Id", "fedcba9876543210");
+        return session;
+    }
+    @Benchmark
+    public String[][] getHeaders() {
+        return session.getHeaders();
+    }
+}
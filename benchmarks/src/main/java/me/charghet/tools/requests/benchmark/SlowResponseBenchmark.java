@@ -0,0 +1,126 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.charghet.tools.requests.NioEngine;
+import me.charghet.tools.requests.RequestException;
+import me.charghet.tools.requests.Response;
+import me.charghet.tools.requests.ResponseCallback;
+import me.charghet.tools.requests.Session;
+
+/**
+ * 同时发送大量请求、服务端延迟响应的基准测试。
+ * <p> 每次调用同时发出指定数量的请求，服务端在100毫秒后才返回响应，测量全部请求完成的时间。
+ * nio 通过NioEngine的 getAsync 发送，理想情况下接近100毫秒，即一个事件循环线程可以同时等待所有连接；
+ * url 在与请求数相同的平台线程中阻塞调用 Session.get，即不使用NioEngine时的做法。
+ * <p> 服务器与客户端在同一个进程中，10000个并发连接需要两万个以上的文件描述符，运行前可能需要执行 ulimit -n 65536。
+ *
+ * @author charghet
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class SlowResponseBenchmark {
+    /**
+     * 同时发送的请求数。
+     */
+    @Param({"1000", "10000"})
+    public int requests;
+    /**
+     * 发送请求的方式，nio 为NioEngine，url 为在线程池中阻塞调用HttpURLConnection。
+     */
+    @Param({"nio", "url"})
+    public String transport;
+    private LocalServer server;
+    private NioEngine engine;
+    private ExecutorService executor;
+    private Session session;
+    private String url;
+    @Setup
+    public void setup() throws IOException {
+        server = new LocalServer(8, 100);
+        session = new Session();
+        if("nio".equals(transport)) {
+            engine = new NioEngine();
+            engine.setMaxIdlePerHost(requests);
+            session.setNioEngine(engine);
+        }else {
+            executor = Executors.newFixedThreadPool(requests);
+        }
+        url = server.base() + "/slow";
+    }
+    @TearDown
+    public void tearDown() {
+        if(engine != null) {
+            engine.close();
+        }
+        if(executor != null) {
+            executor.shutdownNow();
+        }
+        server.stop();
+    }
+    @Benchmark
+    public int concurrentSlowRequests() throws RequestException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(requests);
+        AtomicInteger failed = new AtomicInteger();
+        if(executor != null) {
+            for(int i = 0;i < requests;i++) {
+                executor.execute(() -> {
+                    try {
+                        session.get(url);
+                    }catch(RequestException e) {
+                        failed.incrementAndGet();
+                    }
+                    latch.countDown();
+                });
+            }
+            return await(latch, failed);
+        }
+        ResponseCallback callback = new ResponseCallback() {
+            @Override
+            public void completed(Response response) {
+                latch.countDown();
+            }
+            @Override
+            public void failed(RequestException e) {
+                failed.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        for(int i = 0;i < requests;i++) {
+            session.getAsync(url, callback);
+        }
+        return await(latch, failed);
+    }
+    private int await(CountDownLatch latch, AtomicInteger failed) throws InterruptedException {
+        if(!latch.await(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException(latch.getCount() + "个请求超时未完成");
+        }
+        if(failed.get() > 0) {
+            throw new IllegalStateException(failed.get() + "个请求失败");
+        }
+        return requests;
+    }
+}
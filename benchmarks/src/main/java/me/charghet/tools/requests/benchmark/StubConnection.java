@@ -0,0 +1,55 @@
+package me.charghet.tools.requests.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * 从内存中返回响应体的HttpURLConnection，用于不经过网络测量Response的读取和解析。
+ *
+ * @author charghet
+ *
+ */
+class StubConnection extends HttpURLConnection {
+    private final byte[] body;
+    private final boolean knownLength;
+    /**
+     * 构造一个返回指定响应体的连接。
+     *
+     * @param body 响应体
+     * @param knownLength 为true时报告Content-Length，否则与分块传输一样长度未知
+     * @throws MalformedURLException 不会发生
+     */
+    StubConnection(byte[] body, boolean knownLength) throws MalformedURLException {
+        super(new URL("http://127.0.0.1/stub"));
+        this.body = body;
+        this.knownLength = knownLength;
+        this.responseCode = 200;
+        this.method = "GET";
+    }
+    @Override
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(body);
+    }
+    @Override
+    public long getContentLengthLong() {
+        return knownLength ? body.length : -1;
+    }
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+    @Override
+    public void connect() {
+        connected = true;
+    }
+    @Override
+    public void disconnect() {
+    }
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+}
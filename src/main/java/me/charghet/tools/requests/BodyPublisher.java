@@ -0,0 +1,305 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以响应式流的方式发布响应体，按订阅者的需求读取连接中的数据。
+ * <p> 订阅者通过 Subscription.request(long n) 声明需求，每次需求最多读取一个数据块并调用一次 onNext。
+ * 没有需求时不再读取连接，数据积压在TCP缓冲区中，由TCP流量控制减慢服务端的发送速度，而不会占满堆内存。
+ * <p> 接口与 java.util.concurrent.Flow 一致，在JDK 9及以上版本可以通过 toFlowPublisher() 获得 Flow.Publisher&lt;ByteBuffer&gt;。
+ * <p> 只能订阅一次。读取连接在Session的线程池中进行，所有信号都按顺序发出，不会并发调用订阅者的方法。
+ *
+ * @author charghet
+ *
+ */
+public class BodyPublisher {
+    private final InputStream in;
+    private final Runnable abort;
+    private final Executor executor;
+    private final int chunkSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    /**
+     * 是否已结束，完成、出错和取消只有先发生的一个生效。
+     */
+    private final AtomicBoolean terminated = new AtomicBoolean(false);
+    private volatile Subscriber subscriber;
+    private volatile Throwable pending;
+    private volatile boolean cancelled = false;
+    private boolean done = false;
+    /**
+     * 构造一个发布输入流中数据的BodyPublisher。
+     *
+     * @param in 输入流，完成、出错或取消时关闭
+     * @param abort 在读取结束前取消时断开连接的操作，使阻塞在读取中的线程立即返回
+     * @param executor 读取输入流的线程池
+     * @param chunkSize 每个数据块的最大字节数
+     */
+    BodyPublisher(InputStream in, Runnable abort, Executor executor, int chunkSize) {
+        this.in = in;
+        this.abort = abort;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+    /**
+     * 响应体的订阅者，与 java.util.concurrent.Flow.Subscriber&lt;ByteBuffer&gt; 一致。
+     */
+    public interface Subscriber {
+        /**
+         * 订阅成功时调用。
+         *
+         * @param subscription 订阅
+         */
+        void onSubscribe(Subscription subscription);
+        /**
+         * 收到一个数据块时调用，数据块可以被订阅者保留。
+         *
+         * @param buffer 处于读模式的数据块
+         */
+        void onNext(ByteBuffer buffer);
+        /**
+         * 读取过程中发生错误时调用，之后不会再收到任何信号。
+         *
+         * @param throwable 错误
+         */
+        void onError(Throwable throwable);
+        /**
+         * 响应体读取完毕时调用，之后不会再收到任何信号。
+         */
+        void onComplete();
+    }
+    /**
+     * 订阅，与 java.util.concurrent.Flow.Subscription 一致。
+     */
+    public interface Subscription {
+        /**
+         * 增加n个数据块的需求。
+         *
+         * @param n 需求数，必须大于0
+         */
+        void request(long n);
+        /**
+         * 取消订阅并断开连接，正在阻塞读取连接的线程立即结束读取。
+         */
+        void cancel();
+    }
+    /**
+     * 订阅响应体。
+     *
+     * @param subscriber 订阅者
+     */
+    public void subscribe(Subscriber subscriber) {
+        if(!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("BodyPublisher只能订阅一次"));
+            return;
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0) {
+                    pending = new IllegalArgumentException("request的参数必须大于0：" + n);
+                }else {
+                    long current;
+                    do {
+                        current = demand.get();
+                        if(current == Long.MAX_VALUE) {
+                            break;
+                        }
+                    }while(!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                }
+                drain();
+            }
+            @Override
+            public void cancel() {
+                cancelled = true;
+                // 读取线程可能阻塞在 in.read() 中，只设置标志不能使其返回，需要断开连接
+                if(terminated.compareAndSet(false, true)) {
+                    abort.run();
+                }
+                drain();
+            }
+        });
+    }
+    private void drain() {
+        if(wip.getAndIncrement() == 0) {
+            executor.execute(this::loop);
+        }
+    }
+    private void loop() {
+        int missed = 1;
+        do {
+            while(!done) {
+                if(cancelled) {
+                    finish();
+                    break;
+                }
+                if(pending != null) {
+                    if(finish()) {
+                        subscriber.onError(pending);
+                    }
+                    break;
+                }
+                if(demand.get() == 0) {
+                    break;
+                }
+                ByteBuffer buffer;
+                try {
+                    buffer = read();
+                }catch(IOException e) {
+                    if(finish()) {
+                        subscriber.onError(new RequestException(e.toString(), e));
+                    }
+                    break;
+                }
+                if(buffer == null) {
+                    if(finish()) {
+                        subscriber.onComplete();
+                    }
+                    break;
+                }
+                if(demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                subscriber.onNext(buffer);
+            }
+            missed = wip.addAndGet(-missed);
+        }while(missed != 0);
+    }
+    private ByteBuffer read() throws IOException {
+        byte[] b = new byte[chunkSize];
+        int n;
+        do {
+            n = in.read(b);
+        }while(n == 0);
+        return n == -1 ? null : ByteBuffer.wrap(b, 0, n);
+    }
+    /**
+     * 结束读取并关闭输入流。
+     *
+     * @return 如果在取消之前结束，返回true，此时需要发出完成或错误信号
+     */
+    private boolean finish() {
+        done = true;
+        boolean first = terminated.compareAndSet(false, true);
+        close();
+        return first;
+    }
+    private void close() {
+        try {
+            in.close();
+        }catch(IOException e) {
+            // 忽略关闭时的错误
+        }
+    }
+    /**
+     * 获得与本BodyPublisher对应的 java.util.concurrent.Flow.Publisher&lt;ByteBuffer&gt;。
+     * <p> 返回值的类型为 Flow.Publisher&lt;ByteBuffer&gt;，由于本库兼容Java 8，声明为Object，使用时需要进行类型转换。
+     *
+     * @return Flow.Publisher&lt;ByteBuffer&gt;
+     * @throws UnsupportedOperationException 如果JDK版本低于9
+     */
+    public Object toFlowPublisher() {
+        Class<?> publisherType;
+        Class<?> subscriberType;
+        Class<?> subscriptionType;
+        Method onSubscribe;
+        Method onNext;
+        Method onError;
+        Method onComplete;
+        try {
+            publisherType = Class.forName("java.util.concurrent.Flow$Publisher");
+            subscriberType = Class.forName("java.util.concurrent.Flow$Subscriber");
+            subscriptionType = Class.forName("java.util.concurrent.Flow$Subscription");
+            onSubscribe = subscriberType.getMethod("onSubscribe", subscriptionType);
+            onNext = subscriberType.getMethod("onNext", Object.class);
+            onError = subscriberType.getMethod("onError", Throwable.class);
+            onComplete = subscriberType.getMethod("onComplete");
+        }catch(ClassNotFoundException | NoSuchMethodException e) {
+            throw new UnsupportedOperationException("需要JDK 9及以上版本", e);
+        }
+        ClassLoader loader = publisherType.getClassLoader();
+        InvocationHandler publisher = (proxy, method, args) -> {
+            if(method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, method, args);
+            }
+            Object target = args[0];
+            subscribe(new Subscriber() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    InvocationHandler handler = (p, m, a) -> {
+                        if(m.getDeclaringClass() == Object.class) {
+                            return objectMethod(p, m, a);
+                        }
+                        if("request".equals(m.getName())) {
+                            subscription.request((Long)a[0]);
+                        }else {
+                            subscription.cancel();
+                        }
+                        return null;
+                    };
+                    invoke(onSubscribe, target, Proxy.newProxyInstance(loader, new Class<?>[] {subscriptionType}, handler));
+                }
+                @Override
+                public void onNext(ByteBuffer buffer) {
+                    invoke(onNext, target, buffer);
+                }
+                @Override
+                public void onError(Throwable throwable) {
+                    invoke(onError, target, throwable);
+                }
+                @Override
+                public void onComplete() {
+                    invoke(onComplete, target);
+                }
+            });
+            return null;
+        };
+        return Proxy.newProxyInstance(loader, new Class<?>[] {publisherType}, publisher);
+    }
+    private static void invoke(Method method, Object target, Object... args) {
+        try {
+            method.invoke(target, args);
+        }catch(IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return proxy.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
+}
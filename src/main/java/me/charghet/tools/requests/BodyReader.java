@@ -0,0 +1,143 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 读取响应体的工具类。
+ * <p> 已知 Content-Length 时按该长度一次分配结果数组并直接读入，不需要中间缓冲区；
+ * 未知长度时先读入池中可复用的数据块，读取完毕后按实际长度只分配一次结果数组。
+ * <p> 数据块池按线程分段而不是每个线程一份，在虚拟线程上也不会为每个线程保留缓冲区，每段最多保留1MB。
+ * <p> Content-Length 与实际长度不符时，结果数组可能大于响应体，由调用者按 getLength() 使用结果数组。
+ *
+ * @author charghet
+ *
+ */
+final class BodyReader {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_PRESIZE = 8 * 1024 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_POOLED_CHUNKS = 64;
+    private static final AtomicReferenceArray<ArrayList<byte[]>> CHUNKS =
+            new AtomicReferenceArray<>(Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4);
+    private byte[] bytes;
+    private int length;
+    private BodyReader() {
+    }
+    /**
+     * 读取输入流中的全部数据并关闭输入流。
+     *
+     * @param in 输入流，为null时视为空响应体
+     * @param contentLength Content-Length 的值，未知时为-1
+     * @return 读取结果
+     * @throws IOException 如果发生I/O错误
+     */
+    static BodyReader read(InputStream in, long contentLength) throws IOException {
+        BodyReader reader = new BodyReader();
+        if(in == null) {
+            reader.bytes = new byte[0];
+            return reader;
+        }
+        try {
+            if(contentLength >= 0) {
+                reader.readPresized(in, contentLength);
+            }else {
+                reader.readChunked(in);
+            }
+        }finally {
+            in.close();
+        }
+        return reader;
+    }
+    /**
+     * 按 Content-Length 分配结果数组并直接读入，超出预分配大小的部分按需扩容。
+     */
+    private void readPresized(InputStream in, long contentLength) throws IOException {
+        bytes = new byte[(int)Math.min(contentLength, MAX_PRESIZE)];
+        int n;
+        while(true) {
+            if(length == bytes.length) {
+                int b = in.read();
+                if(b == -1) {
+                    return;
+                }
+                grow(length + 1);
+                bytes[length++] = (byte)b;
+            }
+            n = in.read(bytes, length, bytes.length - length);
+            if(n == -1) {
+                return;
+            }
+            length += n;
+        }
+    }
+    /**
+     * 未知长度时先读入池中的数据块，读取完毕后按实际长度分配结果数组并复制一次。
+     */
+    private void readChunked(InputStream in) throws IOException {
+        int stripe = (int)Thread.currentThread().getId() & (CHUNKS.length() - 1);
+        ArrayList<byte[]> chunks = CHUNKS.getAndSet(stripe, null);
+        if(chunks == null) {
+            chunks = new ArrayList<>();
+        }
+        try {
+            int used = 0;
+            int pos = CHUNK_SIZE;
+            byte[] chunk = null;
+            int n;
+            while(true) {
+                if(pos == CHUNK_SIZE) {
+                    if(used == chunks.size()) {
+                        chunks.add(new byte[CHUNK_SIZE]);
+                    }
+                    chunk = chunks.get(used++);
+                    pos = 0;
+                }
+                n = in.read(chunk, pos, CHUNK_SIZE - pos);
+                if(n == -1) {
+                    break;
+                }
+                if(length + n < 0 || length + n > MAX_ARRAY_SIZE) {
+                    throw new IOException("响应体过大");
+                }
+                pos += n;
+                length += n;
+            }
+            bytes = new byte[length];
+            for(int i = 0, offset = 0;offset < length;i++, offset += CHUNK_SIZE) {
+                System.arraycopy(chunks.get(i), 0, bytes, offset, Math.min(CHUNK_SIZE, length - offset));
+            }
+        }finally {
+            while(chunks.size() > MAX_POOLED_CHUNKS) {
+                chunks.remove(chunks.size() - 1);
+            }
+            CHUNKS.lazySet(stripe, chunks);
+        }
+    }
+    private void grow(int minCapacity) throws IOException {
+        if(minCapacity < 0 || minCapacity > MAX_ARRAY_SIZE) {
+            throw new IOException("响应体过大");
+        }
+        long capacity = Math.max(bytes.length + (bytes.length >> 1), Math.max(minCapacity, CHUNK_SIZE));
+        bytes = Arrays.copyOf(bytes, (int)Math.min(capacity, MAX_ARRAY_SIZE));
+    }
+    /**
+     * 获得结果数组，其中前 getLength() 个字节为响应体，数组长度可能大于响应体长度。
+     *
+     * @return 结果数组
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+    /**
+     * 获得响应体长度。
+     *
+     * @return 响应体长度（字节）
+     */
+    int getLength() {
+        return length;
+    }
+}
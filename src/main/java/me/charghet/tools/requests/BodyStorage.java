@@ -0,0 +1,336 @@
+package me.charghet.tools.requests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 将响应体保存在堆外内存或临时文件中的存储设置。
+ * <p> 通过 Session.setBodyStorage(BodyStorage storage) 启用后，通过HttpURLConnection发送的请求的响应体
+ * 不再保存在堆中的字节数组里：不超过阈值的响应体保存在直接内存中，所有响应体占用的直接内存总量不超过预算；
+ * 超过阈值，或预算已用完时，响应体写入临时文件，再通过内存映射读取。
+ * <p> Response.getBytes() 和 Response.getText() 在每次调用时从存储中复制出响应体；Response.getBody() 直接返回存储的只读视图。
+ * <p> 存储在 Response.close() 时立即释放，未关闭的Response会一直占用预算。
+ * Response关闭后不能再使用 getBody() 返回的ByteBuffer，否则可能读取到已释放的内存。
+ * 同一个响应体被多个Response共享时（如合并请求），在最后一个Response关闭时才释放。
+ * <p> 多个Session可以共享同一个BodyStorage，此时共享同一份预算。
+ *
+ * @author charghet
+ *
+ */
+public class BodyStorage {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        }catch(ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+    private final long budget;
+    private final int spillThreshold;
+    private final File directory;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    /**
+     * 构造一个在系统临时目录中保存溢出文件的BodyStorage。
+     *
+     * @param budget 所有响应体最多占用的直接内存（字节）
+     * @param spillThreshold 超过该大小的响应体写入临时文件（字节）
+     */
+    public BodyStorage(long budget, int spillThreshold) {
+        this(budget, spillThreshold, null);
+    }
+    /**
+     * 构造一个在指定目录中保存溢出文件的BodyStorage。
+     *
+     * @param budget 所有响应体最多占用的直接内存（字节）
+     * @param spillThreshold 超过该大小的响应体写入临时文件（字节）
+     * @param directory 保存临时文件的目录，为null时使用系统临时目录
+     */
+    public BodyStorage(long budget, int spillThreshold, File directory) {
+        if(budget < 0 || spillThreshold < 0) {
+            throw new IllegalArgumentException("budget和spillThreshold不能小于0");
+        }
+        this.budget = budget;
+        this.spillThreshold = spillThreshold;
+        this.directory = directory;
+    }
+    /**
+     * 获得所有响应体最多占用的直接内存。
+     *
+     * @return 直接内存预算（字节）
+     */
+    public long getBudget() {
+        return budget;
+    }
+    /**
+     * 获得写入临时文件的响应体大小阈值。
+     *
+     * @return 阈值（字节）
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+    /**
+     * 获得当前未关闭的响应体占用的直接内存。
+     *
+     * @return 已占用的直接内存（字节）
+     */
+    public long getUsed() {
+        return used.get();
+    }
+    /**
+     * 获得写入过临时文件的响应体数。
+     *
+     * @return 写入临时文件的响应体数
+     */
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+    /**
+     * 读取输入流中的全部数据并保存，之后关闭输入流。
+     *
+     * @param in 输入流，为null时视为空响应体
+     * @param contentLength Content-Length 的值，未知时为-1
+     * @return 保存的响应体
+     * @throws IOException 如果发生I/O错误
+     */
+    Block store(InputStream in, long contentLength) throws IOException {
+        Block block = new Block();
+        if(in == null) {
+            block.buffer = ByteBuffer.allocate(0);
+            return block;
+        }
+        try {
+            block.read(in, contentLength);
+        }catch(IOException | RuntimeException e) {
+            block.close();
+            throw e;
+        }finally {
+            in.close();
+        }
+        return block;
+    }
+    private boolean reserve(long size) {
+        long current;
+        do {
+            current = used.get();
+            if(current + size > budget) {
+                return false;
+            }
+        }while(!used.compareAndSet(current, current + size));
+        return true;
+    }
+    /**
+     * 立即释放直接缓冲区或内存映射占用的内存。
+     * <p> 在无法释放的JDK上交给垃圾回收器释放。
+     */
+    private static void free(ByteBuffer buffer) {
+        if(!buffer.isDirect()) {
+            return;
+        }
+        try {
+            if(INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            }else {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object c = cleaner.invoke(buffer);
+                if(c != null) {
+                    c.getClass().getMethod("clean").invoke(c);
+                }
+            }
+        }catch(ReflectiveOperationException | RuntimeException e) {
+            // 交给垃圾回收器释放
+        }
+    }
+    /**
+     * 保存在直接内存或临时文件中的一个响应体。
+     * <p> 通过引用计数在多个Response之间共享，创建时引用数为1，引用数降为0时释放。
+     */
+    class Block {
+        private ByteBuffer buffer;
+        private long reserved;
+        private Path file;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private void read(InputStream in, long contentLength) throws IOException {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            FileChannel channel = null;
+            try {
+                if(contentLength > spillThreshold || !allocate(contentLength >= 0 ? contentLength : Math.min(CHUNK_SIZE, spillThreshold))) {
+                    channel = spill();
+                }
+                int n;
+                while((n = in.read(chunk)) != -1) {
+                    if(channel == null && buffer.remaining() < n) {
+                        long size = (long)buffer.position() + n;
+                        if(size > spillThreshold || !allocate(Math.min(Math.max(size, (long)buffer.capacity() * 2), spillThreshold))) {
+                            channel = spill();
+                        }
+                    }
+                    if(channel == null) {
+                        buffer.put(chunk, 0, n);
+                    }else {
+                        ByteBuffer src = ByteBuffer.wrap(chunk, 0, n);
+                        while(src.hasRemaining()) {
+                            channel.write(src);
+                        }
+                    }
+                }
+                if(channel == null) {
+                    buffer.flip();
+                }else {
+                    long size = channel.size();
+                    if(size > Integer.MAX_VALUE) {
+                        throw new IOException("响应体过大");
+                    }
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    try {
+                        Files.delete(file);
+                        file = null;
+                    }catch(IOException e) {
+                        // 部分系统不能删除已映射的文件，在关闭时删除
+                    }
+                }
+            }finally {
+                if(channel != null) {
+                    channel.close();
+                }
+            }
+        }
+        /**
+         * 在预算内分配指定容量的直接缓冲区，并复制已读取的数据。
+         */
+        private boolean allocate(long capacity) {
+            if(!reserve(capacity)) {
+                return false;
+            }
+            ByteBuffer old = buffer;
+            buffer = ByteBuffer.allocateDirect((int)capacity);
+            if(old != null) {
+                old.flip();
+                buffer.put(old);
+                release(old);
+            }
+            reserved += capacity;
+            return true;
+        }
+        /**
+         * 将已读取的数据写入临时文件，释放直接缓冲区，之后的数据写入该文件。
+         */
+        private FileChannel spill() throws IOException {
+            file = directory != null ? Files.createTempFile(directory.toPath(), "requests-", ".body") : Files.createTempFile("requests-", ".body");
+            spilled.incrementAndGet();
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if(buffer != null) {
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                release(buffer);
+                buffer = null;
+            }
+            return channel;
+        }
+        private void release(ByteBuffer old) {
+            free(old);
+            used.addAndGet(-old.capacity());
+            reserved -= old.capacity();
+        }
+        /**
+         * 获得响应体的长度。
+         *
+         * @return 响应体长度（字节）
+         */
+        int length() {
+            return buffer.limit();
+        }
+        /**
+         * 增加指定数量的引用，每个引用都需要一次 close() 释放。
+         *
+         * @param count 增加的引用数
+         * @throws IllegalStateException 如果响应体已释放
+         */
+        void retain(int count) {
+            int current;
+            do {
+                current = references.get();
+                if(current <= 0) {
+                    throw new IllegalStateException("Response已关闭");
+                }
+            }while(!references.compareAndSet(current, current + count));
+        }
+        /**
+         * 获得响应体的只读视图。
+         * <p> 视图不持有引用，所属的Response关闭后不能再使用。
+         *
+         * @return 处于读模式的只读ByteBuffer
+         * @throws IllegalStateException 如果响应体已释放
+         */
+        ByteBuffer view() {
+            retain(1);
+            try {
+                return buffer.asReadOnlyBuffer();
+            }finally {
+                close();
+            }
+        }
+        /**
+         * 将响应体复制到新的字节数组中，复制期间持有一个引用，其他共享者关闭时不会释放。
+         *
+         * @return 响应体的字节数组
+         * @throws IllegalStateException 如果响应体已释放
+         */
+        byte[] toBytes() {
+            retain(1);
+            try {
+                ByteBuffer view = buffer.asReadOnlyBuffer();
+                byte[] bytes = new byte[view.remaining()];
+                view.get(bytes);
+                return bytes;
+            }finally {
+                close();
+            }
+        }
+        /**
+         * 释放一个引用，最后一个引用释放时释放响应体占用的直接内存、内存映射和临时文件。
+         */
+        void close() {
+            if(references.decrementAndGet() != 0) {
+                return;
+            }
+            if(buffer != null) {
+                free(buffer);
+            }
+            used.addAndGet(-reserved);
+            reserved = 0;
+            if(file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                }catch(IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package me.charghet.tools.requests;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定大小的直接缓冲区池。
+ * <p> 超过缓冲区大小的请求直接分配堆缓冲区，不进入池中。
+ *
+ * @author charghet
+ *
+ */
+class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxPooled;
+    /**
+     * 构造一个缓冲区池。
+     *
+     * @param bufferSize 每个缓冲区的大小（字节）
+     * @param maxPooled 池中最多保留的缓冲区数
+     */
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    /**
+     * 获得每个缓冲区的大小。
+     *
+     * @return 缓冲区大小（字节）
+     */
+    int getBufferSize() {
+        return bufferSize;
+    }
+    /**
+     * 获得一个已清空的缓冲区。
+     *
+     * @param size 需要的最小容量（字节）
+     * @return 缓冲区
+     */
+    ByteBuffer acquire(int size) {
+        if(size > bufferSize) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = pool.poll();
+        if(buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+    /**
+     * 将缓冲区放回池中。
+     *
+     * @param buffer 由 acquire(int size) 获得的缓冲区
+     */
+    void release(ByteBuffer buffer) {
+        if(!buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if(pooled.incrementAndGet() <= maxPooled) {
+            pool.offer(buffer);
+        }else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package me.charghet.tools.requests;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的解析器，包装另一个解析器并在进程内缓存解析结果。
+ * <p> 解析成功的结果缓存ttl毫秒，解析失败的结果缓存negativeTtl毫秒。JDK不提供DNS记录本身的TTL，因此缓存时间由此类设置。
+ * <p> 每次解析都会轮换返回地址的顺序，使请求在主机的多个地址之间轮询。
+ * <p> 可通过 preResolve(Collection&lt;String&gt; hosts) 在启动时预先解析主机名。
+ *
+ * @author charghet
+ *
+ */
+public class CachingResolver implements Resolver {
+    private final Resolver delegate;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long ttl = 60000;
+    private volatile long negativeTtl = 10000;
+    /**
+     * 构造一个包装JVM默认解析方式的缓存解析器。
+     */
+    public CachingResolver() {
+        this(Resolver.SYSTEM);
+    }
+    /**
+     * 构造一个包装指定解析器的缓存解析器。
+     *
+     * @param delegate 实际进行解析的解析器
+     */
+    public CachingResolver(Resolver delegate) {
+        this.delegate = delegate;
+    }
+    /**
+     * 设置解析成功的结果的缓存时间，默认为60000毫秒。
+     *
+     * @param millis 缓存时间（毫秒）
+     */
+    public void setTtl(long millis) {
+        this.ttl = millis;
+    }
+    /**
+     * 设置解析失败的结果的缓存时间，默认为10000毫秒。
+     *
+     * @param millis 缓存时间（毫秒），为0时不缓存解析失败的结果
+     */
+    public void setNegativeTtl(long millis) {
+        this.negativeTtl = millis;
+    }
+    /**
+     * 获得缓存命中的次数。
+     *
+     * @return 缓存命中的次数
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    /**
+     * 获得缓存未命中的次数。
+     *
+     * @return 缓存未命中的次数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    /**
+     * 获得当前缓存的主机名数量，包括已过期但尚未清除的结果。
+     *
+     * @return 缓存的主机名数量
+     */
+    public int size() {
+        return cache.size();
+    }
+    /**
+     * 预先解析一组主机名并缓存结果。
+     * <p> 解析失败的主机名同样会被缓存。
+     *
+     * @param hosts 主机名集合
+     * @return 解析成功的主机名数量
+     */
+    public int preResolve(Collection<String> hosts) {
+        int count = 0;
+        for(String host : hosts) {
+            cache.remove(host.toLowerCase());
+            try {
+                resolve(host);
+                count++;
+            }catch(UnknownHostException e) {
+                // 解析失败的结果已被缓存
+            }
+        }
+        return count;
+    }
+    /**
+     * 清除主机名的缓存结果。
+     *
+     * @param host 主机名
+     */
+    public void invalidate(String host) {
+        cache.remove(host.toLowerCase());
+    }
+    /**
+     * 清除所有缓存结果。
+     */
+    public void clear() {
+        cache.clear();
+    }
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        String key = host.toLowerCase();
+        Entry entry = cache.get(key);
+        long now = System.nanoTime();
+        if(entry != null && now - entry.expires < 0) {
+            hits.incrementAndGet();
+            FlightRecorderEvents.cache("dns", key, "hit");
+        }else {
+            misses.incrementAndGet();
+            FlightRecorderEvents.cache("dns", key, "miss");
+            try {
+                entry = new Entry(delegate.resolve(host), now + TimeUnit.MILLISECONDS.toNanos(ttl));
+            }catch(UnknownHostException e) {
+                entry = new Entry(null, now + TimeUnit.MILLISECONDS.toNanos(negativeTtl));
+            }
+            if(entry.addresses != null ? ttl > 0 : negativeTtl > 0) {
+                cache.put(key, entry);
+            }else {
+                cache.remove(key);
+            }
+        }
+        if(entry.addresses == null) {
+            throw new UnknownHostException(host);
+        }
+        return entry.next();
+    }
+    private static class Entry {
+        final InetAddress[] addresses;
+        final long expires;
+        final AtomicInteger counter = new AtomicInteger();
+        Entry(InetAddress[] addresses, long expires) {
+            this.addresses = addresses;
+            this.expires = expires;
+        }
+        InetAddress[] next() {
+            int n = addresses.length;
+            int offset = (counter.getAndIncrement() & Integer.MAX_VALUE) % n;
+            InetAddress[] result = new InetAddress[n];
+            for(int i = 0;i < n;i++) {
+                result[i] = addresses[(offset + i) % n];
+            }
+            return result;
+        }
+    }
+}
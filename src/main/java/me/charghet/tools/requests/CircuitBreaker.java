@@ -0,0 +1,349 @@
+package me.charghet.tools.requests;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按主机熔断请求的熔断器。
+ * <p> 熔断器有三种状态：
+ * <p> CLOSED：正常放行请求，并在滑动窗口中记录最近请求的结果。当窗口内请求数达到最少请求数，
+ * 且失败率或慢请求率达到阈值时，切换为OPEN。
+ * <p> OPEN：立即以CircuitOpenException拒绝请求，经过打开时长后，切换为HALF_OPEN。
+ * <p> HALF_OPEN：只放行有限数量的试探请求，试探请求全部结束后，根据其失败率和慢请求率切换为CLOSED或OPEN。
+ * <p> 失败是指I/O错误、429或5xx状态码；慢请求是指耗时超过慢请求阈值的请求。
+ * <p> 通过 Session.setCircuitBreaker(CircuitBreaker circuitBreaker) 启用，多个Session可以共享同一个熔断器。
+ *
+ * @author charghet
+ *
+ */
+public class CircuitBreaker {
+    /**
+     * 熔断器的状态。
+     */
+    public enum State {
+        /** 正常放行请求 */
+        CLOSED,
+        /** 拒绝所有请求 */
+        OPEN,
+        /** 只放行试探请求 */
+        HALF_OPEN
+    }
+    /**
+     * 熔断器状态变化的监听器。
+     */
+    public interface Listener {
+        /**
+         * 当主机的熔断器状态发生变化时调用。
+         *
+         * @param host 主机名
+         * @param from 原状态
+         * @param to 新状态
+         */
+        void onStateChange(String host, State from, State to);
+    }
+    private final Map<String, HostCircuit> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private int windowSize = 100;
+    private int minCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 0.8;
+    private long slowCallThreshold = 5000;
+    private long openDuration = 30000;
+    private int halfOpenCalls = 3;
+    private volatile Listener listener;
+    /**
+     * 设置滑动窗口大小（最近请求数），默认为100。
+     *
+     * @param windowSize 滑动窗口大小
+     */
+    public void setWindowSize(int windowSize) {
+        if(windowSize < 1) {
+            throw new IllegalArgumentException("windowSize:" + windowSize);
+        }
+        this.windowSize = windowSize;
+    }
+    /**
+     * 设置计算失败率前滑动窗口中需要的最少请求数，默认为10。
+     *
+     * @param minCalls 最少请求数
+     */
+    public void setMinCalls(int minCalls) {
+        this.minCalls = minCalls;
+    }
+    /**
+     * 设置失败率阈值，默认为0.5。
+     *
+     * @param threshold 失败率阈值，取值范围为(0, 1]
+     */
+    public void setFailureRateThreshold(double threshold) {
+        this.failureRateThreshold = threshold;
+    }
+    /**
+     * 设置慢请求率阈值，默认为0.8。
+     *
+     * @param threshold 慢请求率阈值，取值范围为(0, 1]
+     */
+    public void setSlowCallRateThreshold(double threshold) {
+        this.slowCallRateThreshold = threshold;
+    }
+    /**
+     * 设置慢请求阈值，默认为5000毫秒。
+     *
+     * @param millis 慢请求阈值（毫秒）
+     */
+    public void setSlowCallThreshold(long millis) {
+        this.slowCallThreshold = millis;
+    }
+    /**
+     * 设置熔断器保持打开状态的时长，默认为30000毫秒。
+     *
+     * @param millis 打开时长（毫秒）
+     */
+    public void setOpenDuration(long millis) {
+        this.openDuration = millis;
+    }
+    /**
+     * 设置半开状态下放行的试探请求数，默认为3。
+     *
+     * @param halfOpenCalls 试探请求数
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+    /**
+     * 设置熔断器状态变化的监听器。
+     *
+     * @param listener 监听器，为null时不通知状态变化
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+    /**
+     * 获得指定主机的熔断器状态。
+     *
+     * @param host 主机名
+     * @return 熔断器状态，如果该主机尚无请求记录，则返回CLOSED
+     */
+    public State getState(String host) {
+        HostCircuit circuit = hosts.get(host);
+        return circuit == null ? State.CLOSED : circuit.currentState();
+    }
+    /**
+     * 获得指定主机滑动窗口中的失败率。
+     *
+     * @param host 主机名
+     * @return 失败率，如果该主机尚无请求记录，则返回0
+     */
+    public double getFailureRate(String host) {
+        HostCircuit circuit = hosts.get(host);
+        return circuit == null ? 0 : circuit.rate(false);
+    }
+    /**
+     * 获得指定主机滑动窗口中的慢请求率。
+     *
+     * @param host 主机名
+     * @return 慢请求率，如果该主机尚无请求记录，则返回0
+     */
+    public double getSlowCallRate(String host) {
+        HostCircuit circuit = hosts.get(host);
+        return circuit == null ? 0 : circuit.rate(true);
+    }
+    /**
+     * 获得因熔断器打开而被拒绝的请求总数。
+     *
+     * @return 被拒绝的请求总数
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    /**
+     * 获得熔断器切换为打开状态的总次数。
+     *
+     * @return 打开次数
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+    /**
+     * 重置指定主机的熔断器为CLOSED状态。
+     *
+     * @param host 主机名
+     */
+    public void reset(String host) {
+        HostCircuit circuit = hosts.remove(host);
+        if(circuit != null && circuit.currentState() != State.CLOSED) {
+            notify(host, circuit.currentState(), State.CLOSED);
+        }
+    }
+    /**
+     * 为指定主机申请放行一个请求。
+     * <p> 请求结束后必须调用 Call.record(boolean success) 记录请求结果。
+     *
+     * @param host 主机名
+     * @return 被放行的请求
+     * @throws CircuitOpenException 如果熔断器处于打开状态或半开状态下的试探请求已满
+     */
+    public Call acquire(String host) throws CircuitOpenException {
+        HostCircuit circuit = hosts.computeIfAbsent(host, HostCircuit::new);
+        return new Call(circuit, circuit.acquire());
+    }
+    private void notify(String host, State from, State to) {
+        if(to == State.OPEN) {
+            opened.incrementAndGet();
+        }
+        Listener l = listener;
+        if(l != null) {
+            l.onStateChange(host, from, to);
+        }
+    }
+    /**
+     * 被熔断器放行的请求，记录放行时刻以测量请求耗时，以及放行时熔断器所处的状态。
+     * <p> 熔断器在请求进行期间切换了状态时，该请求的结果不再计入新状态的统计窗口。
+     */
+    public class Call {
+        private final HostCircuit circuit;
+        private final int generation;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean recorded = new AtomicBoolean(false);
+        private Call(HostCircuit circuit, int generation) {
+            this.circuit = circuit;
+            this.generation = generation;
+        }
+        /**
+         * 记录请求结果。
+         * <p> 重复调用此方法不会产生任何效果。
+         *
+         * @param success 请求是否成功
+         */
+        public void record(boolean success) {
+            if(!recorded.compareAndSet(false, true)) {
+                return;
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            circuit.record(generation, !success, latency > slowCallThreshold);
+        }
+        /**
+         * 放弃请求，不记录结果。用于请求在发送前被取消的情况。
+         */
+        public void cancel() {
+            if(!recorded.compareAndSet(false, true)) {
+                return;
+            }
+            circuit.cancel(generation);
+        }
+    }
+    /**
+     * 单个主机的熔断状态。
+     */
+    private class HostCircuit {
+        private static final byte FAILED = 1;
+        private static final byte SLOW = 2;
+        private final String host;
+        private final byte[] window = new byte[windowSize];
+        private int count = 0;
+        private int next = 0;
+        private int failures = 0;
+        private int slows = 0;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int trials = 0;
+        /**
+         * 状态的代数，每次切换状态时加一，用于丢弃在之前的状态下放行的请求的结果。
+         */
+        private int generation = 0;
+        HostCircuit(String host) {
+            this.host = host;
+        }
+        int acquire() throws CircuitOpenException {
+            State from = null;
+            int admitted;
+            synchronized(this) {
+                if(state == State.OPEN) {
+                    if(System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(openDuration)) {
+                        rejected.incrementAndGet();
+                        throw new CircuitOpenException(host);
+                    }
+                    from = transition(State.HALF_OPEN);
+                }
+                if(state == State.HALF_OPEN) {
+                    if(trials >= halfOpenCalls) {
+                        rejected.incrementAndGet();
+                        throw new CircuitOpenException(host);
+                    }
+                    trials++;
+                }
+                admitted = generation;
+            }
+            if(from != null) {
+                CircuitBreaker.this.notify(host, from, State.HALF_OPEN);
+            }
+            return admitted;
+        }
+        void record(int admitted, boolean failed, boolean slow) {
+            State from;
+            State to;
+            synchronized(this) {
+                // 在之前的状态下放行、完成得晚的请求不计入当前状态的统计窗口
+                if(state == State.OPEN || admitted != generation) {
+                    return;
+                }
+                if(count == window.length) {
+                    byte old = window[next];
+                    failures -= old & FAILED;
+                    slows -= (old & SLOW) >> 1;
+                }else {
+                    count++;
+                }
+                window[next] = (byte)((failed ? FAILED : 0) | (slow ? SLOW : 0));
+                next = (next + 1) % window.length;
+                failures += failed ? 1 : 0;
+                slows += slow ? 1 : 0;
+                from = state;
+                if(state == State.HALF_OPEN) {
+                    if(count < halfOpenCalls) {
+                        return;
+                    }
+                    to = tripped() ? State.OPEN : State.CLOSED;
+                }else if(count >= minCalls && tripped()) {
+                    to = State.OPEN;
+                }else {
+                    return;
+                }
+                transition(to);
+            }
+            CircuitBreaker.this.notify(host, from, to);
+        }
+        private boolean tripped() {
+            return failures >= failureRateThreshold * count || slows >= slowCallRateThreshold * count;
+        }
+        private State transition(State to) {
+            State from = state;
+            state = to;
+            count = 0;
+            next = 0;
+            failures = 0;
+            slows = 0;
+            trials = 0;
+            generation++;
+            if(to == State.OPEN) {
+                openedAt = System.nanoTime();
+            }
+            return from;
+        }
+        synchronized void cancel(int admitted) {
+            if(state == State.HALF_OPEN && admitted == generation && trials > 0) {
+                trials--;
+            }
+        }
+        synchronized State currentState() {
+            return state;
+        }
+        synchronized double rate(boolean slow) {
+            return count == 0 ? 0 : (double)(slow ? slows : failures) / count;
+        }
+    }
+}
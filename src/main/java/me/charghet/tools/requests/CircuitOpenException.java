@@ -0,0 +1,28 @@
+package me.charghet.tools.requests;
+
+/**
+ * 目标主机的熔断器处于打开状态，请求被立即拒绝。
+ * @author charghet
+ *
+ */
+public class CircuitOpenException extends RequestException{
+    private static final long serialVersionUID = 1L;
+    private final String host;
+    /**
+     * 构造带指定主机名的新异常。
+     * 
+     * @param host 被熔断的主机名
+     */
+    public CircuitOpenException(String host) {
+        super("熔断器已打开，拒绝请求：" + host);
+        this.host = host;
+    }
+    /**
+     * 获得被熔断的主机名。
+     * 
+     * @return 主机名
+     */
+    public String getHost() {
+        return host;
+    }
+}
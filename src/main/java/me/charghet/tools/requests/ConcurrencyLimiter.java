@@ -0,0 +1,294 @@
+package me.charghet.tools.requests;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按主机自适应调整并发请求数的限流器。
+ * <p> 采用AIMD（加性增、乘性减）算法：请求成功且耗时低于延迟阈值时，若并发已接近上限，则上限增加 1/上限，
+ * 即上限个请求（约一个往返）成功后上限加一；
+ * 请求失败（I/O错误、429或5xx状态码）或耗时超过延迟阈值时，上限乘以回退系数；
+ * 上一次减小上限之前已发出的请求不再减小上限，即每个往返最多减小一次。
+ * <p> 超出上限的请求会排队等待，等待超过最长等待时间或队列已满时立即抛出RequestException。
+ * <p> 通过 Session.setConcurrencyLimiter(ConcurrencyLimiter limiter) 启用，多个Session可以共享同一个限流器。
+ *
+ * @author charghet
+ *
+ */
+public class ConcurrencyLimiter {
+    private final Map<String, HostLimit> hosts = new ConcurrentHashMap<>();
+    private int initialLimit;
+    private int minLimit = 1;
+    private int maxLimit;
+    private double backoffRatio = 0.9;
+    private long latencyThreshold = 2000;
+    private long maxWait = 0;
+    private int maxQueue = Integer.MAX_VALUE;
+    /**
+     * 构造一个初始上限为10，最大上限为200的限流器。
+     */
+    public ConcurrencyLimiter() {
+        this(10, 200);
+    }
+    /**
+     * 构造一个指定初始上限和最大上限的限流器。
+     *
+     * @param initialLimit 每个主机的初始并发上限
+     * @param maxLimit 每个主机的最大并发上限
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        if(initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("initialLimit:" + initialLimit + " maxLimit:" + maxLimit);
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+    /**
+     * 设置每个主机的最小并发上限，默认为1。
+     *
+     * @param minLimit 最小并发上限
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = Math.max(1, minLimit);
+    }
+    /**
+     * 获得每个主机的最小并发上限。
+     *
+     * @return 最小并发上限
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+    /**
+     * 获得每个主机的最大并发上限。
+     *
+     * @return 最大并发上限
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+    /**
+     * 设置请求失败时的回退系数，默认为0.9。
+     *
+     * @param backoffRatio 回退系数，取值范围为(0, 1)
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        if(backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio:" + backoffRatio);
+        }
+        this.backoffRatio = backoffRatio;
+    }
+    /**
+     * 设置延迟阈值，耗时超过此值的请求视为过载信号，默认为2000毫秒。
+     *
+     * @param millis 延迟阈值（毫秒）
+     */
+    public void setLatencyThreshold(long millis) {
+        this.latencyThreshold = millis;
+    }
+    /**
+     * 设置超出上限的请求的最长等待时间，默认为0，即立即拒绝。
+     *
+     * @param millis 最长等待时间（毫秒）
+     */
+    public void setMaxWait(long millis) {
+        this.maxWait = millis;
+    }
+    /**
+     * 设置每个主机的最大排队请求数，默认不限制。
+     *
+     * @param maxQueue 最大排队请求数
+     */
+    public void setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+    }
+    /**
+     * 获得指定主机当前的并发上限。
+     *
+     * @param host 主机名
+     * @return 并发上限，如果该主机尚无请求记录，则返回初始上限
+     */
+    public int getLimit(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? initialLimit : limit.getLimit();
+    }
+    /**
+     * 获得指定主机当前正在进行的请求数。
+     *
+     * @param host 主机名
+     * @return 正在进行的请求数
+     */
+    public int getInflight(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? 0 : limit.inflight;
+    }
+    /**
+     * 获得指定主机的平滑平均延迟。
+     *
+     * @param host 主机名
+     * @return 平滑平均延迟（毫秒），如果该主机尚无请求记录，则返回0
+     */
+    public long getAverageLatency(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? 0 : (long)limit.averageLatency;
+    }
+    /**
+     * 获得指定主机被计为失败的请求数。
+     *
+     * @param host 主机名
+     * @return 失败的请求数
+     */
+    public long getErrorCount(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? 0 : limit.errors;
+    }
+    /**
+     * 获得指定主机因超出上限而被拒绝的请求数。
+     *
+     * @param host 主机名
+     * @return 被拒绝的请求数
+     */
+    public long getRejectedCount(String host) {
+        HostLimit limit = hosts.get(host);
+        return limit == null ? 0 : limit.rejected;
+    }
+    /**
+     * 为指定主机申请一个并发许可。
+     * <p> 请求结束后必须调用 Permit.release(boolean success) 归还许可。
+     *
+     * @param host 主机名
+     * @return 并发许可
+     * @throws RequestException 如果等待超时、队列已满或等待过程中被中断
+     */
+    public Permit acquire(String host) throws RequestException {
+        HostLimit limit = hosts.computeIfAbsent(host, h -> new HostLimit(initialLimit));
+        limit.acquire(host);
+        return new Permit(limit);
+    }
+    /**
+     * 并发许可，记录申请时刻以测量请求耗时。
+     */
+    public class Permit {
+        private final HostLimit limit;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private Permit(HostLimit limit) {
+            this.limit = limit;
+        }
+        /**
+         * 归还许可，并根据请求结果和耗时调整并发上限。
+         * <p> 重复调用此方法不会产生任何效果。
+         *
+         * @param success 请求是否成功
+         */
+        public void release(boolean success) {
+            if(!released.compareAndSet(false, true)) {
+                return;
+            }
+            limit.release(success, start, System.nanoTime());
+        }
+        /**
+         * 归还许可，不调整并发上限，用于请求未发出就因本地错误结束的情况。
+         */
+        void cancel() {
+            if(!released.compareAndSet(false, true)) {
+                return;
+            }
+            limit.cancel();
+        }
+    }
+    /**
+     * 单个主机的限流状态。
+     */
+    private class HostLimit {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private double limit;
+        private volatile int inflight = 0;
+        private int waiting = 0;
+        private volatile double averageLatency = 0;
+        private volatile long errors = 0;
+        private volatile long rejected = 0;
+        private long lastDecrease = System.nanoTime();
+        HostLimit(int initialLimit) {
+            this.limit = initialLimit;
+        }
+        int getLimit() {
+            lock.lock();
+            try {
+                return (int)limit;
+            }finally {
+                lock.unlock();
+            }
+        }
+        void acquire(String host) throws RequestException {
+            lock.lock();
+            try {
+                if(inflight < (int)limit) {
+                    inflight++;
+                    return;
+                }
+                if(maxWait <= 0 || waiting >= maxQueue) {
+                    rejected++;
+                    throw new RequestException("并发请求数已达上限：" + host + " limit=" + (int)limit);
+                }
+                long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+                waiting++;
+                try {
+                    while(inflight >= (int)limit) {
+                        if(nanos <= 0) {
+                            rejected++;
+                            throw new RequestException("等待并发许可超时：" + host + " limit=" + (int)limit);
+                        }
+                        nanos = available.awaitNanos(nanos);
+                    }
+                    inflight++;
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RequestException(e.toString(), e);
+                }finally {
+                    waiting--;
+                }
+            }finally {
+                lock.unlock();
+            }
+        }
+        void release(boolean success, long start, long end) {
+            long latency = TimeUnit.NANOSECONDS.toMillis(end - start);
+            lock.lock();
+            try {
+                averageLatency = averageLatency == 0 ? latency : averageLatency * 0.9 + latency * 0.1;
+                if(!success || latency > latencyThreshold) {
+                    if(!success) {
+                        errors++;
+                    }
+                    // 同一个往返中的请求往往同时失败或变慢，只有在上一次减小之后发出的请求才再次减小
+                    if(start - lastDecrease > 0) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                        lastDecrease = end;
+                    }
+                }else if(inflight * 2 >= (int)limit) {
+                    // 每个成功的请求只增加 1/limit，并发达到上限时每个往返约加一，而不是加上正在进行的请求数
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+                inflight--;
+                available.signalAll();
+            }finally {
+                lock.unlock();
+            }
+        }
+        void cancel() {
+            lock.lock();
+            try {
+                inflight--;
+                available.signalAll();
+            }finally {
+                lock.unlock();
+            }
+        }
+    }
+}
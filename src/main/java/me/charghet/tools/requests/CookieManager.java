@@ -2,29 +2,41 @@ package me.charghet.tools.requests;
 
 import java.net.HttpCookie;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 用于保存cookie信息的类。
+ * <p> 此类是线程安全的：cookie信息保存在CopyOnWriteArrayList中，读取时无需加锁；
+ * 添加cookie信息时使用ReentrantLock，在虚拟线程中不会固定载体线程。
  * @author charghet
  *
  */
 public class CookieManager {
-    private List<HttpCookie> list = new Vector<>();
+    private List<HttpCookie> list = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
     /**
      * 添加一条cookie信息。
      * 
      * @param cookie HttpCookie
      */
     public void add(HttpCookie cookie) {
-        int i;
-        for(i = 0;i < list.size();i++) {
-            if(list.get(i).getName().equals(cookie.getName())) {
-                list.set(i, cookie);
-                break;
+        lock.lock();
+        try {
+            int i;
+            for(i = 0;i < list.size();i++) {
+                if(list.get(i).getName().equals(cookie.getName())) {
+                    list.set(i, cookie);
+                    break;
+                }
             }
-        }
-        if(i == list.size()) {
-            list.add(cookie);
+            boolean replaced = i < list.size();
+            if(!replaced) {
+                list.add(cookie);
+            }
+            FlightRecorderEvents.cookie(cookie.getName(), cookie.getDomain(), cookie.getPath(), replaced);
+        }finally {
+            lock.unlock();
         }
     }
     /**
@@ -84,14 +96,14 @@ public class CookieManager {
      * @return 包含所有cookie信息的字符串
      */
     public String getString() {
-        if(list.size() == 0) {
-            return "";
-        }
         StringBuilder cookies = new StringBuilder();
         for(HttpCookie cookie: list) {
             String s = cookie.getName() + "=" + cookie.getValue() + "; ";
             cookies.append(s);
         }
+        if(cookies.length() == 0) {
+            return "";
+        }
         return cookies.substring(0, cookies.length()-2); 
     }
     /**
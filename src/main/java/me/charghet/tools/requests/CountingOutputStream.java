@@ -0,0 +1,41 @@
+package me.charghet.tools.requests;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 统计写入字节数的输出流。
+ *
+ * @author charghet
+ *
+ */
+class CountingOutputStream extends FilterOutputStream {
+    private long count = 0;
+    /**
+     * 构造一个写入目标输出流的计数流。
+     *
+     * @param out 目标输出流
+     */
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+    /**
+     * 获得已写入的字节数。
+     *
+     * @return 字节数
+     */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,175 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 增量解析 text/event-stream 格式的事件流。
+ * <p> 行缓冲区和数据缓冲区可重复使用，大小有上限，内存占用与事件流的长度无关。
+ *
+ * @author charghet
+ *
+ */
+class EventParser implements LineSplitter.Handler {
+    private static final int INITIAL_SIZE = 256;
+    private static final int RETAINED_SIZE = 8192;
+    private static final byte[] NEWLINE = {'\n'};
+    private final Consumer<ServerSentEvent> listener;
+    private final LineSplitter splitter;
+    private final int maxEventSize;
+    private byte[] data = new byte[INITIAL_SIZE];
+    private int dataLength = 0;
+    private String event = null;
+    private String lastEventId = "";
+    private String idBuffer = "";
+    private long retry = -1;
+    private boolean first = true;
+    /**
+     * 构造一个事件流解析器。
+     *
+     * @param listener 接收事件的操作
+     * @param maxEventSize 一个事件的数据和一行的最大字节数
+     */
+    EventParser(Consumer<ServerSentEvent> listener, int maxEventSize) {
+        this.listener = listener;
+        this.splitter = new LineSplitter(maxEventSize);
+        this.maxEventSize = maxEventSize;
+    }
+    /**
+     * 传入读取到的字节并继续解析，每解析完一个事件调用一次接收事件的操作。
+     *
+     * @param bytes 字节数组
+     * @param offset 起始位置
+     * @param count 字节数
+     * @throws IOException 如果一行或一个事件超过最大字节数
+     */
+    void feed(byte[] bytes, int offset, int count) throws IOException {
+        splitter.feed(bytes, offset, count, this);
+    }
+    /**
+     * 重新连接时调用，丢弃未完成的事件及其字段，保留最近的事件id和重连间隔。
+     */
+    void reset() {
+        splitter.reset();
+        dataLength = 0;
+        event = null;
+        idBuffer = lastEventId;
+        first = true;
+    }
+    /**
+     * 获得最近一个完整事件的id。
+     *
+     * @return 事件id，如果未收到过，则返回空字符串
+     */
+    String getLastEventId() {
+        return lastEventId;
+    }
+    /**
+     * 设置最近一次收到的事件id。
+     *
+     * @param lastEventId 事件id
+     */
+    void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+        this.idBuffer = lastEventId;
+    }
+    /**
+     * 获得服务端通过 retry 字段指定的重连间隔。
+     *
+     * @return 重连间隔（毫秒），如果服务端未指定，则返回-1
+     */
+    long getRetry() {
+        return retry;
+    }
+    @Override
+    public void line(byte[] bytes, int length) throws IOException {
+        int start = 0;
+        if(first) {
+            first = false;
+            if(length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+                start = 3;
+            }
+        }
+        if(length == start) {
+            dispatch();
+            return;
+        }
+        if(bytes[start] == ':') {
+            return;
+        }
+        int colon = -1;
+        for(int i = start;i < length;i++) {
+            if(bytes[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        String field;
+        int valueStart;
+        if(colon == -1) {
+            field = new String(bytes, start, length - start, StandardCharsets.UTF_8);
+            valueStart = length;
+        }else {
+            field = new String(bytes, start, colon - start, StandardCharsets.UTF_8);
+            valueStart = colon + 1;
+            if(valueStart < length && bytes[valueStart] == ' ') {
+                valueStart++;
+            }
+        }
+        switch(field) {
+            case "data":
+                append(bytes, valueStart, length - valueStart);
+                append(NEWLINE, 0, 1);
+                break;
+            case "event":
+                event = new String(bytes, valueStart, length - valueStart, StandardCharsets.UTF_8);
+                break;
+            case "id":
+                String id = new String(bytes, valueStart, length - valueStart, StandardCharsets.UTF_8);
+                if(id.indexOf('\0') == -1) {
+                    idBuffer = id;
+                }
+                break;
+            case "retry":
+                String value = new String(bytes, valueStart, length - valueStart, StandardCharsets.US_ASCII);
+                if(!value.isEmpty() && value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    try {
+                        retry = Long.parseLong(value);
+                    }catch(NumberFormatException e) {
+                        // 忽略超出范围的值
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    private void append(byte[] bytes, int offset, int count) throws IOException {
+        if(dataLength + count > data.length) {
+            if(dataLength + count > maxEventSize) {
+                throw new IOException("事件超过最大长度：" + maxEventSize);
+            }
+            byte[] larger = new byte[Math.min(maxEventSize, Math.max(data.length * 2, dataLength + count))];
+            System.arraycopy(data, 0, larger, 0, dataLength);
+            data = larger;
+        }
+        System.arraycopy(bytes, offset, data, dataLength, count);
+        dataLength += count;
+    }
+    private void dispatch() {
+        lastEventId = idBuffer;
+        if(dataLength == 0) {
+            event = null;
+            return;
+        }
+        String text = new String(data, 0, dataLength - 1, StandardCharsets.UTF_8);
+        String type = event == null || event.isEmpty() ? "message" : event;
+        dataLength = 0;
+        event = null;
+        if(data.length > RETAINED_SIZE) {
+            data = new byte[INITIAL_SIZE];
+        }
+        listener.accept(new ServerSentEvent(lastEventId, type, text));
+    }
+}
@@ -0,0 +1,220 @@
+package me.charghet.tools.requests;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端推送的事件流（Server-Sent Events）的订阅。
+ * <p> 通过 Session.eventSource(String url, EventSourceListener listener) 创建，在Session的线程池中持续读取事件流，
+ * 连接断开后自动重新连接，并通过 Last-Event-ID 请求头从最近收到的事件之后继续接收。
+ * <p> 服务端返回204状态码，或除408、429以外的4xx状态码时停止重新连接。
+ * <p> 读取缓冲区的大小固定，一个事件的数据最多为1MB，内存占用与事件流的长度无关。
+ * <p> 连接和读取的超时时间使用Session的超时设置，总时限不适用于事件流。
+ *
+ * @author charghet
+ *
+ */
+public class EventSource implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_EVENT_SIZE = 1024 * 1024;
+    private final Session session;
+    private final String url;
+    private final EventSourceListener listener;
+    private final EventParser parser;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile long retry = 3000;
+    private volatile String lastEventId;
+    private volatile Exchange current;
+    private volatile int connections = 0;
+    /**
+     * 构造一个事件流的订阅。
+     *
+     * @param session 发送请求的Session
+     * @param url 目标url地址
+     * @param lastEventId 最近收到的事件id，为null时不发送
+     * @param listener 接收事件的监听器
+     */
+    EventSource(Session session, String url, String lastEventId, EventSourceListener listener) {
+        this.session = session;
+        this.url = url;
+        this.listener = listener;
+        this.parser = new EventParser(event -> {
+            this.lastEventId = event.getId();
+            try {
+                listener.onEvent(event);
+            }catch(RuntimeException e) {
+                // 监听器中的异常不影响后续事件的读取
+            }
+        }, MAX_EVENT_SIZE);
+        if(lastEventId != null) {
+            parser.setLastEventId(lastEventId);
+        }
+        this.lastEventId = lastEventId;
+    }
+    /**
+     * 持续读取事件流，直到被关闭。
+     */
+    void run() {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        while(!isClosed()) {
+            parser.reset();
+            try {
+                read(bytes);
+            }catch(RequestException e) {
+                report(e);
+            }catch(IOException | RuntimeException e) {
+                // 解析响应时的RuntimeException同样按连接失败处理，重新连接而不是结束读取线程
+                report(new RequestException(e.toString(), e));
+            }finally {
+                Exchange exchange = current;
+                current = null;
+                if(exchange != null) {
+                    exchange.cancel();
+                }
+            }
+            if(isClosed()) {
+                break;
+            }
+            if(parser.getRetry() >= 0) {
+                retry = parser.getRetry();
+            }
+            try {
+                closed.await(retry, TimeUnit.MILLISECONDS);
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed.countDown();
+            }
+        }
+    }
+    /**
+     * 建立一次连接并读取事件流，直到连接断开。
+     * <p> 连接直接建立在Socket上，以便在其他线程中关闭连接时立即停止读取。
+     *
+     * @param bytes 读取缓冲区
+     * @throws IOException 如果在读取过程中发生I/O错误
+     * @throws RequestException 如果请求失败或连接断开
+     */
+    private void read(byte[] bytes) throws IOException, RequestException {
+        Timeout timeout = session.getTimeout();
+        URL target = session.resolveURL("GET", url);
+        for(int hops = 0;;hops++) {
+            Exchange exchange = new Exchange(new Timeout(timeout.getConnectTimeout(), timeout.getReadTimeout(), 0), 0);
+            current = exchange;
+            if(isClosed()) {
+                return;
+            }
+            Socket socket = session.openSocket(target, exchange);
+            connections++;
+            Map<String, String> fields = session.getRequestFields();
+            fields.put("Accept", "text/event-stream");
+            fields.put("Cache-Control", "no-cache");
+            String id = parser.getLastEventId();
+            if(!id.isEmpty()) {
+                fields.put("Last-Event-ID", id);
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(NioRequest.encode("GET", target, fields, null));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.limit(0);
+            ResponseParser response = new ResponseParser(false);
+            while(!response.feedHeaders(buffer)) {
+                fill(in, buffer);
+            }
+            session.setCookies(response.getHeaders());
+            int code = response.getStatusCode();
+            URL next = session.redirectTarget(target, code, response.getHeader("Location"), session.getRedirectPolicy(), hops);
+            if(next != null) {
+                exchange.cancel();
+                target = next;
+                continue;
+            }
+            if(code == 204 || (code >= 400 && code < 500 && code != 408 && code != 429)) {
+                report(new RequestException("事件流请求失败，停止重新连接：" + code));
+                closed.countDown();
+                return;
+            }
+            if(code != 200) {
+                throw new RequestException("事件流请求失败：" + code);
+            }
+            String type = response.getHeader("Content-Type");
+            if(type == null || !type.toLowerCase().startsWith("text/event-stream")) {
+                throw new RequestException("响应不是事件流：" + type);
+            }
+            response.setSink(parser::feed);
+            while(!response.feed(buffer)) {
+                fill(in, buffer);
+            }
+            throw new RequestException("事件流连接已断开");
+        }
+    }
+    private static void fill(InputStream in, ByteBuffer buffer) throws IOException {
+        int n = in.read(buffer.array());
+        if(n == -1) {
+            throw new IOException("事件流连接已断开");
+        }
+        buffer.clear();
+        buffer.limit(n);
+    }
+    private void report(RequestException e) {
+        if(!isClosed()) {
+            try {
+                listener.onError(e);
+            }catch(RuntimeException ex) {
+                // 监听器中的异常不影响重新连接
+            }
+        }
+    }
+    /**
+     * 判断是否已关闭。
+     *
+     * @return 如果已关闭，返回true，否则返回false
+     */
+    public boolean isClosed() {
+        return closed.getCount() == 0;
+    }
+    /**
+     * 获得最近收到的事件id。
+     *
+     * @return 事件id，如果未收到过，则返回null
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+    /**
+     * 获得当前的重连间隔。
+     *
+     * @return 重连间隔（毫秒）
+     */
+    public long getRetry() {
+        return retry;
+    }
+    /**
+     * 获得已建立的连接次数，包括重新连接。
+     *
+     * @return 连接次数
+     */
+    public int getConnectionCount() {
+        return connections;
+    }
+    /**
+     * 停止读取事件流并断开连接。
+     */
+    @Override
+    public void close() {
+        closed.countDown();
+        Exchange exchange = current;
+        if(exchange != null) {
+            exchange.cancel();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package me.charghet.tools.requests;
+
+/**
+ * 接收服务端推送事件的监听器。
+ * <p> 所有方法都在EventSource的读取线程中按顺序调用，耗时的操作会延迟后续事件的读取。
+ *
+ * @author charghet
+ *
+ */
+public interface EventSourceListener {
+    /**
+     * 收到一个事件时调用。
+     * <p> 抛出的RuntimeException会被忽略，不影响后续事件的读取。
+     *
+     * @param event 事件
+     */
+    void onEvent(ServerSentEvent event);
+    /**
+     * 连接失败或断开时调用，之后EventSource会在重连间隔后重新连接，除非已被关闭。
+     * <p> 抛出的RuntimeException会被忽略。
+     *
+     * @param e 发生的错误
+     */
+    void onError(RequestException e);
+}
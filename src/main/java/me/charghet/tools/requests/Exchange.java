@@ -0,0 +1,226 @@
+package me.charghet.tools.requests;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次请求交换的状态，用于在其他线程中取消正在进行的请求，以及在总时限到达时断开连接。
+ *
+ * @author charghet
+ *
+ */
+class Exchange {
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "requests-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timeout timeout;
+    private final long deadline;
+    private volatile Runnable canceller;
+    private volatile boolean cancelled = false;
+    private volatile boolean expired = false;
+    private ScheduledFuture<?> watchdog;
+    private RequestListener listener;
+    private RequestEvent event;
+    private int hops = 0;
+    /**
+     * 构造一个指定超时设置和截止时刻的请求交换。
+     * <p> 如果当前线程处于一个作用域中，则注册到该作用域，作用域取消时一并取消本次请求。
+     *
+     * @param timeout 超时设置
+     * @param deadline 截止时刻（System.nanoTime()），为0时不限制
+     */
+    Exchange(Timeout timeout, long deadline) {
+        this.timeout = timeout;
+        this.deadline = deadline;
+        Scope scope = Scope.current();
+        if(scope != null) {
+            scope.register(this);
+        }
+    }
+    /**
+     * 根据总时限计算请求的截止时刻。
+     *
+     * @param timeout 超时设置
+     * @return 截止时刻（System.nanoTime()），如果不限制总时限，则返回0
+     */
+    static long deadlineOf(Timeout timeout) {
+        if(timeout.getDeadline() <= 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout.getDeadline());
+        return deadline == 0 ? 1 : deadline;
+    }
+    /**
+     * 获得距离截止时刻的剩余时间。
+     *
+     * @param deadline 截止时刻（System.nanoTime()），为0时不限制
+     * @return 剩余时间（毫秒），如果不限制总时限，则返回Long.MAX_VALUE
+     */
+    static long remaining(long deadline) {
+        if(deadline == 0) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+    /**
+     * 获得本次请求交换的超时设置。
+     *
+     * @return 超时设置
+     */
+    Timeout getTimeout() {
+        return timeout;
+    }
+    /**
+     * 获得本次请求交换的截止时刻。
+     *
+     * @return 截止时刻（System.nanoTime()），为0时不限制
+     */
+    long getDeadline() {
+        return deadline;
+    }
+    /**
+     * 关联本次请求使用的连接，按超时设置和剩余时间设置连接的超时时间，并在截止时刻断开连接。
+     * <p> 如果请求已被取消，则立即断开该连接。
+     *
+     * @param connection 本次请求使用的连接
+     * @throws RequestException 如果已超过截止时刻
+     */
+    void attach(HttpURLConnection connection) throws RequestException {
+        connection.setConnectTimeout(getConnectTimeout());
+        connection.setReadTimeout(getReadTimeout());
+        attach(connection::disconnect);
+    }
+    /**
+     * 关联取消本次请求的操作，并在截止时刻执行该操作。
+     * <p> 如果请求已被取消，则立即执行该操作。
+     *
+     * @param canceller 取消本次请求的操作
+     * @throws RequestException 如果已超过截止时刻
+     */
+    void attach(Runnable canceller) throws RequestException {
+        this.canceller = canceller;
+        long remaining = remaining(deadline);
+        if(remaining <= 0) {
+            expired = true;
+            throw expiredException();
+        }
+        if(deadline != 0) {
+            finish();
+            watchdog = WATCHDOG.schedule(() -> {
+                expired = true;
+                cancel();
+            }, remaining, TimeUnit.MILLISECONDS);
+        }
+        if(cancelled) {
+            canceller.run();
+        }
+    }
+    /**
+     * 获得按剩余时间缩短后的连接超时时间。
+     *
+     * @return 连接超时时间（毫秒），为0时不限制
+     */
+    int getConnectTimeout() {
+        return bound(timeout.getConnectTimeout(), remaining(deadline));
+    }
+    /**
+     * 获得按剩余时间缩短后的读取超时时间。
+     *
+     * @return 读取超时时间（毫秒），为0时不限制
+     */
+    int getReadTimeout() {
+        return bound(timeout.getReadTimeout(), remaining(deadline));
+    }
+    /**
+     * 结束本次请求交换，停止截止时刻的计时。
+     * <p> 重定向时，每次关联新的连接前也会调用此方法。
+     */
+    void finish() {
+        ScheduledFuture<?> watchdog = this.watchdog;
+        if(watchdog != null) {
+            watchdog.cancel(false);
+        }
+    }
+    /**
+     * 设置当前连接上报告各个阶段的监听器和请求事件。
+     * <p> 重定向时，每个连接使用新的请求事件。
+     *
+     * @param listener 监听器，为null时不报告
+     * @param event 请求事件
+     */
+    void observe(RequestListener listener, RequestEvent event) {
+        this.listener = listener;
+        this.event = event;
+    }
+    /**
+     * 获得当前连接上报告各个阶段的监听器。
+     *
+     * @return 监听器，如果不报告，则返回null
+     */
+    RequestListener getListener() {
+        return listener;
+    }
+    /**
+     * 获得当前连接的请求事件。
+     *
+     * @return 请求事件，如果不报告，则返回null
+     */
+    RequestEvent getEvent() {
+        return event;
+    }
+    /**
+     * 获得本次请求交换中已完成的连接数，并将其加一。
+     * <p> 大于0时表示当前连接是执行重定向时发出的。
+     *
+     * @return 已完成的连接数
+     */
+    int nextHop() {
+        return hops++;
+    }
+    /**
+     * 取消请求，断开已关联的连接。
+     */
+    void cancel() {
+        cancelled = true;
+        Runnable canceller = this.canceller;
+        if(canceller != null) {
+            canceller.run();
+        }
+    }
+    /**
+     * 判断请求是否已被取消。
+     *
+     * @return 如果请求已被取消，返回true，否则返回false
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+    /**
+     * 判断请求是否因超过截止时刻而被取消。
+     *
+     * @return 如果请求已超过截止时刻，返回true，否则返回false
+     */
+    boolean isExpired() {
+        return expired;
+    }
+    /**
+     * 构造表示请求超过总时限的异常。
+     *
+     * @return RequestException
+     */
+    RequestException expiredException() {
+        return new RequestException("请求超过总时限：" + timeout.getDeadline() + "ms");
+    }
+    private static int bound(int timeout, long remaining) {
+        if(remaining == Long.MAX_VALUE) {
+            return timeout;
+        }
+        int limit = (int)Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+        return timeout == 0 ? limit : Math.min(timeout, limit);
+    }
+}
@@ -0,0 +1,314 @@
+package me.charghet.tools.requests;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 向JDK Flight Recorder（JFR）报告请求、cookie和缓存事件的工具类。
+ * <p> 定义了以下事件，分类均为 "HTTP Client"：
+ * <ul>
+ * <li>me.charghet.requests.HttpRequest：每次实际发送的请求，包括重定向和重试，含请求方法、主机、url、状态码、
+ * 发送和收到的字节数、获得连接、发送完毕和收到响应头所用的时间，以及失败时的错误信息。事件的持续时间为整个请求交换。</li>
+ * <li>me.charghet.requests.CookieStored：CookieManager保存或替换一条cookie。</li>
+ * <li>me.charghet.requests.CacheLookup：重定向缓存、DNS缓存或js脚本缓存的一次查找及其结果。</li>
+ * </ul>
+ * <p> 由于本库兼容Java 8，事件通过反射调用 jdk.jfr.EventFactory 动态定义，JDK中没有jdk.jfr模块时不报告任何事件。
+ * <p> 没有正在进行的录制时，各个方法只读取一个volatile变量，不创建事件对象；事件类型在第一次录制开始后才定义。
+ * 录制中可以在JFR的设置中单独关闭某个事件，或为HttpRequest设置阈值。
+ *
+ * @author charghet
+ *
+ */
+final class FlightRecorderEvents {
+    private static final String CATEGORY = "HTTP Client";
+    private static volatile boolean recording;
+    private static volatile Types types;
+    private static final boolean AVAILABLE = register();
+    private FlightRecorderEvents() {
+    }
+    /**
+     * 判断当前是否有正在进行的JFR录制。
+     *
+     * @return 如果有正在进行的录制，则返回true
+     */
+    static boolean isRecording() {
+        return recording;
+    }
+    /**
+     * 获得同时向JFR报告请求事件的监听器。
+     *
+     * @param listener 原有的监听器，可以为null
+     * @return 没有正在进行的录制时返回原有的监听器；否则返回先报告JFR事件、再调用原有监听器的监听器
+     */
+    static RequestListener with(RequestListener listener) {
+        if(!recording) {
+            return listener;
+        }
+        Types t = types();
+        return t == null ? listener : new Recorder(t, listener);
+    }
+    /**
+     * 报告CookieManager保存了一条cookie。
+     *
+     * @param name cookie的名称
+     * @param domain cookie的域，可以为null
+     * @param path cookie的路径，可以为null
+     * @param replaced 是否替换了同名的cookie
+     */
+    static void cookie(String name, String domain, String path, boolean replaced) {
+        if(!recording) {
+            return;
+        }
+        Types t = types();
+        if(t != null) {
+            t.commit(t.cookie, name, domain, path, replaced);
+        }
+    }
+    /**
+     * 报告一次缓存查找。
+     *
+     * @param cache 缓存名称，如 "redirect"、"dns"、"script"
+     * @param key 查找的键
+     * @param result 查找结果，如 "hit"、"miss"、"revalidated"、"stale"
+     */
+    static void cache(String cache, String key, String result) {
+        if(!recording) {
+            return;
+        }
+        Types t = types();
+        if(t != null) {
+            t.commit(t.cache, cache, key, result);
+        }
+    }
+    /**
+     * 注册监听JFR录制状态的FlightRecorderListener。
+     * <p> 注册不会初始化Flight Recorder，初始化后以及每次录制状态改变时重新判断是否有正在进行的录制。
+     *
+     * @return 如果注册成功，则返回true
+     */
+    private static boolean register() {
+        try {
+            Class<?> recorderType = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> listenerType = Class.forName("jdk.jfr.FlightRecorderListener");
+            Method getRecorder = recorderType.getMethod("getFlightRecorder");
+            Method getRecordings = recorderType.getMethod("getRecordings");
+            Method getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+            InvocationHandler handler = (proxy, method, args) -> {
+                if(method.getDeclaringClass() == Object.class) {
+                    switch(method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            return "FlightRecorderEvents";
+                    }
+                }
+                boolean running = false;
+                for(Object r : (List<?>)getRecordings.invoke(getRecorder.invoke(null))) {
+                    if("RUNNING".equals(String.valueOf(getState.invoke(r)))) {
+                        running = true;
+                        break;
+                    }
+                }
+                recording = running;
+                return null;
+            };
+            Object listener = Proxy.newProxyInstance(listenerType.getClassLoader(), new Class<?>[] {listenerType}, handler);
+            recorderType.getMethod("addListener", listenerType).invoke(null, listener);
+            return true;
+        }catch(Throwable e) {
+            return false;
+        }
+    }
+    private static Types types() {
+        Types t = types;
+        if(t == null && AVAILABLE) {
+            synchronized(FlightRecorderEvents.class) {
+                t = types;
+                if(t == null) {
+                    try {
+                        t = new Types();
+                        types = t;
+                    }catch(Throwable e) {
+                        recording = false;
+                    }
+                }
+            }
+        }
+        return t;
+    }
+    /**
+     * 通过反射定义的事件类型和 jdk.jfr.Event 的方法。
+     */
+    private static class Types {
+        final Object request;
+        final Object cookie;
+        final Object cache;
+        final Method newEvent;
+        final Method begin;
+        final Method end;
+        final Method shouldCommit;
+        final Method commit;
+        final Method set;
+        private final Class<?> annotationElement;
+        private final Class<?> valueDescriptor;
+        Types() throws ReflectiveOperationException {
+            Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            newEvent = factory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            shouldCommit = event.getMethod("shouldCommit");
+            commit = event.getMethod("commit");
+            set = event.getMethod("set", int.class, Object.class);
+            Method create = factory.getMethod("create", List.class, List.class);
+            request = create.invoke(null, type("HttpRequest", "HTTP Request", "一次实际发送的HTTP请求，包括重定向和重试"), Arrays.asList(
+                    field(String.class, "method", "Method"),
+                    field(String.class, "host", "Host"),
+                    field(String.class, "url", "URL"),
+                    field(int.class, "status", "Status Code"),
+                    field(long.class, "bytesOut", "Bytes Out", "jdk.jfr.DataAmount", "BYTES"),
+                    field(long.class, "bytesIn", "Bytes In", "jdk.jfr.DataAmount", "BYTES"),
+                    field(long.class, "connect", "Connect", "jdk.jfr.Timespan", "NANOSECONDS"),
+                    field(long.class, "sent", "Request Sent", "jdk.jfr.Timespan", "NANOSECONDS"),
+                    field(long.class, "firstByte", "First Byte", "jdk.jfr.Timespan", "NANOSECONDS"),
+                    field(String.class, "error", "Error")));
+            cookie = create.invoke(null, type("CookieStored", "Cookie Stored", "CookieManager保存了一条cookie"), Arrays.asList(
+                    field(String.class, "name", "Name"),
+                    field(String.class, "domain", "Domain"),
+                    field(String.class, "path", "Path"),
+                    field(boolean.class, "replaced", "Replaced")));
+            cache = create.invoke(null, type("CacheLookup", "Cache Lookup", "重定向、DNS或js脚本缓存的一次查找"), Arrays.asList(
+                    field(String.class, "cache", "Cache"),
+                    field(String.class, "key", "Key"),
+                    field(String.class, "result", "Result")));
+        }
+        private List<Object> type(String name, String label, String description) throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("jdk.jfr.Name", "me.charghet.requests." + name));
+            annotations.add(annotation("jdk.jfr.Label", label));
+            annotations.add(annotation("jdk.jfr.Description", description));
+            annotations.add(annotation("jdk.jfr.Category", new String[] {CATEGORY}));
+            return annotations;
+        }
+        private Object field(Class<?> type, String name, String label) throws ReflectiveOperationException {
+            return field(type, name, label, null, null);
+        }
+        private Object field(Class<?> type, String name, String label, String unit, String value) throws ReflectiveOperationException {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("jdk.jfr.Label", label));
+            if(unit != null) {
+                annotations.add(annotation(unit, value));
+            }
+            Constructor<?> c = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+            return c.newInstance(type, name, annotations);
+        }
+        private Object annotation(String type, Object value) throws ReflectiveOperationException {
+            Constructor<?> c = annotationElement.getConstructor(Class.class, Object.class);
+            return c.newInstance(Class.forName(type), value);
+        }
+        /**
+         * 创建并提交一个没有持续时间的事件。
+         */
+        void commit(Object type, Object... values) {
+            try {
+                Object event = newEvent.invoke(type);
+                if((Boolean)shouldCommit.invoke(event)) {
+                    for(int i = 0;i < values.length;i++) {
+                        set.invoke(event, i, values[i]);
+                    }
+                    commit.invoke(event);
+                }
+            }catch(ReflectiveOperationException e) {
+                // 报告事件失败时不影响请求
+            }
+        }
+    }
+    /**
+     * 先报告JFR事件、再调用原有监听器的RequestListener。
+     * <p> requestStart 时开始HttpRequest事件，bodyComplete 或 failed 时结束并提交。
+     */
+    private static class Recorder implements RequestListener {
+        private final Types types;
+        private final RequestListener delegate;
+        Recorder(Types types, RequestListener delegate) {
+            this.types = types;
+            this.delegate = delegate;
+        }
+        @Override
+        public void requestStart(RequestEvent event) {
+            try {
+                Object e = types.newEvent.invoke(types.request);
+                types.begin.invoke(e);
+                event.flightRecord = e;
+            }catch(ReflectiveOperationException e) {
+                // 报告事件失败时不影响请求
+            }
+            if(delegate != null) {
+                delegate.requestStart(event);
+            }
+        }
+        @Override
+        public void connectionAcquired(RequestEvent event) {
+            if(delegate != null) {
+                delegate.connectionAcquired(event);
+            }
+        }
+        @Override
+        public void headersSent(RequestEvent event) {
+            if(delegate != null) {
+                delegate.headersSent(event);
+            }
+        }
+        @Override
+        public void firstByte(RequestEvent event) {
+            if(delegate != null) {
+                delegate.firstByte(event);
+            }
+        }
+        @Override
+        public void bodyComplete(RequestEvent event) {
+            commit(event, null);
+            if(delegate != null) {
+                delegate.bodyComplete(event);
+            }
+        }
+        @Override
+        public void failed(RequestEvent event, Throwable error) {
+            commit(event, error);
+            if(delegate != null) {
+                delegate.failed(event, error);
+            }
+        }
+        private void commit(RequestEvent event, Throwable error) {
+            Object e = event.flightRecord;
+            if(e == null) {
+                return;
+            }
+            event.flightRecord = null;
+            try {
+                types.end.invoke(e);
+                if(!(Boolean)types.shouldCommit.invoke(e)) {
+                    return;
+                }
+                Object[] values = {event.getMethod(), event.getUrl().getHost(), event.getUrl().toString(), event.getStatusCode(),
+                        event.getBytesSent(), event.getBytesReceived(), event.since(event.getConnectedNanos()),
+                        event.since(event.getSentNanos()), event.since(event.getFirstByteNanos()), error != null ? error.toString() : null};
+                for(int i = 0;i < values.length;i++) {
+                    types.set.invoke(e, i, values[i]);
+                }
+                types.commit.invoke(e);
+            }catch(ReflectiveOperationException ex) {
+                // 报告事件失败时不影响请求
+            }
+        }
+    }
+}
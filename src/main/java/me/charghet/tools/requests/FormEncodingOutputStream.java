@@ -0,0 +1,81 @@
+package me.charghet.tools.requests;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按 application/x-www-form-urlencoded 格式编码写入的字节，再写入目标输出流。
+ * <p> 字母、数字和 "-_.*" 原样写出，空格写为 "+"，其余字节写为 "%XX"。
+ * <p> 关闭时只刷新，不关闭目标输出流，因此可以作为 Base64.Encoder.wrap(OutputStream os) 的目标，
+ * 在关闭Base64编码流后继续向目标输出流写入。
+ *
+ * @author charghet
+ *
+ */
+class FormEncodingOutputStream extends FilterOutputStream {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final byte[] buffer = new byte[8192];
+    private int count = 0;
+    /**
+     * 构造一个写入目标输出流的编码流。
+     *
+     * @param out 目标输出流
+     */
+    FormEncodingOutputStream(OutputStream out) {
+        super(out);
+    }
+    /**
+     * 计算一个字节编码后的长度。
+     *
+     * @param b 字节
+     * @return 编码后的字节数
+     */
+    static int encodedLength(int b) {
+        return isUnreserved(b) || b == ' ' ? 1 : 3;
+    }
+    private static boolean isUnreserved(int b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                || b == '-' || b == '_' || b == '.' || b == '*';
+    }
+    @Override
+    public void write(int b) throws IOException {
+        b &= 0xff;
+        if(count > buffer.length - 3) {
+            flushBuffer();
+        }
+        if(isUnreserved(b)) {
+            buffer[count++] = (byte)b;
+        }else if(b == ' ') {
+            buffer[count++] = '+';
+        }else {
+            buffer[count++] = '%';
+            buffer[count++] = (byte)HEX[b >> 4];
+            buffer[count++] = (byte)HEX[b & 0xf];
+        }
+    }
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for(int i = off;i < off + len;i++) {
+            write(b[i]);
+        }
+    }
+    private void flushBuffer() throws IOException {
+        if(count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+    /**
+     * 刷新缓冲区，不关闭目标输出流。
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,104 @@
+package me.charghet.tools.requests;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 对冲请求策略，用于降低长尾延迟。
+ * <p> 如果GET请求在最近延迟的指定百分位内仍未响应，则发送一个相同的请求，采用先返回的响应，并取消另一个请求。
+ * <p> 延迟样本不足时不发送对冲请求。
+ * <p> 通过 Session.setHedgePolicy(HedgePolicy hedgePolicy) 启用。
+ *
+ * @author charghet
+ *
+ */
+public class HedgePolicy {
+    private static final ExecutorService DEFAULT_EXECUTOR = VirtualThreads.newExecutor("requests-hedge");
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+    private double percentile;
+    private int minSamples = 20;
+    private long minDelay = 10;
+    private ExecutorService executor = DEFAULT_EXECUTOR;
+    /**
+     * 构造一个在第95百分位延迟后发送对冲请求的策略，保留最近100个延迟样本。
+     */
+    public HedgePolicy() {
+        this(0.95, 100);
+    }
+    /**
+     * 构造一个指定百分位和样本窗口大小的对冲请求策略。
+     *
+     * @param percentile 百分位，取值范围为(0, 1)
+     * @param window 保留的延迟样本数
+     */
+    public HedgePolicy(double percentile, int window) {
+        if(percentile <= 0 || percentile >= 1 || window < 1) {
+            throw new IllegalArgumentException("percentile:" + percentile + " window:" + window);
+        }
+        this.percentile = percentile;
+        this.samples = new long[window];
+    }
+    /**
+     * 设置发送对冲请求前需要的最少延迟样本数，默认为20。
+     *
+     * @param minSamples 最少延迟样本数
+     */
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+    /**
+     * 设置对冲请求的最短等待时间，默认为10毫秒。
+     *
+     * @param millis 最短等待时间（毫秒）
+     */
+    public void setMinDelay(long millis) {
+        this.minDelay = millis;
+    }
+    /**
+     * 设置执行对冲请求的线程池，默认使用共享的线程池，在支持虚拟线程的JDK上使用虚拟线程。
+     *
+     * @param executor 线程池
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+    /**
+     * 获得执行对冲请求的线程池。
+     *
+     * @return 线程池
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+    /**
+     * 记录一个请求延迟样本。
+     *
+     * @param millis 请求延迟（毫秒）
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if(count < samples.length) {
+            count++;
+        }
+    }
+    /**
+     * 获得当前发送对冲请求前的等待时间。
+     *
+     * @return 等待时间（毫秒），如果延迟样本不足，则返回-1
+     */
+    public long getHedgeDelay() {
+        long[] copy;
+        synchronized(this) {
+            if(count < minSamples || count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int)Math.ceil(percentile * copy.length) - 1;
+        return Math.max(minDelay, copy[Math.max(0, index)]);
+    }
+}
@@ -0,0 +1,84 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Collections;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * 连接到已解析的IP地址时，保留原主机名的SSLSocketFactory。
+ * <p> 创建的SSLSocket以原主机名发送SNI，并在握手时按原主机名校验服务器证书。
+ * <p> 同一个主机应复用同一个实例，以便HttpsURLConnection复用keep-alive连接。
+ *
+ * @author charghet
+ *
+ */
+class HostSSLSocketFactory extends SSLSocketFactory {
+    private final SSLSocketFactory delegate;
+    private final String host;
+    /**
+     * 构造一个包装指定SSLSocketFactory并使用指定主机名的实例。
+     *
+     * @param delegate 实际创建SSLSocket的SSLSocketFactory
+     * @param host 原主机名
+     */
+    HostSSLSocketFactory(SSLSocketFactory delegate, String host) {
+        this.delegate = delegate;
+        this.host = host;
+    }
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return identify(delegate.createSocket(s, this.host, port, autoClose));
+    }
+    @Override
+    public Socket createSocket() throws IOException {
+        return identify(delegate.createSocket());
+    }
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return identify(delegate.createSocket(host, port));
+    }
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return identify(delegate.createSocket(host, port, localHost, localPort));
+    }
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return identify(delegate.createSocket(host, port));
+    }
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return identify(delegate.createSocket(address, port, localAddress, localPort));
+    }
+    /**
+     * 以原主机名发送SNI，并要求握手时按原主机名校验服务器证书。
+     * <p> HttpsURLConnection可能先创建未连接的SSLSocket再连接到IP地址，此时只能通过SNI传递原主机名。
+     *
+     * @param socket 新创建的Socket
+     * @return 设置后的Socket
+     */
+    private Socket identify(Socket socket) {
+        if(socket instanceof SSLSocket) {
+            SSLSocket ssl = (SSLSocket)socket;
+            SSLParameters params = ssl.getSSLParameters();
+            params.setServerNames(Collections.<SNIServerName>singletonList(new SNIHostName(host)));
+            params.setEndpointIdentificationAlgorithm("HTTPS");
+            ssl.setSSLParameters(params);
+        }
+        return socket;
+    }
+}
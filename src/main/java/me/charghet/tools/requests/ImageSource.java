@@ -0,0 +1,42 @@
+package me.charghet.tools.requests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 待识别的图片来源。
+ * <p> 每次发送请求时调用 open() 重新读取图片，图片内容以流的方式编码后写入请求体，不会整体读入内存。
+ * 
+ * @author charghet
+ *
+ */
+public interface ImageSource {
+    /**
+     * 打开图片的输入流，由调用者关闭。
+     * 
+     * @return 图片的输入流
+     * @throws IOException 如果无法读取图片
+     */
+    InputStream open() throws IOException;
+    /**
+     * 获得读取字节数组的图片来源。
+     * 
+     * @param bytes 图片的字节数组
+     * @return 图片来源
+     */
+    static ImageSource of(byte[] bytes) {
+        return () -> new ByteArrayInputStream(bytes);
+    }
+    /**
+     * 获得读取文件的图片来源。
+     * 
+     * @param path 图片文件的路径
+     * @return 图片来源
+     */
+    static ImageSource of(Path path) {
+        return () -> Files.newInputStream(path);
+    }
+}
@@ -1,87 +1,244 @@
 package me.charghet.tools.requests;
 
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
 
 import javax.script.Invocable;
 
 /**
  * 执行js脚本的工具类，可通过url地址直接执行js文件。
+ * <p> 内部维护一个JS引擎池，可以在多个线程中同时调用 runFunction，每个调用借用一个引擎，互不阻塞。
+ * 设置的脚本按内容的哈希值去重，相同内容的脚本只通过 Compilable 编译一次。
+ * 池中的每个引擎是同一个ScriptEngine中相互独立的ScriptContext（各自的全局对象），在首次被借用时执行编译好的脚本；
+ * JS引擎不支持在多个ScriptContext中执行同一个CompiledScript时，每个引擎是单独的ScriptEngine，各自解析并执行脚本。
+ * <p> 按 "javascript"、"js"、"nashorn"、"graal.js" 的顺序查找JS引擎，都找不到时使用任意一个语言名称为JavaScript的引擎，
+ * 因此在JDK 15及以上版本中，将独立的Nashorn或GraalJS加入classpath即可使用。
  * 
  * @author charghet
  *
  */
 public class JSEngine {
-    private ScriptEngine engine;
+    private static final String[] ENGINE_NAMES = {"javascript", "js", "nashorn", "graal.js"};
+    private static volatile ScriptLoader defaultLoader;
+    private final ScriptEngineFactory factory;
     /**
-     * 构造一个JS引擎。
+     * 编译脚本的引擎，支持多个ScriptContext时池中的引擎都是它的ScriptContext，否则为null。
+     */
+    private final ScriptEngine home;
+    private final Semaphore permits;
+    private final int poolSize;
+    private final ConcurrentLinkedQueue<Slot> idle = new ConcurrentLinkedQueue<>();
+    /**
+     * 已设置的脚本，按设置的顺序执行，同一来源只保留最新的版本。
+     */
+    private final List<Script> scripts = new CopyOnWriteArrayList<>();
+    /**
+     * 构造一个JS引擎，引擎池的大小为处理器数。
      */
     public JSEngine() {
-        engine = new ScriptEngineManager().getEngineByName("javascript");
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * 构造一个JS引擎，引擎池中最多有指定数量的引擎。
+     * 
+     * @param poolSize 引擎池的大小，即最多同时执行的 runFunction 调用数
+     */
+    public JSEngine(int poolSize) {
+        if(poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize必须大于0：" + poolSize);
+        }
+        this.poolSize = poolSize;
+        this.permits = new Semaphore(poolSize);
+        this.factory = findFactory();
+        ScriptEngine engine = factory == null ? null : factory.getScriptEngine();
+        this.home = engine != null && supportsContexts(engine) ? engine : null;
+    }
+    /**
+     * 查找可用的JS引擎。
+     * 
+     * @return 引擎工厂，如果找不到，则返回null
+     */
+    private static ScriptEngineFactory findFactory() {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        for(String name : ENGINE_NAMES) {
+            ScriptEngine engine = manager.getEngineByName(name);
+            if(engine != null) {
+                return engine.getFactory();
+            }
+        }
+        for(ScriptEngineFactory f : manager.getEngineFactories()) {
+            if("javascript".equalsIgnoreCase(f.getLanguageName()) || "ecmascript".equalsIgnoreCase(f.getLanguageName())) {
+                return f;
+            }
+        }
+        return null;
+    }
+    /**
+     * 检查引擎能否在新的ScriptContext中执行CompiledScript，并以其全局对象调用其中的函数。
+     * 
+     * @param engine 引擎
+     * @return 如果能够，则返回true
+     */
+    private static boolean supportsContexts(ScriptEngine engine) {
+        if(!(engine instanceof Compilable) || !(engine instanceof Invocable)) {
+            return false;
+        }
+        try {
+            CompiledScript probe = ((Compilable)engine).compile("function probe() { return 1; }");
+            ScriptContext context = newContext(engine);
+            probe.eval(context);
+            Object result = ((Invocable)engine).invokeMethod(context.getBindings(ScriptContext.ENGINE_SCOPE), "probe");
+            return result instanceof Number && ((Number)result).intValue() == 1 && !engine.getBindings(ScriptContext.ENGINE_SCOPE).containsKey("probe");
+        }catch(ScriptException | NoSuchMethodException | RuntimeException e) {
+            return false;
+        }
+    }
+    /**
+     * 创建引擎中一个新的ScriptContext，拥有独立的全局对象。
+     * 
+     * @param engine 引擎
+     * @return ScriptContext
+     */
+    private static ScriptContext newContext(ScriptEngine engine) {
+        ScriptContext context = new SimpleScriptContext();
+        context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+        context.setBindings(engine.getBindings(ScriptContext.GLOBAL_SCOPE), ScriptContext.GLOBAL_SCOPE);
+        return context;
+    }
+    /**
+     * 获得引擎池的大小。
+     * 
+     * @return 引擎池的大小
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+    /**
+     * 获得使用的JS引擎的名称和版本。
+     * 
+     * @return JS引擎的名称和版本，如果找不到可用的JS引擎，则返回null
+     */
+    public String getEngineName() {
+        return factory == null ? null : factory.getEngineName() + " " + factory.getEngineVersion();
     }
     /**
      *设置要解析的js代码。
+     * <p> 与已设置的脚本内容相同时不再解析。
      * 
      * @param script js代码
      * @throws JSException 如果解析js代码发生错误。
      */
     public void setJS(String script) throws JSException {
+        setJS(null, script);
+    }
+    /**
+     * 设置来自指定来源的js代码。
+     * <p> 与该来源已设置的脚本内容相同时不再解析；内容不同时替换旧版本，之后借用的引擎执行新版本。
+     * 
+     * @param source 脚本的来源，如url地址或文件路径，为null时以内容的哈希值区分，不会替换其他脚本
+     * @param script js代码
+     * @throws JSException 如果解析js代码发生错误。
+     */
+    private void setJS(String source, String script) throws JSException {
+        Script s = new Script(source, script);
+        for(Script existing : scripts) {
+            if(existing.source.equals(s.source) && existing.hash.equals(s.hash)) {
+                return;
+            }
+        }
+        if(home != null) {
+            s.compile(home);
+        }
+        Slot slot = borrow();
         try {
-            engine.eval(script);
-        }catch(ScriptException e) {
-            throw new JSException(e.getMessage(), e.getCause());
+            slot.apply(s);
+            synchronized(scripts) {
+                int index = 0;
+                while(index < scripts.size() && !scripts.get(index).source.equals(s.source)) {
+                    index++;
+                }
+                if(index < scripts.size()) {
+                    scripts.set(index, s);
+                }else {
+                    scripts.add(s);
+                }
+            }
+        }finally {
+            release(slot);
         }
     }
     /**
      * 下载js文件并解析。
+     * <p> 使用共享的ScriptLoader下载，脚本缓存在内存中，再次调用时向服务端确认脚本是否更新，未更新则不再下载和解析；
+     * 已更新时替换该url地址之前的版本。
      * 
      * @param url js文件地址
      * @throws JSException 如果下载或解析过程中发生错误。
      */
     public void setJSURL(String url) throws JSException {
-        try {
-            String script = URLUtil.get(url).getText();
-            engine.eval(script);
-        }catch(Exception e) {
-            throw new JSException(e.getMessage(), e.getCause());
+        ScriptLoader loader = defaultLoader;
+        if(loader == null) {
+            synchronized(JSEngine.class) {
+                loader = defaultLoader;
+                if(loader == null) {
+                    loader = new ScriptLoader(new Session());
+                    defaultLoader = loader;
+                }
+            }
         }
+        setJSURL(url, loader);
+    }
+    /**
+     * 通过指定的ScriptLoader下载js文件并解析。
+     * <p> 脚本内容与该url地址已设置的脚本相同时不再解析，不同时替换之前的版本。
+     * 
+     * @param url js文件地址
+     * @param loader 下载并缓存脚本的ScriptLoader
+     * @throws JSException 如果下载或解析过程中发生错误。
+     */
+    public void setJSURL(String url, ScriptLoader loader) throws JSException {
+        setJS(url, loader.load(url));
     }
     /**
-     * 读取js文件并解析
+     * 以UTF-8编码读取js文件并解析
+     * <p> 文件内容改变后再次调用时替换该文件之前的版本。
      * 
      * @param file 文件名
      * @throws JSException 如果读取或解析过程中发生错误。
      */
     public void setJSFile(String file) throws JSException {
+        Path path = Paths.get(file).toAbsolutePath();
+        String script;
         try {
-            String ss;
-            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file),StandardCharsets.UTF_8));
-            StringBuilder s = new StringBuilder();
-            String temp;
-            while((temp = br.readLine()) != null) {
-                temp += "\n";
-                s.append(temp);
-            }
-            br.close();
-            if(s.length() > 0) {
-                ss = s.substring(0,s.length()-1);
-            }else {
-                ss = s.toString();
-            }
-            setJS(ss);
-        } catch (IOException e) {
-            throw new JSException(e.getMessage(), e.getCause());
+            script = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        }catch(IOException e) {
+            throw new JSException(e.getMessage(), e);
         }
+        setJS(path.toUri().toString(), script);
     }
     /**
      * 执行js脚本中的函数。
+     * <p> 可以在多个线程中同时调用，每个调用借用引擎池中的一个引擎；引擎都被占用时等待。
      * 
      * @param name 函数名
      * @param args 函数的参数
@@ -89,11 +246,141 @@ public class JSEngine {
      * @throws JSException 如果在执行js脚本过程中发生错误。
      */
     public Object runFunction(String name, Object... args) throws JSException {
+        Slot slot = borrow();
         try {
-            Invocable invokable = (Invocable)engine;
-            return invokable.invokeFunction(name, args);
+            return slot.invoke(name, args);
         }catch(Exception e) {
             throw new JSException(e.getMessage(), e.getCause());
+        }finally {
+            release(slot);
+        }
+    }
+    /**
+     * 从引擎池中借用一个引擎，并使其执行所有已设置的脚本。
+     * 
+     * @return 引擎
+     * @throws JSException 如果找不到可用的JS引擎、等待过程中被中断，或执行脚本发生错误
+     */
+    private Slot borrow() throws JSException {
+        if(factory == null) {
+            throw new JSException("找不到可用的JS引擎");
+        }
+        try {
+            permits.acquire();
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSException(e.toString(), e);
+        }
+        Slot slot = idle.poll();
+        try {
+            if(slot == null) {
+                if(home != null) {
+                    slot = new Slot(home, newContext(home));
+                }else {
+                    ScriptEngine engine = factory.getScriptEngine();
+                    if(!(engine instanceof Invocable)) {
+                        throw new JSException(factory.getEngineName() + "不支持调用函数");
+                    }
+                    slot = new Slot(engine, null);
+                }
+            }
+            for(Script script : scripts) {
+                slot.apply(script);
+            }
+            return slot;
+        }catch(JSException | RuntimeException e) {
+            if(slot != null) {
+                idle.offer(slot);
+            }
+            permits.release();
+            throw e;
+        }
+    }
+    private void release(Slot slot) {
+        idle.offer(slot);
+        permits.release();
+    }
+    /**
+     * 计算字符串以UTF-8编码的SHA-256哈希值。
+     * 
+     * @param s 字符串
+     * @return 十六进制表示的哈希值
+     */
+    static String hash(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    /**
+     * 一段js脚本的来源、代码、内容的哈希值和编译结果。
+     */
+    private static class Script {
+        private final String source;
+        private final String code;
+        private final String hash;
+        private CompiledScript compiled;
+        Script(String source, String code) {
+            this.code = code;
+            this.hash = hash(code);
+            this.source = source != null ? source : hash;
+        }
+        /**
+         * 编译脚本，编译结果由池中所有的ScriptContext共享。
+         * 
+         * @param engine 编译脚本的引擎
+         * @throws JSException 如果js代码有语法错误
+         */
+        void compile(ScriptEngine engine) throws JSException {
+            try {
+                synchronized(engine) {
+                    compiled = ((Compilable)engine).compile(code);
+                }
+            }catch(ScriptException e) {
+                throw new JSException(e.getMessage(), e.getCause());
+            }
+        }
+    }
+    /**
+     * 引擎池中的一个引擎，记录每个来源已执行过的脚本版本。
+     * <p> context 不为null时是共享引擎中的一个ScriptContext，执行编译好的脚本，并以其全局对象调用函数；
+     * 否则是单独的引擎，直接解析并执行脚本。
+     */
+    private static class Slot {
+        private final ScriptEngine engine;
+        private final ScriptContext context;
+        private final Map<String, String> applied = new HashMap<>();
+        Slot(ScriptEngine engine, ScriptContext context) {
+            this.engine = engine;
+            this.context = context;
+        }
+        void apply(Script script) throws JSException {
+            if(script.hash.equals(applied.get(script.source))) {
+                return;
+            }
+            try {
+                if(context != null) {
+                    script.compiled.eval(context);
+                }else {
+                    engine.eval(script.code);
+                }
+            }catch(ScriptException e) {
+                throw new JSException(e.getMessage(), e.getCause());
+            }
+            applied.put(script.source, script.hash);
+        }
+        Object invoke(String name, Object... args) throws ScriptException, NoSuchMethodException {
+            Invocable invocable = (Invocable)engine;
+            if(context != null) {
+                return invocable.invokeMethod(context.getBindings(ScriptContext.ENGINE_SCOPE), name, args);
+            }
+            return invocable.invokeFunction(name, args);
         }
     }
 }
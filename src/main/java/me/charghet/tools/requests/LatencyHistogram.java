@@ -0,0 +1,171 @@
+package me.charghet.tools.requests;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录延迟分布的直方图，可以在多个线程中同时记录。
+ * <p> 按对数分桶：小于64的值精确记录，更大的值在每个2的幂区间内再均分为32个桶，相对误差不超过约3%。
+ * 记录不需要加锁，占用的内存固定（约15KB），不随记录数增长。
+ * 
+ * @author charghet
+ *
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = SUB_COUNT * 2;
+    private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_COUNT;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+    /**
+     * 记录一个值。
+     * 
+     * @param value 值，如纳秒数，小于0时按0记录
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+    /**
+     * 记录多次相同的值。
+     * 
+     * @param value 值，小于0时按0记录
+     * @param times 次数
+     */
+    public void record(long value, long times) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.addAndGet(index(value), times);
+        count.add(times);
+        sum.add(value * times);
+        long m;
+        while(value < (m = min.get()) && !min.compareAndSet(m, value)) {
+            // 重试
+        }
+        while(value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            // 重试
+        }
+    }
+    /**
+     * 将另一个直方图的所有记录合并到本直方图中。
+     * 
+     * @param other 另一个直方图
+     */
+    public void add(LatencyHistogram other) {
+        for(int i = 0;i < BUCKETS;i++) {
+            long c = other.counts.get(i);
+            if(c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        if(other.getCount() > 0) {
+            min.accumulateAndGet(other.min.get(), Math::min);
+            max.accumulateAndGet(other.max.get(), Math::max);
+        }
+    }
+    private static int index(long value) {
+        if(value < LINEAR) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return LINEAR + (shift - 1) * SUB_COUNT + (int)(value >>> shift) - SUB_COUNT;
+    }
+    private static long lowerBound(int index) {
+        if(index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / SUB_COUNT + 1;
+        return (long)((index - LINEAR) % SUB_COUNT + SUB_COUNT) << shift;
+    }
+    private static long upperBound(int index) {
+        return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+    }
+    /**
+     * 获得记录数。
+     * 
+     * @return 记录数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+    /**
+     * 获得最小值。
+     * 
+     * @return 最小值，如果没有记录，则返回0
+     */
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+    /**
+     * 获得最大值。
+     * 
+     * @return 最大值
+     */
+    public long getMax() {
+        return max.get();
+    }
+    /**
+     * 获得平均值。
+     * 
+     * @return 平均值，如果没有记录，则返回0
+     */
+    public double getMean() {
+        long c = getCount();
+        return c == 0 ? 0 : (double)sum.sum() / c;
+    }
+    /**
+     * 获得指定百分位的值。
+     * <p> 返回该百分位所在桶的上界，且不超过最大值。
+     * 
+     * @param percentile 百分位，取值范围为0到100，如99.9
+     * @return 百分位的值，如果没有记录，则返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if(total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+        long seen = 0;
+        for(int i = 0;i < BUCKETS;i++) {
+            seen += counts.get(i);
+            if(seen >= rank) {
+                return Math.max(getMin(), Math.min(upperBound(i), getMax()));
+            }
+        }
+        return getMax();
+    }
+    /**
+     * 清空所有记录。
+     * <p> 与记录同时进行时，正在记录的值可能部分丢失。
+     */
+    public void reset() {
+        for(int i = 0;i < BUCKETS;i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+    /**
+     * 以毫秒为单位输出记录数、平均值和常用百分位，假定记录的值为纳秒数。
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms", getCount(),
+                getMean() / TimeUnit.MILLISECONDS.toNanos(1), millis(getPercentile(50)), millis(getPercentile(90)),
+                millis(getPercentile(99)), millis(getPercentile(99.9)), millis(getMax()));
+    }
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,98 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+
+/**
+ * 将字节流按行切分，支持 CR、LF 和 CRLF 三种换行符。
+ * <p> 行缓冲区可重复使用，最长不超过指定的字节数；处理过较长的行后会恢复为初始大小，因此内存占用与流的长度无关。
+ *
+ * @author charghet
+ *
+ */
+class LineSplitter {
+    private static final int INITIAL_SIZE = 256;
+    private static final int RETAINED_SIZE = 8192;
+    private final int maxLine;
+    private byte[] line = new byte[INITIAL_SIZE];
+    private int length = 0;
+    private boolean cr = false;
+    /**
+     * 行处理器。
+     */
+    interface Handler {
+        /**
+         * 处理一行，不包含换行符。
+         *
+         * @param bytes 行缓冲区，只在本次调用中有效
+         * @param length 行的字节数
+         * @throws IOException 如果处理过程中发生错误
+         */
+        void line(byte[] bytes, int length) throws IOException;
+    }
+    /**
+     * 构造一个行的最大字节数为maxLine的LineSplitter。
+     *
+     * @param maxLine 行的最大字节数
+     */
+    LineSplitter(int maxLine) {
+        this.maxLine = maxLine;
+    }
+    /**
+     * 传入读取到的字节，每遇到一个换行符调用一次行处理器。
+     *
+     * @param bytes 字节数组
+     * @param offset 起始位置
+     * @param count 字节数
+     * @param handler 行处理器
+     * @throws IOException 如果行超过最大字节数，或行处理器发生错误
+     */
+    void feed(byte[] bytes, int offset, int count, Handler handler) throws IOException {
+        for(int i = offset;i < offset + count;i++) {
+            byte b = bytes[i];
+            if(b == '\n' && cr) {
+                cr = false;
+                continue;
+            }
+            cr = b == '\r';
+            if(b == '\r' || b == '\n') {
+                emit(handler);
+                continue;
+            }
+            if(length == line.length) {
+                if(length >= maxLine) {
+                    throw new IOException("行超过最大长度：" + maxLine);
+                }
+                byte[] larger = new byte[Math.min(maxLine, line.length * 2)];
+                System.arraycopy(line, 0, larger, 0, length);
+                line = larger;
+            }
+            line[length++] = b;
+        }
+    }
+    /**
+     * 流结束时调用，如果最后一行没有换行符，则调用一次行处理器。
+     *
+     * @param handler 行处理器
+     * @throws IOException 如果行处理器发生错误
+     */
+    void finish(Handler handler) throws IOException {
+        if(length > 0) {
+            emit(handler);
+        }
+    }
+    /**
+     * 丢弃尚未结束的行。
+     */
+    void reset() {
+        length = 0;
+        cr = false;
+    }
+    private void emit(Handler handler) throws IOException {
+        int len = length;
+        length = 0;
+        handler.line(line, len);
+        if(line.length > RETAINED_SIZE) {
+            line = new byte[INITIAL_SIZE];
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package me.charghet.tools.requests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 以固定速率通过Session发送请求的负载生成器。
+ * <p> 采用开环方式：第i个请求的计划开始时刻为 开始时刻 + i / 速率，无论之前的请求是否完成都按计划发出，
+ * 服务端变慢时不会像循环调用get那样随之减少请求，从而暴露排队延迟。
+ * <p> 延迟从计划开始时刻算起（校正了协调遗漏，coordinated omission），包括请求在线程池中等待的时间；
+ * 同时记录从实际开始发送算起的服务时间，两者的差距反映了排队的程度。
+ * 失败的请求按失败时刻、停止等待时仍未完成的请求按停止等待的时刻计入延迟，服务时间只包括成功的请求。
+ * <p> 请求在 Session.getExecutor() 返回的线程池中以阻塞方式发送，与调用get和post方法相同，经过限流器、重试策略、对冲策略和熔断器。
+ * 多个请求按顺序轮流发送，可以模拟不同请求的组合。
+ *
+ * @author charghet
+ *
+ */
+public class LoadGenerator {
+    private final Session session;
+    private final List<Request> requests;
+    private volatile double rate = 100;
+    private volatile long duration = 10000;
+    private volatile long warmup = 0;
+    private volatile long drainTimeout = 30000;
+    /**
+     * 构造一个重复发送同一个请求的负载生成器。
+     *
+     * @param session 发送请求的Session
+     * @param request 请求
+     */
+    public LoadGenerator(Session session, Request request) {
+        this(session, Collections.singletonList(request));
+    }
+    /**
+     * 构造一个按顺序轮流发送一组请求的负载生成器。
+     *
+     * @param session 发送请求的Session
+     * @param requests 请求的列表
+     * @throws IllegalArgumentException 如果请求的列表为空
+     */
+    public LoadGenerator(Session session, List<Request> requests) {
+        if(requests.isEmpty()) {
+            throw new IllegalArgumentException("requests不能为空");
+        }
+        this.session = session;
+        this.requests = new ArrayList<>(requests);
+    }
+    /**
+     * 设置目标速率，默认为每秒100个请求。
+     *
+     * @param rate 每秒发送的请求数，必须大于0
+     */
+    public void setRate(double rate) {
+        if(!(rate > 0)) {
+            throw new IllegalArgumentException("rate:" + rate);
+        }
+        this.rate = rate;
+    }
+    /**
+     * 获得目标速率。
+     *
+     * @return 每秒发送的请求数
+     */
+    public double getRate() {
+        return rate;
+    }
+    /**
+     * 设置测量时长，默认为10秒。
+     *
+     * @param millis 测量时长（毫秒）
+     */
+    public void setDuration(long millis) {
+        this.duration = millis;
+    }
+    /**
+     * 获得测量时长。
+     *
+     * @return 测量时长（毫秒）
+     */
+    public long getDuration() {
+        return duration;
+    }
+    /**
+     * 设置预热时长，默认为0。
+     * <p> 预热期间同样按目标速率发送请求，但不记录结果，用于建立连接和让JIT完成编译。
+     *
+     * @param millis 预热时长（毫秒）
+     */
+    public void setWarmup(long millis) {
+        this.warmup = millis;
+    }
+    /**
+     * 获得预热时长。
+     *
+     * @return 预热时长（毫秒）
+     */
+    public long getWarmup() {
+        return warmup;
+    }
+    /**
+     * 设置停止发送后等待未完成请求的最长时间，默认为30秒。
+     * <p> 超过该时间仍未完成的请求不计入结果，其数量见 LoadResult.getUnfinished()。
+     *
+     * @param millis 最长等待时间（毫秒）
+     */
+    public void setDrainTimeout(long millis) {
+        this.drainTimeout = millis;
+    }
+    /**
+     * 获得停止发送后等待未完成请求的最长时间。
+     *
+     * @return 最长等待时间（毫秒）
+     */
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+    /**
+     * 在当前线程中按计划发出请求，直到预热和测量时长结束，再等待未完成的请求。
+     *
+     * @return 测量结果
+     * @throws RequestException 如果等待过程中被中断
+     */
+    public LoadResult run() throws RequestException {
+        double nanosPerRequest = TimeUnit.SECONDS.toNanos(1) / rate;
+        long warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmup);
+        long total = warmupNanos + TimeUnit.MILLISECONDS.toNanos(duration);
+        return run(i -> {
+            long offset = (long)(i * nanosPerRequest);
+            return offset < total ? offset : -1;
+        }, rate, warmupNanos, total);
+    }
+    /**
+     * 按指定的时刻依次发出请求，第i个时刻对应第i个请求，不预热。
+     * <p> 用于按录制时的时间间隔回放请求，目标速率为请求数除以总时长。
+     *
+     * @param offsets 每个请求的计划开始时刻相对于开始时刻的偏移（纳秒），按升序排列，长度与请求的列表相同
+     * @return 测量结果
+     * @throws RequestException 如果等待过程中被中断
+     */
+    LoadResult run(long[] offsets) throws RequestException {
+        long total = offsets.length == 0 ? 0 : offsets[offsets.length - 1] + 1;
+        double targetRate = total == 0 ? 0 : offsets.length * (double)TimeUnit.SECONDS.toNanos(1) / total;
+        return run(i -> i < offsets.length ? offsets[(int)i] : -1, targetRate, 0, total);
+    }
+    /**
+     * 在当前线程中按计划发出请求，再等待未完成的请求。
+     *
+     * @param schedule 根据请求的序号返回计划开始时刻相对于开始时刻的偏移（纳秒），返回-1时停止
+     * @param targetRate 目标速率
+     * @param warmupNanos 预热时长（纳秒），在此之前计划开始的请求不记录结果
+     * @param endNanos 计划结束时刻相对于开始时刻的偏移（纳秒）
+     * @return 测量结果
+     * @throws RequestException 如果等待过程中被中断
+     */
+    private LoadResult run(LongUnaryOperator schedule, double targetRate, long warmupNanos, long endNanos) throws RequestException {
+        Executor executor = session.getExecutor();
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = start + endNanos;
+        Run run = new Run(measureStart);
+        try {
+            long offset;
+            for(long i = 0;(offset = schedule.applyAsLong(i)) >= 0;i++) {
+                long intended = start + offset;
+                long wait;
+                while((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if(Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                Request request = requests.get((int)(i % requests.size()));
+                boolean measured = intended - measureStart >= 0;
+                long id = i;
+                run.started(measured, id, intended);
+                try {
+                    executor.execute(() -> run.send(request, id, intended, measured));
+                }catch(RejectedExecutionException e) {
+                    run.finished(measured, id, false, intended, intended, System.nanoTime());
+                }
+            }
+            run.drain(TimeUnit.MILLISECONDS.toNanos(drainTimeout));
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e.toString(), e);
+        }
+        return run.result(targetRate, measureStart, end);
+    }
+    /**
+     * 一次运行的状态，由发出请求的线程和发送请求的线程共享。
+     */
+    private class Run {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder issued = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition drained = lock.newCondition();
+        private long outstanding;
+        private long outstandingMeasured;
+        /**
+         * 未完成的测量请求的计划开始时刻，以请求的序号为键，停止等待时按仍未完成计入延迟。
+         */
+        private final Map<Long, Long> pending = new HashMap<>();
+        private long lastEnd;
+        Run(long measureStart) {
+            this.lastEnd = measureStart;
+        }
+        void started(boolean measured, long id, long intended) {
+            if(measured) {
+                issued.increment();
+            }
+            lock.lock();
+            try {
+                outstanding++;
+                if(measured) {
+                    outstandingMeasured++;
+                    pending.put(id, intended);
+                }
+            }finally {
+                lock.unlock();
+            }
+        }
+        void send(Request request, long id, long intended, boolean measured) {
+            long begin = System.nanoTime();
+            boolean success;
+            try {
+                session.send(request).close();
+                success = true;
+            }catch(RequestException | RuntimeException e) {
+                success = false;
+            }
+            finished(measured, id, success, intended, begin, System.nanoTime());
+        }
+        void finished(boolean measured, long id, boolean success, long intended, long begin, long now) {
+            lock.lock();
+            try {
+                if(measured) {
+                    // 与移出pending在同一次加锁中记录，result()复制结果时每个请求只会被计入一次
+                    // 失败的请求同样计入延迟，过载时失败的请求往往就是延迟的尾部
+                    latency.record(now - intended);
+                    if(success) {
+                        serviceTime.record(now - begin);
+                        completed.increment();
+                    }else {
+                        errors.increment();
+                    }
+                    if(now - lastEnd > 0) {
+                        lastEnd = now;
+                    }
+                    outstandingMeasured--;
+                    pending.remove(id);
+                }
+                if(--outstanding == 0) {
+                    drained.signalAll();
+                }
+            }finally {
+                lock.unlock();
+            }
+        }
+        void drain(long timeout) throws InterruptedException {
+            lock.lock();
+            try {
+                while(outstanding > 0 && timeout > 0) {
+                    timeout = drained.awaitNanos(timeout);
+                }
+            }finally {
+                lock.unlock();
+            }
+        }
+        /**
+         * 复制停止等待时的结果，之后才完成的请求不再影响返回的结果。
+         * <p> 仍未完成的请求按计划开始时刻到停止等待时刻计入延迟，其真实延迟不会更短。
+         */
+        LoadResult result(double rate, long measureStart, long end) {
+            LatencyHistogram l = new LatencyHistogram();
+            LatencyHistogram t = new LatencyHistogram();
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                l.add(latency);
+                t.add(serviceTime);
+                for(long intended : pending.values()) {
+                    l.record(now - intended);
+                }
+                long last = outstandingMeasured == 0 ? (lastEnd - end > 0 ? lastEnd : end) : now;
+                return new LoadResult(rate, issued.sum(), completed.sum(), errors.sum(), outstandingMeasured, last - measureStart, l, t);
+            }finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.charghet.tools.requests;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LoadGenerator一次运行的测量结果。
+ * <p> 只包含测量时长内计划发出的请求，不包括预热期间的请求。延迟均为纳秒数。
+ *
+ * @author charghet
+ *
+ */
+public class LoadResult {
+    private final double targetRate;
+    private final long issued;
+    private final long completed;
+    private final long errors;
+    private final long unfinished;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+    private final LatencyHistogram serviceTime;
+    LoadResult(double targetRate, long issued, long completed, long errors, long unfinished, long elapsedNanos,
+            LatencyHistogram latency, LatencyHistogram serviceTime) {
+        this.targetRate = targetRate;
+        this.issued = issued;
+        this.completed = completed;
+        this.errors = errors;
+        this.unfinished = unfinished;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+    /**
+     * 获得目标速率。
+     *
+     * @return 每秒计划发送的请求数
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+    /**
+     * 获得发出的请求数。
+     *
+     * @return 发出的请求数
+     */
+    public long getIssued() {
+        return issued;
+    }
+    /**
+     * 获得成功完成的请求数。
+     *
+     * @return 成功完成的请求数
+     */
+    public long getCompleted() {
+        return completed;
+    }
+    /**
+     * 获得失败的请求数，包括线程池拒绝执行的请求。
+     *
+     * @return 失败的请求数
+     */
+    public long getErrors() {
+        return errors;
+    }
+    /**
+     * 获得停止等待时仍未完成的请求数。
+     *
+     * @return 未完成的请求数
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+    /**
+     * 获得从测量开始到最后一个请求完成经过的时间，不短于测量时长。
+     *
+     * @return 经过的时间（纳秒）
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    /**
+     * 获得实际吞吐量。
+     *
+     * @return 每秒成功完成的请求数
+     */
+    public double getThroughput() {
+        return elapsedNanos <= 0 ? 0 : completed * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+    /**
+     * 获得从计划开始时刻算起的延迟分布，已校正协调遗漏。
+     * <p> 包括失败的请求（到失败时刻为止）和停止等待时仍未完成的请求（到停止等待时为止）。
+     *
+     * @return 延迟的直方图
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    /**
+     * 获得成功的请求从实际开始发送算起的服务时间分布，未校正协调遗漏。
+     *
+     * @return 服务时间的直方图
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+    /**
+     * 向控制台输出吞吐量和延迟的百分位。
+     * <p> 此方法用于调试。
+     */
+    public void print() {
+        System.out.println(this);
+    }
+    @Override
+    public String toString() {
+        return String.format("target=%.1f/s throughput=%.1f/s issued=%d completed=%d errors=%d unfinished=%d%n"
+                + "latency:      p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms%n"
+                + "service time: p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                targetRate, getThroughput(), issued, completed, errors, unfinished,
+                millis(latency.getPercentile(50)), millis(latency.getPercentile(99)), millis(latency.getPercentile(99.9)), millis(latency.getMax()),
+                millis(serviceTime.getPercentile(50)), millis(serviceTime.getPercentile(99)), millis(serviceTime.getPercentile(99.9)), millis(serviceTime.getMax()));
+    }
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,505 @@
+package me.charghet.tools.requests;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Selector的非阻塞HTTP/1.1客户端引擎，单个线程即可同时处理上万个连接。
+ * <p> 所有连接的I/O都在一个事件循环线程中完成：请求从池化的直接缓冲区写出，响应被增量解析，完成后通过ResponseCallback通知。
+ * 空闲的keep-alive连接按目标地址保存在连接池中并被复用。
+ * <p> 通过 Session.setNioEngine(NioEngine engine) 使用，只支持http请求，https请求仍通过HttpURLConnection发送。
+ * <p> 使用完毕后应调用 close() 关闭事件循环线程和所有连接。
+ *
+ * @author charghet
+ *
+ */
+public class NioEngine implements Closeable {
+    private static final long SWEEP_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private final Selector selector;
+    private final Thread thread;
+    private final BufferPool buffers;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Map<String, Deque<Connection>> idle = new HashMap<>();
+    private final Set<Connection> connections = new HashSet<>();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private volatile int openConnections = 0;
+    private volatile boolean running = true;
+    private volatile long idleTimeout = 30000;
+    /**
+     * 上一次检查超时的时刻，只在事件循环线程中访问。
+     */
+    private long lastSweep = System.nanoTime();
+    private volatile int maxIdlePerHost = 256;
+    /**
+     * 构造一个使用16KB缓冲区的引擎，并启动事件循环线程。
+     *
+     * @throws IOException 如果无法打开Selector
+     */
+    public NioEngine() throws IOException {
+        this(16 * 1024, 1024);
+    }
+    /**
+     * 构造一个指定缓冲区大小的引擎，并启动事件循环线程。
+     *
+     * @param bufferSize 每个直接缓冲区的大小（字节）
+     * @param maxPooledBuffers 池中最多保留的直接缓冲区数
+     * @throws IOException 如果无法打开Selector
+     */
+    public NioEngine(int bufferSize, int maxPooledBuffers) throws IOException {
+        this.buffers = new BufferPool(bufferSize, maxPooledBuffers);
+        this.selector = Selector.open();
+        this.thread = new Thread(this::loop, "requests-nio");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * 设置空闲连接的最长保留时间，默认为30000毫秒。
+     *
+     * @param millis 最长保留时间（毫秒）
+     */
+    public void setIdleTimeout(long millis) {
+        this.idleTimeout = millis;
+    }
+    /**
+     * 设置每个目标地址最多保留的空闲连接数，默认为256。
+     *
+     * @param maxIdlePerHost 最多保留的空闲连接数
+     */
+    public void setMaxIdlePerHost(int maxIdlePerHost) {
+        this.maxIdlePerHost = maxIdlePerHost;
+    }
+    /**
+     * 获得当前打开的连接数，包括空闲连接。
+     *
+     * @return 打开的连接数
+     */
+    public int getOpenConnections() {
+        return openConnections;
+    }
+    /**
+     * 获得建立过的连接总数。
+     *
+     * @return 建立过的连接总数
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+    /**
+     * 获得成功完成的请求数。
+     *
+     * @return 成功完成的请求数
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+    /**
+     * 获得失败的请求数。
+     *
+     * @return 失败的请求数
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+    /**
+     * 判断引擎是否仍在运行。
+     *
+     * @return 如果引擎仍在运行，返回true，否则返回false
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    /**
+     * 提交一个请求，请求完成后通过请求中的回调通知。
+     *
+     * @param request 请求
+     */
+    void execute(NioRequest request) {
+        request.engine = this;
+        if(!running) {
+            finish(request, null, new RequestException("NioEngine已关闭"));
+            return;
+        }
+        tasks.add(() -> start(request));
+        selector.wakeup();
+    }
+    /**
+     * 取消一个请求。
+     *
+     * @param request 请求
+     */
+    void cancel(NioRequest request) {
+        tasks.add(() -> {
+            for(Connection c : connections) {
+                if(c.request == request) {
+                    fail(c, new IOException("请求已取消"), false);
+                    return;
+                }
+            }
+        });
+        selector.wakeup();
+    }
+    /**
+     * 关闭事件循环线程和所有连接，尚未完成的请求以RequestException失败。
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if(Thread.currentThread() != thread) {
+            try {
+                thread.join(5000);
+            }catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    private void loop() {
+        while(running) {
+            try {
+                selector.select(100);
+            }catch(IOException e) {
+                break;
+            }
+            Runnable task;
+            while((task = tasks.poll()) != null) {
+                task.run();
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                handle(key);
+            }
+            // 检查超时需要遍历所有连接，每次唤醒都检查会使负载下的事件循环做平方级的工作
+            long now = System.nanoTime();
+            if(now - lastSweep >= SWEEP_INTERVAL) {
+                lastSweep = now;
+                sweep();
+            }
+        }
+        shutdown();
+    }
+    private void shutdown() {
+        running = false;
+        Runnable task;
+        while((task = tasks.poll()) != null) {
+            task.run();
+        }
+        for(Connection c : new ArrayList<>(connections)) {
+            fail(c, new IOException("NioEngine已关闭"), false);
+        }
+        try {
+            selector.close();
+        }catch(IOException e) {
+            // 忽略关闭时的错误
+        }
+    }
+    private void start(NioRequest request) {
+        if(request.cancelled) {
+            finish(request, null, new RequestException("请求已取消"));
+            return;
+        }
+        if(!running) {
+            finish(request, null, new RequestException("NioEngine已关闭"));
+            return;
+        }
+        Connection c = request.retried ? null : pollIdle(request.poolKey());
+        if(c != null) {
+            c.reused = true;
+            assign(c, request);
+            return;
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            c = new Connection(channel, request.poolKey());
+            connections.add(c);
+            openConnections = connections.size();
+            opened.incrementAndGet();
+            c.request = request;
+            c.activity = System.nanoTime();
+            if(channel.connect(request.address)) {
+                c.key = channel.register(selector, 0, c);
+                assign(c, request);
+            }else {
+                c.connecting = true;
+                c.key = channel.register(selector, SelectionKey.OP_CONNECT, c);
+            }
+        }catch(IOException e) {
+            if(c != null) {
+                fail(c, e, false);
+            }else {
+                closeQuietly(channel);
+                finish(request, null, new RequestException(e.toString(), e));
+            }
+        }
+    }
+    private Connection pollIdle(String poolKey) {
+        Deque<Connection> deque = idle.get(poolKey);
+        if(deque == null) {
+            return null;
+        }
+        Connection c = deque.pollFirst();
+        if(deque.isEmpty()) {
+            idle.remove(poolKey);
+        }
+        return c;
+    }
+    private void assign(Connection c, NioRequest request) {
+        c.request = request;
+        c.parser = new ResponseParser(request.isHead());
+        c.activity = System.nanoTime();
+        c.write = buffers.acquire(request.data.length);
+        c.write.put(request.data).flip();
+        c.headersReported = false;
+        c.key.interestOps(SelectionKey.OP_WRITE);
+        report(request.callback::connected);
+    }
+    private void handle(SelectionKey key) {
+        Connection c = (Connection)key.attachment();
+        if(!key.isValid()) {
+            return;
+        }
+        try {
+            if(key.isConnectable()) {
+                c.channel.finishConnect();
+                c.connecting = false;
+                assign(c, c.request);
+                return;
+            }
+            if(key.isWritable()) {
+                c.channel.write(c.write);
+                c.activity = System.nanoTime();
+                if(!c.write.hasRemaining()) {
+                    buffers.release(c.write);
+                    c.write = null;
+                    key.interestOps(SelectionKey.OP_READ);
+                    NioRequest request = c.request;
+                    report(() -> request.callback.requestSent(request.bodyLength));
+                }
+                return;
+            }
+            if(key.isReadable()) {
+                read(c);
+            }
+        }catch(IOException e) {
+            fail(c, e, true);
+        }catch(RuntimeException e) {
+            fail(c, new IOException(e.toString(), e), false);
+        }
+    }
+    private void read(Connection c) throws IOException {
+        ByteBuffer buffer = buffers.acquire(buffers.getBufferSize());
+        try {
+            while(true) {
+                buffer.clear();
+                int n = c.channel.read(buffer);
+                if(n == -1) {
+                    if(c.request == null) {
+                        close(c);
+                        return;
+                    }
+                    if(c.parser.endOfStream()) {
+                        complete(c, false);
+                        return;
+                    }
+                    throw new IOException("连接已关闭");
+                }
+                if(n == 0) {
+                    return;
+                }
+                c.activity = System.nanoTime();
+                if(c.request == null) {
+                    close(c);
+                    return;
+                }
+                buffer.flip();
+                boolean done = c.parser.feed(buffer);
+                if(!c.headersReported && c.parser.isHeadersDone()) {
+                    c.headersReported = true;
+                    int code = c.parser.getStatusCode();
+                    NioRequest request = c.request;
+                    report(() -> request.callback.headersReceived(code));
+                }
+                if(done) {
+                    complete(c, c.parser.isKeepAlive() && !buffer.hasRemaining());
+                    return;
+                }
+            }
+        }finally {
+            buffers.release(buffer);
+        }
+    }
+    private void complete(Connection c, boolean keepAlive) {
+        NioRequest request = c.request;
+        Response response = c.parser.toResponse();
+        c.request = null;
+        c.parser = null;
+        if(keepAlive && running) {
+            Deque<Connection> deque = idle.computeIfAbsent(c.poolKey, k -> new ArrayDeque<>());
+            if(deque.size() < maxIdlePerHost) {
+                c.activity = System.nanoTime();
+                deque.addFirst(c);
+            }else {
+                close(c);
+            }
+        }else {
+            close(c);
+        }
+        finish(request, response, null);
+    }
+    /**
+     * 连接发生错误时关闭连接。如果请求在复用的连接上尚未收到任何响应，则在新连接上重试一次。
+     */
+    private void fail(Connection c, IOException e, boolean retryable) {
+        NioRequest request = c.request;
+        boolean stale = c.reused && c.parser != null && !c.parser.isStarted();
+        close(c);
+        if(request == null) {
+            return;
+        }
+        if(retryable && stale && !request.retried && !request.cancelled && running) {
+            request.retried = true;
+            start(request);
+            return;
+        }
+        finish(request, null, new RequestException(e.toString(), e));
+    }
+    private void close(Connection c) {
+        if(c.write != null) {
+            buffers.release(c.write);
+            c.write = null;
+        }
+        Deque<Connection> deque = idle.get(c.poolKey);
+        if(deque != null) {
+            deque.remove(c);
+            if(deque.isEmpty()) {
+                idle.remove(c.poolKey);
+            }
+        }
+        if(c.key != null) {
+            c.key.cancel();
+        }
+        closeQuietly(c.channel);
+        connections.remove(c);
+        openConnections = connections.size();
+        c.request = null;
+    }
+    private void finish(NioRequest request, Response response, RequestException error) {
+        if(request.finished) {
+            return;
+        }
+        request.finished = true;
+        try {
+            if(error == null) {
+                completed.incrementAndGet();
+                request.callback.completed(response);
+            }else {
+                failed.incrementAndGet();
+                request.callback.failed(error);
+            }
+        }catch(RuntimeException e) {
+            // 回调中的异常不影响事件循环
+        }
+    }
+    /**
+     * 在事件循环线程中通知请求的进展，回调中的异常不影响事件循环。
+     */
+    private static void report(Runnable action) {
+        try {
+            action.run();
+        }catch(RuntimeException e) {
+            // 回调中的异常不影响事件循环
+        }
+    }
+    /**
+     * 检查连接超时、读取超时、总时限和空闲连接的保留时间。
+     * <p> 每100毫秒最多检查一次，超时的判断因此最多延迟约100毫秒。
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        List<Connection> expired = null;
+        List<IOException> reasons = null;
+        for(Connection c : connections) {
+            IOException reason = null;
+            NioRequest request = c.request;
+            if(request == null) {
+                if(now - c.activity > TimeUnit.MILLISECONDS.toNanos(idleTimeout)) {
+                    reason = new IOException("空闲连接超时");
+                }
+            }else if(request.deadline != 0 && now - request.deadline > 0) {
+                reason = new SocketTimeoutException("请求超过总时限");
+            }else if(c.connecting && request.connectTimeout > 0 && now - c.activity > TimeUnit.MILLISECONDS.toNanos(request.connectTimeout)) {
+                reason = new ConnectException("connect timed out");
+            }else if(!c.connecting && request.readTimeout > 0 && now - c.activity > TimeUnit.MILLISECONDS.toNanos(request.readTimeout)) {
+                reason = new SocketTimeoutException("Read timed out");
+            }
+            if(reason != null) {
+                if(expired == null) {
+                    expired = new ArrayList<>();
+                    reasons = new ArrayList<>();
+                }
+                expired.add(c);
+                reasons.add(reason);
+            }
+        }
+        if(expired != null) {
+            for(int i = 0;i < expired.size();i++) {
+                fail(expired.get(i), reasons.get(i), false);
+            }
+        }
+    }
+    private static void closeQuietly(SocketChannel channel) {
+        if(channel != null) {
+            try {
+                channel.close();
+            }catch(IOException e) {
+                // 忽略关闭时的错误
+            }
+        }
+    }
+    /**
+     * 一个到目标地址的连接。只在事件循环线程中访问。
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final String poolKey;
+        SelectionKey key;
+        NioRequest request;
+        ResponseParser parser;
+        ByteBuffer write;
+        boolean connecting = false;
+        boolean reused = false;
+        boolean headersReported = false;
+        long activity;
+        Connection(SocketChannel channel, String poolKey) {
+            this.channel = channel;
+            this.poolKey = poolKey;
+        }
+    }
+}
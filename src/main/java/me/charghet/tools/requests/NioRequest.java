@@ -0,0 +1,140 @@
+package me.charghet.tools.requests;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * 通过NioEngine发送的一个请求，包含已编码的请求字节、目标地址、超时设置和回调。
+ *
+ * @author charghet
+ *
+ */
+class NioRequest {
+    final String method;
+    final URL url;
+    final InetSocketAddress address;
+    final byte[] data;
+    final int bodyLength;
+    final int connectTimeout;
+    final int readTimeout;
+    final long deadline;
+    final ResponseCallback callback;
+    volatile boolean cancelled = false;
+    boolean retried = false;
+    boolean finished = false;
+    NioEngine engine;
+    /**
+     * 构造一个请求。
+     *
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param address 连接的地址
+     * @param data 已编码的请求行、请求头和请求体
+     * @param bodyLength 请求体的字节数
+     * @param connectTimeout 连接超时时间（毫秒），为0时不限制
+     * @param readTimeout 读取超时时间（毫秒），为0时不限制
+     * @param deadline 截止时刻（System.nanoTime()），为0时不限制
+     * @param callback 请求完成时的回调
+     */
+    NioRequest(String method, URL url, InetSocketAddress address, byte[] data, int bodyLength, int connectTimeout, int readTimeout, long deadline, ResponseCallback callback) {
+        this.method = method;
+        this.url = url;
+        this.address = address;
+        this.data = data;
+        this.bodyLength = bodyLength;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.deadline = deadline;
+        this.callback = callback;
+    }
+    /**
+     * 获得连接池中区分连接的键。
+     *
+     * @return 连接池的键
+     */
+    String poolKey() {
+        return address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+    /**
+     * 判断请求方法是否为HEAD。
+     *
+     * @return 如果请求方法为HEAD，返回true，否则返回false
+     */
+    boolean isHead() {
+        return "HEAD".equals(method);
+    }
+    /**
+     * 取消请求。
+     */
+    void cancel() {
+        cancelled = true;
+        NioEngine e = engine;
+        if(e != null) {
+            e.cancel(this);
+        }
+    }
+    /**
+     * 将请求编码为HTTP/1.1请求字节。
+     * <p> 如果请求头中未包含 Host 字段，则根据url地址添加；如果请求体不为null，则添加 Content-Length 字段，
+     * 并在未指定 Content-Type 时使用 application/x-www-form-urlencoded，与HttpURLConnection一致。
+     * <p> 与 HttpURLConnection.setRequestProperty 相同，请求头和url地址中不能包含回车或换行符，以免被插入额外的请求头或请求。
+     *
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param headers 请求头
+     * @param body 请求体，为null时不发送请求体
+     * @return 编码后的请求字节
+     * @throws IllegalArgumentException 如果请求方法、url地址或请求头中包含回车或换行符
+     */
+    static byte[] encode(String method, URL url, Map<String, String> headers, byte[] body) {
+        StringBuilder sb = new StringBuilder(256);
+        String file = url.getFile();
+        checkLine("请求方法", method);
+        checkLine("url地址", file);
+        checkLine("url地址", url.getHost());
+        sb.append(method).append(' ').append(file.isEmpty() ? "/" : file).append(" HTTP/1.1\r\n");
+        boolean host = false;
+        boolean type = false;
+        for(Map.Entry<String, String> header : headers.entrySet()) {
+            String name = header.getKey();
+            if("Content-Length".equalsIgnoreCase(name)) {
+                continue;
+            }
+            checkLine("请求头", name);
+            checkLine("请求头", header.getValue());
+            host |= "Host".equalsIgnoreCase(name);
+            type |= "Content-Type".equalsIgnoreCase(name);
+            sb.append(name).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if(!host) {
+            sb.append("Host: ").append(url.getHost());
+            if(url.getPort() != -1) {
+                sb.append(':').append(url.getPort());
+            }
+            sb.append("\r\n");
+        }
+        if(body != null) {
+            if(!type) {
+                sb.append("Content-Type: application/x-www-form-urlencoded\r\n");
+            }
+            sb.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        sb.append("\r\n");
+        byte[] head = sb.toString().getBytes(StandardCharsets.UTF_8);
+        if(body == null || body.length == 0) {
+            return head;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + body.length);
+        out.write(head, 0, head.length);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+    private static void checkLine(String what, String value) {
+        if(value != null && (value.indexOf('\r') != -1 || value.indexOf('\n') != -1)) {
+            throw new IllegalArgumentException(what + "中包含非法字符：" + value);
+        }
+    }
+}
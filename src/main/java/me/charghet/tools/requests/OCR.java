@@ -1,6 +1,25 @@
 package me.charghet.tools.requests;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
@@ -11,13 +30,29 @@ import com.alibaba.fastjson.JSONObject;
  * <p> 关于如何获得应用的API Key和Secret Key
  * <p> 具体参阅：<a href=https://ai.baidu.com/ai-doc/OCR/dk3iqnq51>文字识别</a>
  * <p> 只须参阅第一步中的获取应用的API Key和Secret Key即可。
+ * <p> access_token按 expires_in 缓存，在过期前由后台线程自动刷新；识别时如果服务端返回access_token无效或过期，则刷新后重试一次。
+ * 同时只有一个刷新请求，并发的识别请求等待该请求的结果。所有请求通过同一个Session发送，复用其连接和设置。
+ * <p> 图片以流的方式经过Base64编码和表单编码后直接写入请求体，不生成完整的Base64字符串；
+ * 可通过 discernAll 以有限的并发数批量识别大量图片。
  * @author charghet
  *
  */
 public class OCR {
-    private String id;
-    private String secret;
-    private String token;
+    private static final String DEFAULT_BASE_URL = "https://aip.baidubce.com";
+    private static final long MAX_REFRESH_MARGIN = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "requests-ocr-token");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String id;
+    private final String secret;
+    private final String baseURL;
+    private final Session session = new Session();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Token token;
+    private ScheduledFuture<?> refresh;
     /**
      * 通过应用的API Key和Secret Key构造一个OCR实例。
      * <p> 在构造过程中会通过http请求对应用的API Key和Secret Key进行验证。
@@ -27,9 +62,32 @@ public class OCR {
      * @throws OCRException 如果在OCR识别过程中发生错误
      */
     public OCR(String id, String secret) throws OCRException {
+        this(id, secret, DEFAULT_BASE_URL);
+    }
+    /**
+     * 通过应用的API Key、Secret Key和接口地址构造一个OCR实例。
+     * <p> 在构造过程中会通过http请求对应用的API Key和Secret Key进行验证。
+     * 
+     * @param id 应用的API Key
+     * @param secret 应用的Secret Key
+     * @param baseURL 接口地址，如 "https://aip.baidubce.com"，末尾不带"/"
+     * @throws OCRException 如果在OCR识别过程中发生错误
+     */
+    public OCR(String id, String secret, String baseURL) throws OCRException {
         this.id = id;
         this.secret = secret;
-        token = getToken();
+        this.baseURL = baseURL;
+        refreshToken(null);
+    }
+    /**
+     * 获得发送请求的Session，可用于设置超时、重试策略、熔断器和限流器等。
+     * <p> 识别请求为POST请求，重试策略需要 RetryPolicy.setRetryNonIdempotent(true) 才会重试识别请求；
+     * 识别服务本身是幂等的，重复发送不会产生副作用。重试时重新读取图片。
+     * 
+     * @return Session
+     */
+    public Session getSession() {
+        return session;
     }
     /**
      * 通过应用的API Key和Secret Key获得access_token。
@@ -37,25 +95,108 @@ public class OCR {
      * @return access_token
      * @throws OCRException 如果在OCR识别过程中发生错误
      */
-    private String getToken() throws OCRException {
-        Session session = new Session();
-        String tokenurl = "https://aip.baidubce.com/oauth/2.0/token";
+    private Token getToken() throws OCRException {
+        String tokenurl = baseURL + "/oauth/2.0/token";
         URLParam data = new URLParam();
         data.add("grant_type", "client_credentials");
         data.add("client_id", id);
         data.add("client_secret", secret);
+        String result;
         try {
             Response rs = session.post(tokenurl, data);
-            String result = rs.getText();
-            JSONObject json = JSON.parseObject(result);
-            String token = json.getString("access_token");
-            if(token == null) {
-                throw new OCRException(result);
-            }
-            return token;
+            result = rs.getText();
         }catch(Exception e) {
             throw new OCRException(e.getMessage(), e.getCause());
         }
+        JSONObject json;
+        try {
+            json = JSON.parseObject(result);
+        }catch(Exception e) {
+            throw new OCRException(result, e);
+        }
+        String value = json == null ? null : json.getString("access_token");
+        if(value == null) {
+            throw new OCRException(result);
+        }
+        Long expiresIn = json.getLong("expires_in");
+        return new Token(value, expiresIn == null ? 0 : TimeUnit.SECONDS.toMillis(expiresIn));
+    }
+    /**
+     * 获得未过期的access_token，如果已过期，则立即刷新。
+     * 
+     * @return access_token
+     * @throws OCRException 如果刷新access_token过程中发生错误
+     */
+    private Token currentToken() throws OCRException {
+        Token t = token;
+        return t.isExpired() ? refreshToken(t) : t;
+    }
+    /**
+     * 刷新access_token，并安排下一次自动刷新。
+     * <p> 如果access_token已被其他线程刷新，则直接返回新的access_token，不再发送请求。
+     * 
+     * @param stale 需要被替换的access_token
+     * @return 新的access_token
+     * @throws OCRException 如果刷新access_token过程中发生错误
+     */
+    private Token refreshToken(Token stale) throws OCRException {
+        lock.lock();
+        try {
+            Token t = token;
+            if(t != stale) {
+                return t;
+            }
+            t = getToken();
+            token = t;
+            long lifetime = t.getLifetime();
+            if(lifetime > 0) {
+                schedule(t, lifetime - Math.min(lifetime / 10, MAX_REFRESH_MARGIN));
+            }
+            return t;
+        }finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * 安排在指定时间后于后台刷新access_token。
+     * <p> 后台任务只弱引用本实例，不会阻止本实例被回收。
+     * 
+     * @param stale 需要被替换的access_token
+     * @param delay 等待时间（毫秒）
+     */
+    private void schedule(Token stale, long delay) {
+        if(refresh != null) {
+            refresh.cancel(false);
+        }
+        WeakReference<OCR> reference = new WeakReference<>(this);
+        refresh = REFRESHER.schedule(() -> {
+            OCR ocr = reference.get();
+            if(ocr != null) {
+                ocr.backgroundRefresh(stale);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+    /**
+     * 在后台刷新access_token，失败时在过期前重试。
+     * 
+     * @param stale 需要被替换的access_token
+     */
+    private void backgroundRefresh(Token stale) {
+        try {
+            refreshToken(stale);
+        }catch(OCRException e) {
+            long remaining = stale.getRemaining();
+            if(remaining > 0) {
+                lock.lock();
+                try {
+                    if(token == stale) {
+                        schedule(stale, Math.max(1, Math.min(remaining / 2, MAX_RETRY_DELAY)));
+                    }
+                }finally {
+                    lock.unlock();
+                }
+            }
+        }
     }
     /**
      * 对图片的字节数组进行OCR识别，返回识别后的字符串数组。
@@ -65,26 +206,131 @@ public class OCR {
      * @throws OCRException 如果在OCR识别过程中发生错误
      */
     public String[] discernToArray(byte[] bytes) throws OCRException {
-        String image = Base64.getEncoder().encodeToString(bytes);
-        String dicernurl = "https://aip.baidubce.com/rest/2.0/ocr/v1/general_basic";
-        URLParam data = new URLParam();
-        data.add("access_token", token);
-        data.add("image", image);
-        Session session = new Session();
-        try {
-            Response rs = session.post(dicernurl, data);
-            String text = rs.getText();
-            JSONObject json = JSON.parseObject(text);
-            JSONArray array = json.getJSONArray("words_result");
+        return discernToArray(ImageSource.of(bytes));
+    }
+    /**
+     * 对图片进行OCR识别，返回识别后的字符串数组。
+     * <p> 每次发送请求时读取两遍图片：第一遍计算请求体的长度，第二遍写入请求体。
+     * 
+     * @param image 图片来源
+     * @return  识别后的字符串数组
+     * @throws OCRException 如果在读取图片或OCR识别过程中发生错误
+     */
+    public String[] discernToArray(ImageSource image) throws OCRException {
+        String dicernurl = baseURL + "/rest/2.0/ocr/v1/general_basic";
+        Token t = currentToken();
+        for(int retries = 0;;retries++) {
+            String text;
+            try {
+                Response rs = session.post(dicernurl, new ImageBody(t.getValue(), image));
+                text = rs.getText();
+            }catch(IOException e) {
+                throw new OCRException(e.toString(), e);
+            }catch(Exception e) {
+                throw new OCRException(e.toString(),e.getCause());
+            }
+            JSONObject json;
+            try {
+                json = JSON.parseObject(text);
+            }catch(Exception e) {
+                throw new OCRException(text, e);
+            }
+            Integer code = json == null ? null : json.getInteger("error_code");
+            if(code != null && isTokenError(code) && retries == 0) {
+                t = refreshToken(t);
+                continue;
+            }
+            JSONArray array = json == null ? null : json.getJSONArray("words_result");
+            if(array == null) {
+                throw new OCRException(text);
+            }
             String[] result = new String[array.size()];
             for(int i = 0;i < array.size();i++) {
                 result[i] = array.getJSONObject(i).getString("words");
             }
             return result;
-        }catch(Exception e) {
-            throw new OCRException(e.toString(),e.getCause());
         }
-        
+    }
+    /**
+     * 以指定的并发数批量识别图片文件。
+     * 
+     * @param paths 图片文件的路径
+     * @param concurrency 最多同时识别的图片数
+     * @return 识别结果，顺序与图片相同
+     * @throws OCRException 如果等待过程中被中断
+     */
+    public List<OCRResult> discernFiles(List<Path> paths, int concurrency) throws OCRException {
+        List<ImageSource> images = new ArrayList<>(paths.size());
+        for(Path path : paths) {
+            images.add(ImageSource.of(path));
+        }
+        return discernAll(images, concurrency);
+    }
+    /**
+     * 以指定的并发数批量识别图片。
+     * <p> 在Session的线程池中启动最多concurrency个任务，依次取出尚未识别的图片进行识别。
+     * 单张图片识别失败不影响其他图片，错误记录在对应的识别结果中。
+     * 
+     * @param images 图片来源
+     * @param concurrency 最多同时识别的图片数
+     * @return 识别结果，顺序与图片相同
+     * @throws OCRException 如果等待过程中被中断
+     */
+    public List<OCRResult> discernAll(List<? extends ImageSource> images, int concurrency) throws OCRException {
+        if(concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency必须大于0：" + concurrency);
+        }
+        OCRResult[] results = new OCRResult[images.size()];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = session.getExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for(int w = 0;w < Math.min(concurrency, results.length);w++) {
+                futures.add(executor.submit(() -> {
+                    int i;
+                    while((i = next.getAndIncrement()) < results.length && !Thread.currentThread().isInterrupted()) {
+                        results[i] = discernResult(images.get(i));
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OCRException(e.toString(), e);
+        }catch(ExecutionException e) {
+            throw new OCRException(e.getCause().toString(), e.getCause());
+        }finally {
+            for(Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return Arrays.asList(results);
+    }
+    /**
+     * 识别一张图片，将发生的错误记录在识别结果中。
+     * 
+     * @param image 图片来源
+     * @return 识别结果
+     */
+    private OCRResult discernResult(ImageSource image) {
+        try {
+            return new OCRResult(discernToArray(image), null);
+        }catch(OCRException e) {
+            return new OCRResult(null, e);
+        }catch(RuntimeException e) {
+            return new OCRResult(null, new OCRException(e.toString(), e));
+        }
+    }
+    /**
+     * 判断错误码是否表示access_token无效或过期。
+     * 
+     * @param code 错误码
+     * @return 如果access_token无效或过期，返回true，否则返回false
+     */
+    private static boolean isTokenError(int code) {
+        return code == 110 || code == 111;
     }
     /**
      * 对图片的字节数组进行OCR识别，返回识别后的字符串。
@@ -102,4 +348,93 @@ public class OCR {
         }
         return result.toString();
     }
+    /**
+     * 识别请求的请求体，图片经过Base64编码和表单编码后以流的方式写出。
+     */
+    private static class ImageBody implements RequestBody {
+        private final byte[] prefix;
+        private final ImageSource image;
+        private final long length;
+        /**
+         * 构造一个请求体，并读取一遍图片计算请求体的长度。
+         * 
+         * @param token access_token
+         * @param image 图片来源
+         * @throws IOException 如果无法读取图片
+         */
+        ImageBody(String token, ImageSource image) throws IOException {
+            this.prefix = ("access_token=" + URLEncoder.encode(token, "UTF-8") + "&image=").getBytes(StandardCharsets.US_ASCII);
+            this.image = image;
+            long[] count = {prefix.length};
+            encode(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    count[0] += FormEncodingOutputStream.encodedLength(b & 0xff);
+                }
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    for(int i = off;i < off + len;i++) {
+                        count[0] += FormEncodingOutputStream.encodedLength(b[i] & 0xff);
+                    }
+                }
+            });
+            this.length = count[0];
+        }
+        @Override
+        public long length() {
+            return length;
+        }
+        @Override
+        public String contentType() {
+            return "application/x-www-form-urlencoded";
+        }
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(prefix);
+            encode(new FormEncodingOutputStream(out));
+        }
+        /**
+         * 将图片经过Base64编码后写入输出流。
+         */
+        private void encode(OutputStream out) throws IOException {
+            byte[] buffer = new byte[8192];
+            try(InputStream in = image.open(); OutputStream base64 = Base64.getEncoder().wrap(out)) {
+                int n;
+                while((n = in.read(buffer)) != -1) {
+                    base64.write(buffer, 0, n);
+                }
+            }
+        }
+    }
+    /**
+     * 一个access_token及其过期时刻。
+     */
+    private static class Token {
+        private final String value;
+        private final long lifetime;
+        private final long expiresAt;
+        /**
+         * 构造一个access_token。
+         * 
+         * @param value access_token
+         * @param lifetime 有效期（毫秒），为0时不过期
+         */
+        Token(String value, long lifetime) {
+            this.value = value;
+            this.lifetime = lifetime;
+            this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lifetime);
+        }
+        String getValue() {
+            return value;
+        }
+        long getLifetime() {
+            return lifetime;
+        }
+        long getRemaining() {
+            return lifetime == 0 ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+        }
+        boolean isExpired() {
+            return getRemaining() <= 0;
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package me.charghet.tools.requests;
+
+/**
+ * 批量识别中一张图片的识别结果。
+ * 
+ * @author charghet
+ *
+ */
+public class OCRResult {
+    private final String[] words;
+    private final OCRException error;
+    /**
+     * 构造一个识别结果。
+     * 
+     * @param words 识别后的字符串数组，识别失败时为null
+     * @param error 识别过程中发生的错误，识别成功时为null
+     */
+    OCRResult(String[] words, OCRException error) {
+        this.words = words;
+        this.error = error;
+    }
+    /**
+     * 判断是否识别成功。
+     * 
+     * @return 如果识别成功，返回true，否则返回false
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+    /**
+     * 获得识别后的字符串数组。
+     * 
+     * @return 识别后的字符串数组，如果识别失败，则返回null
+     */
+    public String[] getWords() {
+        return words;
+    }
+    /**
+     * 获得识别过程中发生的错误。
+     * 
+     * @return 错误，如果识别成功，则返回null
+     */
+    public OCRException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,96 @@
+package me.charghet.tools.requests;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以HTTP/1.1管线化方式发送请求的连接。
+ * <p> 在一个连接上连续写出多个请求，不等待前一个请求的响应，再按请求的顺序读取响应。
+ *
+ * @author charghet
+ *
+ */
+class PipelinedConnection implements Closeable {
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] bytes = new byte[16 * 1024];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    /**
+     * 构造一个使用已建立的连接的管线化连接。
+     *
+     * @param socket 已建立的连接
+     * @throws IOException 如果无法获得连接的输入输出流
+     */
+    PipelinedConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        buffer.limit(0);
+    }
+    /**
+     * 发送一组请求并按顺序读取响应，最多同时有depth个请求等待响应。
+     * <p> 如果服务端关闭了连接、响应要求关闭连接或发生I/O错误，则停止发送，返回已收到的响应。
+     * 未收到响应的请求由调用者重新发送，重新发送时发生的错误会通过其自身的RequestException报告，因此不保留此处的I/O错误。
+     *
+     * @param requests 已编码的请求
+     * @param heads 每个请求的方法是否为HEAD
+     * @param depth 最多同时等待响应的请求数
+     * @return 已收到的响应，顺序与请求相同
+     */
+    List<Response> send(List<byte[]> requests, List<Boolean> heads, int depth) {
+        List<Response> responses = new ArrayList<>(requests.size());
+        int written = 0;
+        try {
+            while(responses.size() < requests.size()) {
+                int read = responses.size();
+                if(written < requests.size() && written - read < depth) {
+                    while(written < requests.size() && written - read < depth) {
+                        out.write(requests.get(written++));
+                    }
+                    out.flush();
+                }
+                ResponseParser parser = new ResponseParser(heads.get(read));
+                while(!parser.feed(buffer)) {
+                    if(!fill()) {
+                        parser.endOfStream();
+                        break;
+                    }
+                }
+                responses.add(parser.toResponse());
+                if(!parser.isKeepAlive()) {
+                    break;
+                }
+            }
+        }catch(IOException e) {
+            // 返回已收到的响应，剩余的请求由调用者重新发送
+        }
+        return responses;
+    }
+    private boolean fill() throws IOException {
+        int n = in.read(bytes);
+        if(n == -1) {
+            return false;
+        }
+        buffer.clear();
+        buffer.limit(n);
+        return true;
+    }
+    /**
+     * 关闭连接。
+     */
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        }catch(IOException e) {
+            // 忽略关闭时的错误
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package me.charghet.tools.requests;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预热一个源的结果，包含建立的连接数和每个连接的握手耗时。
+ * <p> 握手耗时从打开连接开始，到连接建立完成为止，包括DNS解析、TCP连接和TLS握手。
+ *
+ * @author charghet
+ *
+ */
+public class PrewarmResult {
+    private final String origin;
+    private final long[] handshakeTimes;
+    private final List<RequestException> errors;
+    /**
+     * 构造一个预热结果。
+     *
+     * @param origin 源，如："https://www.charghet.com"
+     * @param handshakeTimes 成功建立的每个连接的握手耗时（纳秒）
+     * @param errors 建立连接过程中发生的错误
+     */
+    PrewarmResult(String origin, long[] handshakeTimes, List<RequestException> errors) {
+        this.origin = origin;
+        this.handshakeTimes = handshakeTimes;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+    /**
+     * 获得预热的源。
+     *
+     * @return 源
+     */
+    public String getOrigin() {
+        return origin;
+    }
+    /**
+     * 获得成功建立的连接数。
+     *
+     * @return 成功建立的连接数
+     */
+    public int getConnections() {
+        return handshakeTimes.length;
+    }
+    /**
+     * 获得成功建立的每个连接的握手耗时。
+     *
+     * @return 握手耗时（纳秒）的数组
+     */
+    public long[] getHandshakeTimes() {
+        return handshakeTimes.clone();
+    }
+    /**
+     * 获得平均握手耗时。
+     *
+     * @return 平均握手耗时（毫秒），如果没有成功建立的连接，则返回0
+     */
+    public double getAverageHandshakeTime() {
+        if(handshakeTimes.length == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for(long time : handshakeTimes) {
+            sum += time;
+        }
+        return sum / 1e6 / handshakeTimes.length;
+    }
+    /**
+     * 获得建立连接过程中发生的错误。
+     *
+     * @return 错误列表
+     */
+    public List<RequestException> getErrors() {
+        return errors;
+    }
+    @Override
+    public String toString() {
+        return origin + " connections=" + getConnections() + " errors=" + errors.size()
+                + " avgHandshake=" + String.format("%.2f", getAverageHandshakeTime()) + "ms";
+    }
+}
@@ -0,0 +1,149 @@
+package me.charghet.tools.requests;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TrafficRecorder录制的一次请求交换，包括请求、响应和耗时。
+ * <p> cookie信息包含在请求头的 Cookie 字段和响应头的 Set-Cookie 字段中。
+ *
+ * @author charghet
+ *
+ */
+public class RecordedExchange {
+    private final long startMillis;
+    private final String method;
+    private final String url;
+    private final Map<String, String> requestHeaders;
+    private final byte[] requestBody;
+    private final int statusCode;
+    private final Map<String, List<String>> responseHeaders;
+    private final byte[] responseBody;
+    private final long firstByteNanos;
+    private final long durationNanos;
+    private final boolean redirected;
+    RecordedExchange(long startMillis, String method, String url, Map<String, String> requestHeaders, byte[] requestBody,
+            int statusCode, Map<String, List<String>> responseHeaders, byte[] responseBody, long firstByteNanos, long durationNanos,
+            boolean redirected) {
+        this.startMillis = startMillis;
+        this.method = method;
+        this.url = url;
+        this.requestHeaders = Collections.unmodifiableMap(requestHeaders);
+        this.requestBody = requestBody;
+        this.statusCode = statusCode;
+        this.responseHeaders = Collections.unmodifiableMap(responseHeaders);
+        this.responseBody = responseBody;
+        this.firstByteNanos = firstByteNanos;
+        this.durationNanos = durationNanos;
+        this.redirected = redirected;
+    }
+    /**
+     * 获得开始发送请求的时刻。
+     *
+     * @return 开始时刻（System.currentTimeMillis()）
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+    /**
+     * 获得请求方法。
+     *
+     * @return 请求方法
+     */
+    public String getMethod() {
+        return method;
+    }
+    /**
+     * 获得目标url地址。
+     *
+     * @return 已进行urlencode编码的url地址
+     */
+    public String getUrl() {
+        return url;
+    }
+    /**
+     * 获得请求头，包括Session中的请求头、仅用于本次请求的请求头和 Cookie 字段。
+     *
+     * @return 请求头字段的Map集合
+     */
+    public Map<String, String> getRequestHeaders() {
+        return requestHeaders;
+    }
+    /**
+     * 获得请求体。
+     *
+     * @return 请求体，如果没有请求体，则返回null
+     */
+    public byte[] getRequestBody() {
+        return requestBody;
+    }
+    /**
+     * 获得响应状态码。
+     *
+     * @return 响应状态码
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+    /**
+     * 获得响应头，不包括状态行。
+     *
+     * @return 响应头字段的Map集合
+     */
+    public Map<String, List<String>> getResponseHeaders() {
+        return responseHeaders;
+    }
+    /**
+     * 获得响应头中指定字段的最后一个值。
+     *
+     * @param name 字段名，不区分大小写
+     * @return 字段值，如果不存在该字段，则返回null
+     */
+    public String getResponseHeader(String name) {
+        String value = null;
+        for(Map.Entry<String, List<String>> field : responseHeaders.entrySet()) {
+            if(name.equalsIgnoreCase(field.getKey()) && !field.getValue().isEmpty()) {
+                value = field.getValue().get(field.getValue().size() - 1);
+            }
+        }
+        return value;
+    }
+    /**
+     * 获得响应体。
+     *
+     * @return 响应体
+     */
+    public byte[] getResponseBody() {
+        return responseBody;
+    }
+    /**
+     * 获得从开始发送请求到收到响应头经过的时间。
+     *
+     * @return 经过的时间（纳秒），如果未记录，则返回-1
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+    /**
+     * 获得从开始发送请求到响应体读取完毕经过的时间。
+     *
+     * @return 经过的时间（纳秒）
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+    /**
+     * 判断本次请求是否是执行重定向时自动发出的。
+     * <p> 通过Session回放时跳过这类请求，由Session自行执行重定向。
+     *
+     * @return 如果是执行重定向时发出的，则返回true
+     */
+    public boolean isRedirected() {
+        return redirected;
+    }
+    @Override
+    public String toString() {
+        return method + " " + url + " " + statusCode + " " + responseBody.length + "B " + durationNanos / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,100 @@
+package me.charghet.tools.requests;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 保存永久重定向（301、308）目标地址的缓存，按最近最少使用的顺序淘汰。
+ *
+ * @author charghet
+ *
+ */
+class RedirectCache {
+    private final LinkedHashMap<String, Target> map;
+    private volatile int capacity;
+    /**
+     * 构造一个指定容量的缓存。
+     *
+     * @param capacity 最多保存的重定向数，为0时不缓存
+     */
+    RedirectCache(int capacity) {
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<String, Target>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+                return size() > RedirectCache.this.capacity;
+            }
+        };
+    }
+    /**
+     * 设置缓存容量，超出容量的重定向会被立即淘汰。
+     *
+     * @param capacity 最多保存的重定向数，为0时不缓存
+     */
+    synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        while(map.size() > capacity) {
+            map.remove(map.keySet().iterator().next());
+        }
+    }
+    /**
+     * 获得缓存容量。
+     *
+     * @return 最多保存的重定向数
+     */
+    int getCapacity() {
+        return capacity;
+    }
+    /**
+     * 保存一个永久重定向。
+     *
+     * @param from 原url地址
+     * @param to 重定向的目标url地址
+     * @param code 重定向的响应状态码，301或308
+     */
+    synchronized void put(URL from, URL to, int code) {
+        if(capacity > 0) {
+            map.put(from.toString(), new Target(to, code));
+        }
+    }
+    /**
+     * 查找url地址最终的永久重定向目标。
+     * <p> 308适用于所有请求方法；301只适用于GET和HEAD请求，其他请求方法在重定向时会改变，不能直接跳过。
+     *
+     * @param url url地址
+     * @param method 请求方法
+     * @param maxHops 最多跟随的重定向次数
+     * @return 最终的目标url地址，如果没有缓存的重定向，则返回原url地址
+     */
+    synchronized URL resolve(URL url, String method, int maxHops) {
+        boolean safe = "GET".equals(method) || "HEAD".equals(method);
+        URL from = url;
+        for(int i = 0;i < maxHops;i++) {
+            Target entry = map.get(url.toString());
+            if(entry == null || (entry.code == 301 && !safe)) {
+                break;
+            }
+            url = entry.target;
+        }
+        if(url != from) {
+            FlightRecorderEvents.cache("redirect", from.toString(), "hit");
+        }
+        return url;
+    }
+    /**
+     * 清空缓存。
+     */
+    synchronized void clear() {
+        map.clear();
+    }
+    private static class Target {
+        final URL target;
+        final int code;
+        Target(URL target, int code) {
+            this.target = target;
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package me.charghet.tools.requests;
+
+import java.net.URL;
+
+/**
+ * Session处理HTTP重定向（响应代码为 3xx 的请求）的策略。
+ *
+ * @author charghet
+ *
+ */
+public enum RedirectPolicy {
+    /**
+     * 不执行重定向，直接返回 3xx 响应。
+     */
+    NEVER,
+    /**
+     * 执行重定向，但不允许从https重定向到http。
+     */
+    NORMAL,
+    /**
+     * 执行所有http和https之间的重定向。
+     */
+    ALWAYS;
+    /**
+     * 判断是否允许从指定地址重定向到目标地址。
+     *
+     * @param from 当前url地址
+     * @param to 重定向的目标url地址
+     * @return 如果允许重定向，返回true，否则返回false
+     */
+    boolean allows(URL from, URL to) {
+        String protocol = to.getProtocol();
+        if(this == NEVER || !("http".equals(protocol) || "https".equals(protocol))) {
+            return false;
+        }
+        return this == ALWAYS || !("https".equals(from.getProtocol()) && "http".equals(protocol));
+    }
+}
@@ -0,0 +1,151 @@
+package me.charghet.tools.requests;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 描述一个待发送的请求，用于批量发送请求。
+ * <p> 此类的实例是不可变的，可以在多个线程之间共享。
+ * <p> url地址的编码规则与Session中对应的get和post方法相同。
+ *
+ * @author charghet
+ *
+ */
+public class Request {
+    private final String method;
+    private final String url;
+    private final String body;
+    private final byte[] data;
+    private final Timeout timeout;
+    /**
+     * 构造一个请求。
+     *
+     * @param method 请求方法
+     * @param url 目标url地址，需要已进行urlencode编码
+     * @param body 请求体，为null时不发送请求体
+     * @param timeout 超时设置，为null时使用Session的超时设置
+     */
+    public Request(String method, String url, String body, Timeout timeout) {
+        this(method, url, body, null, timeout);
+    }
+    private Request(String method, String url, String body, byte[] data, Timeout timeout) {
+        if(method == null || url == null) {
+            throw new NullPointerException();
+        }
+        this.method = method;
+        this.url = url;
+        this.body = body;
+        this.data = data;
+        this.timeout = timeout;
+    }
+    /**
+     * 构造一个原样发送字节数组请求体的请求，用于回放录制的请求。
+     * <p> getBody() 返回以UTF-8解码的请求体，发送时仍使用原始的字节。
+     *
+     * @param method 请求方法
+     * @param url 目标url地址，需要已进行urlencode编码
+     * @param data 请求体，为null时不发送请求体
+     * @return Request
+     */
+    static Request of(String method, String url, byte[] data) {
+        return new Request(method, url, data == null ? null : new String(data, StandardCharsets.UTF_8), data, null);
+    }
+    /**
+     * 构造一个get请求。
+     * <p> 该方法不会自动将url字符串进行urlencode编码。
+     *
+     * @param url 目标url地址
+     * @return Request
+     */
+    public static Request get(String url) {
+        return new Request("GET", url, null, null);
+    }
+    /**
+     * 构造一个get请求，并将url字符串和url参数进行urlencode编码。
+     *
+     * @param url 目标url地址
+     * @param param 封装了需要传递的参数的URLParam类
+     * @return Request
+     * @throws FormatException 如果对url字符串或url参数进行urlencode编码过程中发生错误
+     */
+    public static Request get(String url, URLParam param) throws FormatException {
+        return get(URLUtil.encodeURL(url) + "?" + param.getEncodeString());
+    }
+    /**
+     * 构造一个post请求，并将url字符串进行urlencode编码。
+     *
+     * @param url 目标url地址
+     * @param param 需要传递的参数，如果包含中文字符等，请先进行urlencode编码
+     * @return Request
+     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
+     */
+    public static Request post(String url, String param) throws FormatException {
+        return new Request("POST", URLUtil.encodeURL(url), param, null);
+    }
+    /**
+     * 构造一个post请求，并将url字符串和url参数进行urlencode编码。
+     *
+     * @param url 目标url地址
+     * @param param 封装了url参数的URLParm类
+     * @return Request
+     * @throws FormatException 如果对url字符串和url参数进行urlencode编码过程中发生错误
+     */
+    public static Request post(String url, URLParam param) throws FormatException {
+        return post(url, param.getEncodeString());
+    }
+    /**
+     * 构造一个使用指定超时设置的相同请求。
+     *
+     * @param timeout 超时设置，为null时使用Session的超时设置
+     * @return Request
+     */
+    public Request withTimeout(Timeout timeout) {
+        return new Request(method, url, body, data, timeout);
+    }
+    /**
+     * 获得请求方法。
+     *
+     * @return 请求方法
+     */
+    public String getMethod() {
+        return method;
+    }
+    /**
+     * 获得目标url地址。
+     *
+     * @return 目标url地址
+     */
+    public String getUrl() {
+        return url;
+    }
+    /**
+     * 获得请求体。
+     *
+     * @return 请求体，如果不发送请求体，则返回null
+     */
+    public String getBody() {
+        return body;
+    }
+    /**
+     * 获得发送时使用的请求体。
+     *
+     * @return 请求体，如果不发送请求体，则返回null
+     */
+    RequestBody toRequestBody() {
+        if(data != null) {
+            return RequestBody.of(data);
+        }
+        return body == null ? null : RequestBody.of(body);
+    }
+    /**
+     * 获得超时设置。
+     *
+     * @return 超时设置，如果使用Session的超时设置，则返回null
+     */
+    public Timeout getTimeout() {
+        return timeout;
+    }
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+}
@@ -0,0 +1,92 @@
+package me.charghet.tools.requests;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 以流的方式写出的请求体。
+ * <p> 已知长度时以固定长度的流式模式发送，请求体不会在内存中缓冲。
+ *
+ * @author charghet
+ *
+ */
+interface RequestBody {
+    /**
+     * 获得请求体的字节数。
+     *
+     * @return 请求体的字节数，未知时为-1
+     */
+    long length();
+    /**
+     * 将请求体写入输出流，不关闭输出流。
+     *
+     * @param out 输出流
+     * @throws IOException 如果发生I/O错误
+     */
+    void writeTo(OutputStream out) throws IOException;
+    /**
+     * 获得请求体的 Content-Type，覆盖Session中的同名请求头。
+     *
+     * @return Content-Type，为null时使用Session中的设置
+     */
+    default String contentType() {
+        return null;
+    }
+    /**
+     * 将请求体写出到字节数组，用于不能以流的方式发送的场合（如NioEngine）。
+     *
+     * @return 请求体的字节数组
+     * @throws IOException 如果发生I/O错误
+     */
+    default byte[] toBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length() >= 0 ? (int)Math.min(length(), Integer.MAX_VALUE - 8) : 256);
+        writeTo(out);
+        return out.toByteArray();
+    }
+    /**
+     * 获得以UTF-8编码写出字符串的请求体。
+     *
+     * @param body 字符串
+     * @return 请求体
+     */
+    static RequestBody of(String body) {
+        return new RequestBody() {
+            @Override
+            public long length() {
+                return -1;
+            }
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                bw.write(body);
+                bw.flush();
+            }
+        };
+    }
+    /**
+     * 获得原样写出字节数组的请求体。
+     *
+     * @param body 字节数组
+     * @return 请求体
+     */
+    static RequestBody of(byte[] body) {
+        return new RequestBody() {
+            @Override
+            public long length() {
+                return body.length;
+            }
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(body);
+            }
+            @Override
+            public byte[] toBytes() {
+                return body;
+            }
+        };
+    }
+}
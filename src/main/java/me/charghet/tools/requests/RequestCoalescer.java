@@ -0,0 +1,140 @@
+package me.charghet.tools.requests;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并相同的并发GET请求。
+ * <p> 当多个线程同时发送url地址、请求头和cookie信息都相同的GET请求时，只有第一个请求被实际发送，
+ * 其余请求等待该请求完成，并得到共享同一个响应体的Response，或同一个RequestException。
+ * <p> 请求完成后立即从合并表中移除，之后的请求会重新发送，因此不会返回过期的响应。
+ * <p> 通过 Session.setRequestCoalescer(RequestCoalescer coalescer) 启用，多个Session可以共享同一个RequestCoalescer。
+ * <p> 注意：
+ * <p> 所有调用者共享同一个响应体，请勿修改 Response.getBytes() 返回的字节数组。
+ * 响应体保存在BodyStorage中时，每个调用者得到各自的Response，都需要关闭，最后一个关闭时才释放响应体。
+ * 等待的请求最多等待到自己的总时限（Timeout.getDeadline()），超过时抛出RequestException，被实际发送的请求不受影响；
+ * 未设置总时限时等待被实际发送的请求完成。
+ *
+ * @author charghet
+ *
+ */
+public class RequestCoalescer {
+    private final Map<String, Flight> inflight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    /**
+     * 实际发送请求的操作。
+     */
+    interface Call {
+        /**
+         * 发送请求。
+         *
+         * @return Response
+         * @throws RequestException 如果在请求过程中发生错误
+         */
+        Response call() throws RequestException;
+    }
+    /**
+     * 正在进行的一个请求和等待它的请求数。
+     */
+    private static class Flight {
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+        /**
+         * 等待的请求数，只在合并表的 compute 中修改，请求从合并表中移除后不再变化。
+         */
+        private int waiters = 0;
+    }
+    /**
+     * 执行请求，如果已有相同的请求正在进行，则等待该请求完成并返回其结果。
+     *
+     * @param key 区分请求的键，包含url地址、请求头和cookie信息
+     * @param timeout 本次请求的超时设置，等待其他相同请求时最多等待其总时限
+     * @param call 实际发送请求的操作
+     * @return Response
+     * @throws RequestException 如果在请求过程中发生错误，或等待过程中被中断或超过总时限
+     */
+    Response execute(String key, Timeout timeout, Call call) throws RequestException {
+        Flight created = new Flight();
+        Flight flight = inflight.compute(key, (k, existing) -> {
+            if(existing == null) {
+                return created;
+            }
+            existing.waiters++;
+            return existing;
+        });
+        if(flight != created) {
+            coalesced.increment();
+            try {
+                if(timeout.getDeadline() > 0) {
+                    return flight.future.get(timeout.getDeadline(), TimeUnit.MILLISECONDS).share();
+                }
+                return flight.future.get().share();
+            }catch(InterruptedException e) {
+                abandon(flight);
+                Thread.currentThread().interrupt();
+                throw new RequestException(e.toString(), e);
+            }catch(TimeoutException e) {
+                abandon(flight);
+                throw new RequestException("请求超过总时限：" + timeout.getDeadline() + "ms", e);
+            }catch(ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof RequestException) {
+                    throw (RequestException)cause;
+                }
+                throw new RequestException(cause.toString(), cause);
+            }
+        }
+        executed.increment();
+        Response response;
+        try {
+            response = call.call();
+        }catch(Throwable e) {
+            // 包括Error在内的任何异常都要结束等待，否则等待的请求会一直阻塞
+            inflight.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        }
+        // 从合并表中移除后等待的请求数不再增加，先为每个等待的请求增加响应体的引用，再唤醒它们
+        inflight.remove(key, flight);
+        response.retain(flight.waiters);
+        flight.future.complete(response);
+        return response;
+    }
+    /**
+     * 放弃等待时，已为本请求增加的响应体引用在请求完成后释放。
+     *
+     * @param flight 正在进行的请求
+     */
+    private static void abandon(Flight flight) {
+        flight.future.thenAccept(response -> response.share().close());
+    }
+    /**
+     * 获得实际发送的请求数。
+     *
+     * @return 实际发送的请求数
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+    /**
+     * 获得被合并的请求数，即等待其他相同请求而未实际发送的请求数。
+     *
+     * @return 被合并的请求数
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+    /**
+     * 获得当前正在进行的不同请求数。
+     *
+     * @return 正在进行的不同请求数
+     */
+    public int getInflightCount() {
+        return inflight.size();
+    }
+}
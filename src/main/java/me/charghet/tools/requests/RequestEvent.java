@@ -0,0 +1,152 @@
+package me.charghet.tools.requests;
+
+import java.net.URL;
+
+/**
+ * 一次请求交换中各个阶段的时刻和传输的字节数。
+ * <p> 所有时刻均为 System.nanoTime() 的返回值，尚未到达的阶段为0。
+ * 
+ * @author charghet
+ *
+ */
+public class RequestEvent {
+    private final String method;
+    private final URL url;
+    private final long startNanos;
+    private long connectedNanos;
+    private long sentNanos;
+    private long firstByteNanos;
+    private long endNanos;
+    private long bytesSent;
+    private long bytesReceived;
+    private int statusCode = -1;
+    /**
+     * 正在进行的JFR事件，不录制时为null。
+     */
+    Object flightRecord;
+    /**
+     * 构造一个在当前时刻开始的请求事件。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     */
+    RequestEvent(String method, URL url) {
+        this.method = method;
+        this.url = url;
+        this.startNanos = System.nanoTime();
+    }
+    void connected() {
+        connectedNanos = System.nanoTime();
+    }
+    void sent(long bytes) {
+        sentNanos = System.nanoTime();
+        bytesSent = bytes;
+    }
+    void firstByte(int code) {
+        firstByteNanos = System.nanoTime();
+        statusCode = code;
+    }
+    void end(long bytes) {
+        endNanos = System.nanoTime();
+        bytesReceived = bytes;
+    }
+    void end(int code, long bytes) {
+        statusCode = code;
+        end(bytes);
+    }
+    /**
+     * 获得请求方法。
+     * 
+     * @return 请求方法
+     */
+    public String getMethod() {
+        return method;
+    }
+    /**
+     * 获得目标url地址。
+     * 
+     * @return 目标url地址
+     */
+    public URL getUrl() {
+        return url;
+    }
+    /**
+     * 获得开始发送请求的时刻。
+     * 
+     * @return 开始时刻（纳秒）
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+    /**
+     * 获得获得连接的时刻。
+     * 
+     * @return 获得连接的时刻（纳秒）
+     */
+    public long getConnectedNanos() {
+        return connectedNanos;
+    }
+    /**
+     * 获得请求发送完毕的时刻。
+     * <p> 不通过NioEngine发送的不带请求体的请求，该时刻早于请求头实际写出的时刻，参见 RequestListener.headersSent(RequestEvent event)。
+     * 
+     * @return 请求发送完毕的时刻（纳秒）
+     */
+    public long getSentNanos() {
+        return sentNanos;
+    }
+    /**
+     * 获得收到响应头的时刻。
+     * 
+     * @return 收到响应头的时刻（纳秒）
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+    /**
+     * 获得响应体读取完毕或请求失败的时刻。
+     * 
+     * @return 结束时刻（纳秒）
+     */
+    public long getEndNanos() {
+        return endNanos;
+    }
+    /**
+     * 获得发送的请求体字节数，不包括请求头。
+     * 
+     * @return 请求体字节数
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+    /**
+     * 获得收到的响应体字节数，不包括响应头。
+     * 
+     * @return 响应体字节数
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+    /**
+     * 获得响应状态码。
+     * 
+     * @return 响应状态码，如果尚未收到响应，则返回-1
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+    /**
+     * 获得从开始到指定时刻经过的时间。
+     * 
+     * @param nanos 时刻（纳秒），为0时表示该阶段尚未到达
+     * @return 经过的时间（纳秒），如果该阶段尚未到达，则返回-1
+     */
+    public long since(long nanos) {
+        return nanos == 0 ? -1 : nanos - startNanos;
+    }
+    @Override
+    public String toString() {
+        return method + " " + url + " " + statusCode + " connect=" + since(connectedNanos) + "ns sent=" + since(sentNanos)
+                + "ns firstByte=" + since(firstByteNanos) + "ns total=" + since(endNanos) + "ns out=" + bytesSent + " in=" + bytesReceived;
+    }
+}
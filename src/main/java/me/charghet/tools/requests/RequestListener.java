@@ -0,0 +1,59 @@
+package me.charghet.tools.requests;
+
+/**
+ * 监听每次请求交换各个阶段的接口。
+ * <p> 通过 Session.setRequestListener(RequestListener listener) 设置。每次实际发送的请求，包括重定向和重试，都对应一个RequestEvent，
+ * 各个回调在对应的阶段结束时由发送请求的线程调用，此时RequestEvent中该阶段的时刻已经记录。
+ * <p> 所有方法默认不做任何操作，只需实现关心的阶段。回调应尽快返回，不应抛出异常。
+ * <p> 通过NioEngine发送的请求，connectionAcquired、headersSent 和 firstByte 在NioEngine的事件循环线程中调用。
+ * 
+ * @author charghet
+ *
+ */
+public interface RequestListener {
+    /**
+     * 开始发送请求时调用。
+     * 
+     * @param event 请求事件
+     */
+    default void requestStart(RequestEvent event) {
+    }
+    /**
+     * 获得连接后调用，包括解析主机名、建立TCP连接和TLS握手，复用keep-alive连接时几乎不耗时。
+     * 
+     * @param event 请求事件
+     */
+    default void connectionAcquired(RequestEvent event) {
+    }
+    /**
+     * 请求头和请求体发送完毕后调用。
+     * <p> 不通过NioEngine发送的不带请求体的请求，HttpURLConnection在读取响应时才写出请求头，
+     * 此时请求尚未发出，该阶段只对带请求体的请求是准确的。
+     * 
+     * @param event 请求事件
+     */
+    default void headersSent(RequestEvent event) {
+    }
+    /**
+     * 收到响应的状态行和响应头后调用。
+     * 
+     * @param event 请求事件
+     */
+    default void firstByte(RequestEvent event) {
+    }
+    /**
+     * 响应体读取完毕后调用。
+     * 
+     * @param event 请求事件
+     */
+    default void bodyComplete(RequestEvent event) {
+    }
+    /**
+     * 请求失败时调用，之后不会再调用其他方法。
+     * 
+     * @param event 请求事件
+     * @param error 发生的错误
+     */
+    default void failed(RequestEvent event, Throwable error) {
+    }
+}
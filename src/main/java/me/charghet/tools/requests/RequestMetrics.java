@@ -0,0 +1,145 @@
+package me.charghet.tools.requests;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按主机汇总请求各阶段延迟的RequestListener。
+ * <p> 每个主机分别记录建立连接、收到响应头和完成请求的延迟直方图，以及请求数、失败数和传输的字节数。
+ * 多个Session可以共享同一个RequestMetrics。
+ * 
+ * @author charghet
+ *
+ */
+public class RequestMetrics implements RequestListener {
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    @Override
+    public void bodyComplete(RequestEvent event) {
+        Host host = host(event.getUrl());
+        host.requests.increment();
+        host.bytesSent.add(event.getBytesSent());
+        host.bytesReceived.add(event.getBytesReceived());
+        if(event.getConnectedNanos() != 0) {
+            host.connect.record(event.since(event.getConnectedNanos()));
+        }
+        if(event.getFirstByteNanos() != 0) {
+            host.firstByte.record(event.since(event.getFirstByteNanos()));
+        }
+        host.total.record(event.since(event.getEndNanos()));
+    }
+    @Override
+    public void failed(RequestEvent event, Throwable error) {
+        host(event.getUrl()).failures.increment();
+    }
+    private Host host(URL url) {
+        String key = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+        return hosts.computeIfAbsent(key, k -> new Host());
+    }
+    /**
+     * 获得指定主机的统计信息。
+     * 
+     * @param host 主机名，使用非默认端口时为"主机名:端口号"
+     * @return 统计信息，如果没有该主机的请求，则返回null
+     */
+    public Host getHost(String host) {
+        return hosts.get(host);
+    }
+    /**
+     * 获得所有主机的统计信息。
+     * 
+     * @return 按主机名排序的统计信息
+     */
+    public Map<String, Host> getHosts() {
+        return new TreeMap<>(hosts);
+    }
+    /**
+     * 清空所有统计信息。
+     */
+    public void reset() {
+        hosts.clear();
+    }
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for(Map.Entry<String, Host> entry : getHosts().entrySet()) {
+            s.append(entry.getKey()).append('\n').append(entry.getValue());
+        }
+        return s.toString();
+    }
+    /**
+     * 一个主机的统计信息。
+     */
+    public static class Host {
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram firstByte = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        /**
+         * 获得从开始到获得连接的延迟直方图（纳秒）。
+         * 
+         * @return 延迟直方图
+         */
+        public LatencyHistogram getConnect() {
+            return connect;
+        }
+        /**
+         * 获得从开始到收到响应头的延迟直方图（纳秒）。
+         * 
+         * @return 延迟直方图
+         */
+        public LatencyHistogram getFirstByte() {
+            return firstByte;
+        }
+        /**
+         * 获得从开始到响应体读取完毕的延迟直方图（纳秒）。
+         * 
+         * @return 延迟直方图
+         */
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+        /**
+         * 获得完成的请求数。
+         * 
+         * @return 完成的请求数
+         */
+        public long getRequestCount() {
+            return requests.sum();
+        }
+        /**
+         * 获得失败的请求数。
+         * 
+         * @return 失败的请求数
+         */
+        public long getFailureCount() {
+            return failures.sum();
+        }
+        /**
+         * 获得发送的请求体总字节数。
+         * 
+         * @return 字节数
+         */
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+        /**
+         * 获得收到的响应体总字节数。
+         * 
+         * @return 字节数
+         */
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+        @Override
+        public String toString() {
+            return "  requests=" + getRequestCount() + " failures=" + getFailureCount() + " out=" + getBytesSent() + " in=" + getBytesReceived()
+                    + "\n  connect:   " + connect + "\n  firstByte: " + firstByte + "\n  total:     " + total + "\n";
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package me.charghet.tools.requests;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 将主机名解析为IP地址的解析器。
+ * <p> 通过 Session.setResolver(Resolver resolver) 设置后，Session直接连接解析得到的第一个地址，
+ * 并通过 Host 请求头和TLS的SNI保留原主机名。
+ *
+ * @author charghet
+ *
+ */
+public interface Resolver {
+    /**
+     * 使用JVM默认解析方式（InetAddress.getAllByName）的解析器。
+     */
+    Resolver SYSTEM = InetAddress::getAllByName;
+    /**
+     * 将主机名解析为IP地址。
+     *
+     * @param host 主机名
+     * @return 主机的所有IP地址，至少包含一个地址
+     * @throws UnknownHostException 如果无法解析该主机名
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+}
@@ -2,10 +2,13 @@ package me.charghet.tools.requests;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
@@ -13,13 +16,20 @@ import com.alibaba.fastjson.JSONObject;
 /**
  * 解析url请求结果。
  * <p>解析包含的HttpURLConnection类其中的信息。
+ * <p>通过NioEngine发送的请求没有HttpURLConnection，其状态码、响应头和响应体在构造时给出。
+ * <p>Session设置了BodyStorage时，响应体保存在堆外内存或临时文件中，使用完毕后应调用 close() 释放。
  * 
  * @author charghet
  *
  */
-public class Response {
+public class Response implements Closeable {
     private HttpURLConnection connection;
+    private int statusCode;
+    private Map<String, List<String>> headerFields;
     private byte[] bytes = null;
+    private int length;
+    private BodyStorage.Block block;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
     private JSONObject json = null;
     /**
      * 构造一个包含HttpURLConnection的Response类，并读取内容。
@@ -28,39 +38,108 @@ public class Response {
      * @throws IOException 如果在读取过程中发生错误
      */
     public Response(HttpURLConnection connection) throws IOException {
+        this(connection, null);
+    }
+    /**
+     * 构造一个包含HttpURLConnection的Response类，并将内容读取到指定的存储中。
+     * 
+     * @param connection HttpURLConnection
+     * @param storage 保存响应体的BodyStorage，为null时保存在堆中
+     * @throws IOException 如果在读取过程中发生错误
+     */
+    Response(HttpURLConnection connection, BodyStorage storage) throws IOException {
         this.connection = connection;
-        readBytes();
+        readBytes(storage);
+    }
+    /**
+     * 构造一个不包含HttpURLConnection的Response类。
+     * 
+     * @param statusCode 响应状态码
+     * @param headerFields 响应头，键为null的字段为状态行
+     * @param bytes 响应体
+     */
+    Response(int statusCode, Map<String, List<String>> headerFields, byte[] bytes) {
+        this.statusCode = statusCode;
+        this.headerFields = headerFields;
+        this.bytes = bytes;
+        this.length = bytes.length;
+    }
+    /**
+     * 构造一个与指定Response共享响应体的Response类，用于把同一个响应交给多个调用者。
+     * <p> 响应体保存在BodyStorage中时，调用者需要先通过 retain(int count) 为其增加引用。
+     * 
+     * @param shared 共享响应体的Response
+     */
+    private Response(Response shared) {
+        this.connection = shared.connection;
+        this.statusCode = shared.statusCode;
+        this.headerFields = shared.headerFields;
+        this.bytes = shared.bytes;
+        this.length = shared.length;
+        this.block = shared.block;
+    }
+    /**
+     * 为保存在BodyStorage中的响应体增加引用，之后可以通过 share() 得到同样数量的Response。
+     * <p> 响应体保存在堆中时，此方法不做任何操作。
+     * 
+     * @param count 增加的引用数
+     */
+    void retain(int count) {
+        if(block != null && count > 0) {
+            block.retain(count);
+        }
+    }
+    /**
+     * 获得一个共享响应体的Response，每个Response都需要各自关闭。
+     * <p> 响应体保存在BodyStorage中时，必须先通过 retain(int count) 为其增加引用；保存在堆中时返回此Response本身。
+     * 
+     * @return 共享响应体的Response
+     */
+    Response share() {
+        return block != null ? new Response(this) : this;
     }
     /**
      * 获得Response中的HttpURLConnection类，以调用HttpURLConnection类中的方法。
      * 
-     * @return HttpURLConnection
+     * @return HttpURLConnection，如果请求不是通过HttpURLConnection发送的，则返回null
      */
     public HttpURLConnection getConnection() {
         return connection;
     }
+    /**
+     * 获得响应头字段的Map集合。
+     * 
+     * @return 响应头字段的Map集合，键为null的字段为状态行
+     */
+    public Map<String, List<String>> getHeaderFields() {
+        return connection != null ? connection.getHeaderFields() : headerFields;
+    }
     /**
      * 读取HttpURLConnection中的字节流。
+     * <p> 已知 Content-Length 时按该长度分配响应体数组，HEAD请求不分配。
      * 
+     * @param storage 保存响应体的BodyStorage，为null时保存在堆中
      * @throws IOException 如果发生I/O错误
      */
-    private void readBytes() throws IOException{
+    private void readBytes(BodyStorage storage) throws IOException{
         if(bytes != null) {
             return;
         }
-        BufferedInputStream reader;
+        InputStream in;
         try {
-            reader = new BufferedInputStream(connection.getInputStream());
+            in = connection.getInputStream();
         }catch(IOException e) {
-            reader = new BufferedInputStream(connection.getErrorStream());
+            in = connection.getErrorStream();
         }
-        ByteArrayOutputStream bo = new ByteArrayOutputStream();
-        byte[] b = new byte[1024];
-        int len;
-        while((len = reader.read(b)) != -1) {
-            bo.write(b,0,len);
+        long contentLength = "HEAD".equals(connection.getRequestMethod()) ? 0 : connection.getContentLengthLong();
+        if(storage != null) {
+            block = storage.store(in, contentLength);
+            length = block.length();
+            return;
         }
-        bytes = bo.toByteArray();
+        BodyReader reader = BodyReader.read(in, contentLength);
+        bytes = reader.getBytes();
+        length = reader.getLength();
     }
     /**
      * 以指定编码格式获得url请求后的文本信息。
@@ -70,7 +149,10 @@ public class Response {
      * @throws UnsupportedEncodingException 如果不支持指定的编码
      */
     public String getText(String encoding) throws UnsupportedEncodingException{
-        return new String(bytes, encoding);
+        if(block != null) {
+            return new String(stored().toBytes(), encoding);
+        }
+        return new String(bytes, 0, length, encoding);
     }
     /**
      * 以UTF-8编码格式获得url请求后的文本信息。
@@ -78,16 +160,63 @@ public class Response {
      * @return 文本信息
      */
     public String getText() {
-        return new String(bytes, StandardCharsets.UTF_8);
+        if(block != null) {
+            return new String(stored().toBytes(), StandardCharsets.UTF_8);
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
     }
 
     /**
      * 获得url请求结果的字节数组。
+     * <p> 响应体保存在BodyStorage中时，每次调用都会复制出一个新的字节数组。
      *
      * @return 请求结果的字节数组
+     * @throws IllegalStateException 如果响应体保存在BodyStorage中，且Response已关闭
      */
     public byte[] getBytes(){
-        return bytes;
+        if(block != null) {
+            return stored().toBytes();
+        }
+        byte[] b = bytes;
+        if(b.length != length) {
+            b = Arrays.copyOf(b, length);
+            bytes = b;
+        }
+        return b;
+    }
+    /**
+     * 获得url请求结果的只读ByteBuffer视图。
+     * <p> 与 getBytes() 不同，此方法不会复制响应体，适用于只需读取响应体的场合。
+     * 响应体保存在BodyStorage中时，Response关闭后不能再使用返回的ByteBuffer。
+     *
+     * @return 处于读模式的只读ByteBuffer
+     * @throws IllegalStateException 如果响应体保存在BodyStorage中，且Response已关闭
+     */
+    public ByteBuffer getBody() {
+        if(block != null) {
+            return stored().view();
+        }
+        return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+    }
+    /**
+     * 获得保存在BodyStorage中的响应体。
+     * 
+     * @return 响应体
+     * @throws IllegalStateException 如果Response已关闭
+     */
+    private BodyStorage.Block stored() {
+        if(closed.get()) {
+            throw new IllegalStateException("Response已关闭");
+        }
+        return block;
+    }
+    /**
+     * 获得url请求结果的字节数。
+     *
+     * @return 响应体长度（字节）
+     */
+    public int getLength() {
+        return length;
     }
     /**
      * 获得url请求结果的JSONObject。
@@ -118,10 +247,10 @@ public class Response {
      * @return 响应头信息的二维字符串数组
      */
     public String[][] getHeaders(){
-        Map<String, List<String>> map = connection.getHeaderFields();
+        Map<String, List<String>> map = getHeaderFields();
         String[] keySet = map.keySet().toArray(new String[0]);
-        List<String> key = new Vector<>();
-        List<String> value = new Vector<>();
+        List<String> key = new ArrayList<>();
+        List<String> value = new ArrayList<>();
         for(String name : keySet) {
             List<String> valueList = map.get(name);
             for(String v : valueList) {
@@ -143,7 +272,16 @@ public class Response {
      * @return 属性值
      */
     public String getHeader(String name) {
-        return connection.getHeaderField(name);
+        if(connection != null) {
+            return connection.getHeaderField(name);
+        }
+        String value = null;
+        for(Map.Entry<String, List<String>> field : headerFields.entrySet()) {
+            if(name.equalsIgnoreCase(field.getKey()) && !field.getValue().isEmpty()) {
+                value = field.getValue().get(field.getValue().size() - 1);
+            }
+        }
+        return value;
     }
     /**
      * 将响应url请求后的字节流写入目标文件中。
@@ -153,9 +291,19 @@ public class Response {
      */
     public void writeFile(File file) throws IOException {
         FileOutputStream writer = new FileOutputStream(file);
-        writer.write(bytes);
-        writer.flush();
-        writer.close();
+        try {
+            if(block != null) {
+                ByteBuffer body = stored().view();
+                while(body.hasRemaining()) {
+                    writer.getChannel().write(body);
+                }
+            }else {
+                writer.write(bytes, 0, length);
+            }
+            writer.flush();
+        }finally {
+            writer.close();
+        }
     }
     /**
      * 将响应url请求后的字节流写入目标文件中。
@@ -172,12 +320,26 @@ public class Response {
      * @return 响应状态码
      */
     public int getStatusCode() {
+        if(connection == null) {
+            return statusCode;
+        }
         try {
             return connection.getResponseCode();
         } catch (IOException e) {
             return -1;
         }
     }
+    /**
+     * 释放保存在BodyStorage中的响应体，重复调用无效。
+     * <p> 响应体保存在堆中时，此方法不做任何操作。
+     * 响应体被多个Response共享时（如合并请求），在最后一个Response关闭时才释放。
+     */
+    @Override
+    public void close() {
+        if(block != null && closed.compareAndSet(false, true)) {
+            block.close();
+        }
+    }
     /**
      * 向控制台输出响应头信息。
      * <p> 此方法用于调试。
@@ -0,0 +1,45 @@
+package me.charghet.tools.requests;
+
+/**
+ * 异步请求完成时的回调。
+ * <p> 回调在NioEngine的事件循环线程中执行，不应在回调中执行耗时或阻塞的操作。
+ *
+ * @author charghet
+ *
+ */
+public interface ResponseCallback {
+    /**
+     * 请求成功完成时调用。
+     *
+     * @param response 请求的响应
+     */
+    void completed(Response response);
+    /**
+     * 请求失败时调用。
+     *
+     * @param e 请求过程中发生的错误
+     */
+    void failed(RequestException e);
+    /**
+     * 获得连接后调用，复用keep-alive连接时在发送请求前立即调用。
+     * <p> 默认不做任何操作。
+     */
+    default void connected() {
+    }
+    /**
+     * 请求头和请求体发送完毕后调用。
+     * <p> 默认不做任何操作。
+     *
+     * @param bytes 发送的请求体字节数，不包括请求头
+     */
+    default void requestSent(long bytes) {
+    }
+    /**
+     * 收到最终响应的状态行和响应头后调用。
+     * <p> 默认不做任何操作。
+     *
+     * @param statusCode 状态码
+     */
+    default void headersReceived(int statusCode) {
+    }
+}
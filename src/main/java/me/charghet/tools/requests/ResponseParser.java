@@ -0,0 +1,425 @@
+package me.charghet.tools.requests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量解析HTTP/1.1响应的解析器。
+ * <p> 可以分多次传入任意长度的字节，解析完一个完整的响应后停止，剩余的字节保留在缓冲区中，以便解析下一个响应。
+ * <p> 支持 Content-Length、chunked 以及读取到连接关闭为止的响应体，并跳过 1xx 响应。
+ * <p> 设置Sink后，响应体不再保存在解析器中，而是在解析过程中逐段传给Sink，用于读取不会结束的长连接。
+ *
+ * @author charghet
+ *
+ */
+class ResponseParser {
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_PRESIZE = 8 * 1024 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int STATUS = 0;
+    private static final int HEADERS = 1;
+    private static final int FIXED = 2;
+    private static final int CHUNK_SIZE = 3;
+    private static final int CHUNK_DATA = 4;
+    private static final int CHUNK_END = 5;
+    private static final int TRAILERS = 6;
+    private static final int UNTIL_CLOSE = 7;
+    private static final int DONE = 8;
+    private final boolean head;
+    private int state = STATUS;
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private boolean started = false;
+    private String version;
+    private int statusCode;
+    private Map<String, List<String>> headers;
+    private long contentLength;
+    private boolean chunked;
+    private boolean close;
+    private long remaining;
+    private byte[] fixed;
+    private int fixedLength;
+    private long fixedSize;
+    private ByteArrayOutputStream body;
+    private Sink sink;
+    private boolean headersOnly = false;
+    /**
+     * 构造一个解析器。
+     *
+     * @param head 请求方法是否为HEAD，HEAD请求的响应没有响应体
+     */
+    ResponseParser(boolean head) {
+        this.head = head;
+        reset();
+    }
+    /**
+     * 接收响应体的Sink。
+     */
+    interface Sink {
+        /**
+         * 接收一段响应体。
+         *
+         * @param bytes 字节数组，只在本次调用中有效
+         * @param offset 起始位置
+         * @param length 字节数
+         * @throws IOException 如果处理过程中发生错误
+         */
+        void write(byte[] bytes, int offset, int length) throws IOException;
+    }
+    /**
+     * 设置接收响应体的Sink，设置后响应体不再保存在解析器中。
+     *
+     * @param sink 接收响应体的Sink
+     */
+    void setSink(Sink sink) {
+        this.sink = sink;
+    }
+    private void reset() {
+        state = STATUS;
+        headers = new LinkedHashMap<>();
+        contentLength = -1;
+        chunked = false;
+        close = false;
+    }
+    /**
+     * 传入读取到的字节并继续解析。
+     *
+     * @param buffer 处于读模式的缓冲区，解析完成时剩余的字节保留在缓冲区中
+     * @return 如果已解析完一个完整的响应，返回true，否则返回false
+     * @throws IOException 如果响应格式错误
+     */
+    boolean feed(ByteBuffer buffer) throws IOException {
+        if(buffer.hasRemaining()) {
+            started = true;
+        }
+        while(state != DONE && buffer.hasRemaining() && !(headersOnly && isHeadersDone())) {
+            switch(state) {
+                case STATUS:
+                case HEADERS:
+                case CHUNK_SIZE:
+                case CHUNK_END:
+                case TRAILERS:
+                    String text = readLine(buffer);
+                    if(text != null) {
+                        onLine(text);
+                    }
+                    break;
+                case FIXED:
+                    int n = buffer.remaining();
+                    if(n > remaining) {
+                        n = (int)remaining;
+                    }
+                    if(sink != null) {
+                        write(buffer, n);
+                    }else {
+                        if(fixed == null) {
+                            fixed = new byte[(int)Math.min(fixedSize, MAX_PRESIZE)];
+                        }else if(fixed.length - fixedLength < n) {
+                            // Content-Length 由服务端给出，不按其一次分配，随数据到达逐步扩容
+                            fixed = Arrays.copyOf(fixed, (int)Math.min(Math.max((long)fixedLength + n, (long)fixed.length * 2), fixedSize));
+                        }
+                        buffer.get(fixed, fixedLength, n);
+                        fixedLength += n;
+                    }
+                    remaining -= n;
+                    if(remaining == 0) {
+                        state = DONE;
+                    }
+                    break;
+                case CHUNK_DATA:
+                    n = (int)Math.min(buffer.remaining(), remaining);
+                    write(buffer, n);
+                    remaining -= n;
+                    if(remaining == 0) {
+                        state = CHUNK_END;
+                    }
+                    break;
+                case UNTIL_CLOSE:
+                    write(buffer, buffer.remaining());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return state == DONE;
+    }
+    /**
+     * 传入读取到的字节，只解析到响应头结束为止，剩余的字节保留在缓冲区中。
+     *
+     * @param buffer 处于读模式的缓冲区
+     * @return 如果已解析完响应头，返回true，否则返回false
+     * @throws IOException 如果响应格式错误
+     */
+    boolean feedHeaders(ByteBuffer buffer) throws IOException {
+        headersOnly = true;
+        try {
+            feed(buffer);
+        }finally {
+            headersOnly = false;
+        }
+        return isHeadersDone();
+    }
+    /**
+     * 判断是否已解析完最终响应的响应头。
+     *
+     * @return 如果已解析完响应头，返回true，否则返回false
+     */
+    boolean isHeadersDone() {
+        return state != STATUS && state != HEADERS;
+    }
+    /**
+     * 通知解析器连接已关闭。
+     *
+     * @return 如果响应体以连接关闭为结束标志，返回true
+     * @throws IOException 如果响应尚未完整就已关闭连接
+     */
+    boolean endOfStream() throws IOException {
+        if(state == UNTIL_CLOSE) {
+            state = DONE;
+            return true;
+        }
+        if(state == DONE) {
+            return true;
+        }
+        throw new IOException("响应未完整接收，连接已关闭");
+    }
+    private void write(ByteBuffer buffer, int n) throws IOException {
+        if(buffer.hasArray()) {
+            write(buffer.array(), buffer.arrayOffset() + buffer.position(), n);
+            buffer.position(buffer.position() + n);
+        }else {
+            byte[] b = new byte[Math.min(n, 8192)];
+            while(n > 0) {
+                int len = Math.min(n, b.length);
+                buffer.get(b, 0, len);
+                write(b, 0, len);
+                n -= len;
+            }
+        }
+    }
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        if(sink != null) {
+            sink.write(bytes, offset, length);
+        }else {
+            if(body.size() > MAX_ARRAY_SIZE - length) {
+                throw new IOException("响应体过大");
+            }
+            body.write(bytes, offset, length);
+        }
+    }
+    private String readLine(ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if(b == '\n') {
+                int len = lineLength;
+                if(len > 0 && line[len - 1] == '\r') {
+                    len--;
+                }
+                lineLength = 0;
+                return new String(line, 0, len, StandardCharsets.ISO_8859_1);
+            }
+            if(lineLength == line.length) {
+                if(line.length >= MAX_LINE) {
+                    throw new IOException("响应行过长");
+                }
+                byte[] larger = new byte[line.length * 2];
+                System.arraycopy(line, 0, larger, 0, lineLength);
+                line = larger;
+            }
+            line[lineLength++] = b;
+        }
+        return null;
+    }
+    private void onLine(String text) throws IOException {
+        switch(state) {
+            case STATUS:
+                if(text.isEmpty()) {
+                    return;
+                }
+                String[] parts = text.split(" ", 3);
+                if(parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                    throw new IOException("响应状态行格式错误：" + text);
+                }
+                version = parts[0];
+                try {
+                    statusCode = Integer.parseInt(parts[1]);
+                }catch(NumberFormatException e) {
+                    throw new IOException("响应状态行格式错误：" + text);
+                }
+                List<String> status = new ArrayList<>(1);
+                status.add(text);
+                headers.put(null, status);
+                state = HEADERS;
+                break;
+            case HEADERS:
+                if(text.isEmpty()) {
+                    onHeadersEnd();
+                    return;
+                }
+                int index = text.indexOf(':');
+                if(index <= 0) {
+                    throw new IOException("响应头格式错误：" + text);
+                }
+                String name = text.substring(0, index).trim();
+                String value = text.substring(index + 1).trim();
+                headers.computeIfAbsent(name, k -> new ArrayList<>(1)).add(value);
+                if("Content-Length".equalsIgnoreCase(name)) {
+                    try {
+                        contentLength = Long.parseLong(value);
+                    }catch(NumberFormatException e) {
+                        throw new IOException("Content-Length格式错误：" + value);
+                    }
+                }else if("Transfer-Encoding".equalsIgnoreCase(name)) {
+                    chunked = value.toLowerCase().contains("chunked");
+                }else if("Connection".equalsIgnoreCase(name)) {
+                    String v = value.toLowerCase();
+                    if(v.contains("close")) {
+                        close = true;
+                    }else if(v.contains("keep-alive")) {
+                        close = false;
+                    }
+                }
+                break;
+            case CHUNK_SIZE:
+                int end = text.indexOf(';');
+                String size = (end == -1 ? text : text.substring(0, end)).trim();
+                try {
+                    remaining = Long.parseLong(size, 16);
+                }catch(NumberFormatException e) {
+                    throw new IOException("chunk大小格式错误：" + text);
+                }
+                state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+                break;
+            case CHUNK_END:
+                state = CHUNK_SIZE;
+                break;
+            case TRAILERS:
+                if(text.isEmpty()) {
+                    state = DONE;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    private void onHeadersEnd() throws IOException {
+        if(statusCode >= 100 && statusCode < 200 && statusCode != 101) {
+            reset();
+            return;
+        }
+        if("HTTP/1.0".equals(version)) {
+            List<String> connection = null;
+            for(Map.Entry<String, List<String>> field : headers.entrySet()) {
+                if("Connection".equalsIgnoreCase(field.getKey())) {
+                    connection = field.getValue();
+                }
+            }
+            close = connection == null || !connection.toString().toLowerCase().contains("keep-alive");
+        }
+        if(head || statusCode == 204 || statusCode == 304) {
+            fixed = new byte[0];
+            state = DONE;
+        }else if(chunked) {
+            body = new ByteArrayOutputStream();
+            state = CHUNK_SIZE;
+        }else if(contentLength >= 0) {
+            if(sink == null && contentLength > MAX_ARRAY_SIZE) {
+                throw new IOException("响应体过大：" + contentLength);
+            }
+            fixedSize = contentLength;
+            fixedLength = 0;
+            remaining = fixedSize;
+            if(remaining == 0) {
+                fixed = new byte[0];
+                state = DONE;
+            }else {
+                state = FIXED;
+            }
+        }else {
+            body = new ByteArrayOutputStream();
+            close = true;
+            state = UNTIL_CLOSE;
+        }
+    }
+    /**
+     * 判断是否已收到响应的任何字节。
+     *
+     * @return 如果已收到字节，返回true，否则返回false
+     */
+    boolean isStarted() {
+        return started;
+    }
+    /**
+     * 判断是否已解析完一个完整的响应。
+     *
+     * @return 如果已解析完，返回true，否则返回false
+     */
+    boolean isDone() {
+        return state == DONE;
+    }
+    /**
+     * 判断连接在此响应后能否继续使用。
+     *
+     * @return 如果连接可以继续使用，返回true，否则返回false
+     */
+    boolean isKeepAlive() {
+        return !close;
+    }
+    /**
+     * 获得响应状态码。
+     *
+     * @return 响应状态码
+     */
+    int getStatusCode() {
+        return statusCode;
+    }
+    /**
+     * 获得响应头，键为null的字段为状态行。
+     *
+     * @return 响应头
+     */
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+    /**
+     * 获得响应头中指定字段的最后一个值，字段名不区分大小写。
+     *
+     * @param name 字段名
+     * @return 字段值，如果不存在该字段，则返回null
+     */
+    String getHeader(String name) {
+        String value = null;
+        for(Map.Entry<String, List<String>> field : headers.entrySet()) {
+            if(name.equalsIgnoreCase(field.getKey()) && !field.getValue().isEmpty()) {
+                value = field.getValue().get(field.getValue().size() - 1);
+            }
+        }
+        return value;
+    }
+    /**
+     * 获得响应体。
+     *
+     * @return 响应体
+     */
+    byte[] getBody() {
+        if(body != null) {
+            return body.toByteArray();
+        }
+        return fixed != null ? fixed : new byte[0];
+    }
+    /**
+     * 根据解析结果构造Response。
+     *
+     * @return Response
+     */
+    Response toResponse() {
+        return new Response(statusCode, headers, getBody());
+    }
+}
@@ -0,0 +1,221 @@
+package me.charghet.tools.requests;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求失败时的重试策略。
+ * <p> 重试间隔采用带随机抖动的指数退避：第n次重试前等待 [0, min(maxDelay, baseDelay * 2^n)) 之间的随机时间。
+ * 如果响应包含 Retry-After 字段，则至少等待该字段指定的时间；若该时间超过最大重试间隔，则不再重试。
+ * <p> 默认只重试幂等的请求方法（GET、HEAD、PUT、DELETE、OPTIONS、TRACE）。
+ * 对于非幂等的请求方法，只有在连接未建立（请求未发送）时才会重试。
+ * <p> 重试预算用于防止故障时重试流量放大：每个请求向预算中存入 budgetRatio 个令牌，每次重试消耗一个令牌，令牌不足时不再重试。
+ * <p> 通过 Session.setRetryPolicy(RetryPolicy retryPolicy) 启用。
+ *
+ * @author charghet
+ *
+ */
+public class RetryPolicy {
+    private static final long TOKEN = 1000;
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE"));
+    private int maxRetries;
+    private long baseDelay = 100;
+    private long maxDelay = 10000;
+    private Set<Integer> retryStatusCodes = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+    private boolean retryNonIdempotent = false;
+    private long budgetRatio = 200;
+    private long maxBudget = 100 * TOKEN;
+    private final AtomicLong budget = new AtomicLong(10 * TOKEN);
+    /**
+     * 构造一个最多重试2次的重试策略。
+     */
+    public RetryPolicy() {
+        this(2);
+    }
+    /**
+     * 构造一个指定最大重试次数的重试策略。
+     *
+     * @param maxRetries 最大重试次数
+     */
+    public RetryPolicy(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+    /**
+     * 设置最大重试次数。
+     *
+     * @param maxRetries 最大重试次数
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+    /**
+     * 获得最大重试次数。
+     *
+     * @return 最大重试次数
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+    /**
+     * 设置指数退避的基础间隔，默认为100毫秒。
+     *
+     * @param millis 基础间隔（毫秒）
+     */
+    public void setBaseDelay(long millis) {
+        this.baseDelay = millis;
+    }
+    /**
+     * 设置最大重试间隔，默认为10000毫秒。
+     * <p> Retry-After 字段指定的时间超过此值时，不再重试。
+     *
+     * @param millis 最大重试间隔（毫秒）
+     */
+    public void setMaxDelay(long millis) {
+        this.maxDelay = millis;
+    }
+    /**
+     * 设置需要重试的响应状态码，默认为429、502、503、504。
+     *
+     * @param codes 需要重试的响应状态码
+     */
+    public void setRetryStatusCodes(int... codes) {
+        Set<Integer> set = new HashSet<>();
+        for(int code : codes) {
+            set.add(code);
+        }
+        this.retryStatusCodes = set;
+    }
+    /**
+     * 设置是否重试非幂等的请求方法（如POST），默认为false。
+     *
+     * @param retryNonIdempotent 是否重试非幂等的请求方法
+     */
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+    /**
+     * 设置重试预算。
+     *
+     * @param ratio 每个请求存入的令牌数，如0.2表示重试流量最多约为正常流量的20%
+     * @param max 预算中最多保存的令牌数
+     */
+    public void setBudget(double ratio, int max) {
+        this.budgetRatio = (long)(ratio * TOKEN);
+        this.maxBudget = max * TOKEN;
+        budget.set(Math.min(budget.get(), maxBudget));
+    }
+    /**
+     * 获得重试预算中剩余的令牌数。
+     *
+     * @return 剩余的令牌数
+     */
+    public double getRemainingBudget() {
+        return (double)budget.get() / TOKEN;
+    }
+    /**
+     * 判断请求方法是否幂等。
+     *
+     * @param method 请求方法
+     * @return 如果请求方法幂等，返回true，否则返回false
+     */
+    public static boolean isIdempotent(String method) {
+        return IDEMPOTENT_METHODS.contains(method);
+    }
+    /**
+     * 记录一次新的请求，向重试预算中存入令牌。
+     */
+    void deposit() {
+        long current;
+        do {
+            current = budget.get();
+            if(current >= maxBudget) {
+                return;
+            }
+        }while(!budget.compareAndSet(current, Math.min(maxBudget, current + budgetRatio)));
+    }
+    /**
+     * 从重试预算中取出一个令牌。
+     *
+     * @return 如果预算充足，返回true，否则返回false
+     */
+    private boolean withdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if(current < TOKEN) {
+                return false;
+            }
+        }while(!budget.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+    /**
+     * 计算请求失败后的重试间隔。
+     *
+     * @param method 请求方法
+     * @param retries 已重试的次数
+     * @param response 请求的响应，如果请求过程中发生错误，则为null
+     * @param error 请求过程中发生的错误，如果请求成功，则为null
+     * @return 重试间隔（毫秒），如果不应重试，则返回-1
+     */
+    long retryDelay(String method, int retries, Response response, RequestException error) {
+        if(retries >= maxRetries) {
+            return -1;
+        }
+        long retryAfter = 0;
+        if(error != null) {
+            Throwable cause = error.getCause();
+            boolean notSent = cause instanceof ConnectException || cause instanceof UnknownHostException;
+            if(!notSent && !retryNonIdempotent && !isIdempotent(method)) {
+                return -1;
+            }
+        }else {
+            if(!retryStatusCodes.contains(response.getStatusCode())) {
+                return -1;
+            }
+            if(!retryNonIdempotent && !isIdempotent(method)) {
+                return -1;
+            }
+            retryAfter = parseRetryAfter(response.getHeader("Retry-After"));
+            if(retryAfter > maxDelay) {
+                return -1;
+            }
+        }
+        if(!withdraw()) {
+            return -1;
+        }
+        long ceiling = Math.min(maxDelay, baseDelay << Math.min(retries, 30));
+        long backoff = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling) : 0;
+        return Math.max(retryAfter, backoff);
+    }
+    /**
+     * 解析 Retry-After 字段，支持秒数和HTTP日期两种格式。
+     *
+     * @param value Retry-After 字段值
+     * @return 需要等待的时间（毫秒），如果字段不存在或格式错误，则返回0
+     */
+    static long parseRetryAfter(String value) {
+        if(value == null) {
+            return 0;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        }catch(NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            }catch(DateTimeParseException ex) {
+                return 0;
+            }
+        }
+    }
+}
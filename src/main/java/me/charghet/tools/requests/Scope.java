@@ -0,0 +1,78 @@
+package me.charghet.tools.requests;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一组并发请求的作用域。
+ * <p> 在作用域中创建的请求交换都会注册到作用域，取消作用域时一并取消这些请求。
+ *
+ * @author charghet
+ *
+ */
+class Scope {
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private final Set<Exchange> exchanges = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+    /**
+     * 获得当前线程所在的作用域。
+     *
+     * @return 作用域，如果当前线程不在任何作用域中，则返回null
+     */
+    static Scope current() {
+        return CURRENT.get();
+    }
+    /**
+     * 在当前线程中进入作用域并执行任务。
+     *
+     * @param <T> 任务结果的类型
+     * @param task 任务
+     * @return 任务结果
+     * @throws Exception 如果任务抛出异常
+     */
+    <T> T call(Callable<T> task) throws Exception {
+        Scope previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            if(cancelled) {
+                throw new RequestException("请求已取消");
+            }
+            return task.call();
+        }finally {
+            if(previous == null) {
+                CURRENT.remove();
+            }else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+    /**
+     * 注册一个请求交换，如果作用域已被取消，则立即取消该请求。
+     *
+     * @param exchange 请求交换
+     */
+    void register(Exchange exchange) {
+        exchanges.add(exchange);
+        if(cancelled) {
+            exchange.cancel();
+        }
+    }
+    /**
+     * 判断作用域是否已被取消。
+     *
+     * @return 如果已被取消，则返回true
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+    /**
+     * 取消作用域中的所有请求。
+     */
+    void cancel() {
+        cancelled = true;
+        for(Exchange exchange : exchanges) {
+            exchange.cancel();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package me.charghet.tools.requests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下载并缓存js脚本的加载器。
+ * <p> 下载的脚本按url地址缓存在内存中，设置了缓存目录时同时保存在磁盘上，重新创建加载器后仍可使用。
+ * 再次加载时发送带有 If-None-Match 和 If-Modified-Since 请求头的条件请求，服务端返回304时直接使用缓存的脚本。
+ * <p> 通过指定的Session发送请求，因此会携带Session的请求头和cookie信息，可用于需要登录才能访问的脚本。
+ * <p> 配合 JSEngine.setJSURL(String url, ScriptLoader loader) 使用时，脚本内容不变则不会重新解析。
+ * 
+ * @author charghet
+ *
+ */
+public class ScriptLoader {
+    private final Session session;
+    private final File directory;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    /**
+     * 构造一个只在内存中缓存脚本的加载器。
+     * 
+     * @param session 发送请求的Session
+     */
+    public ScriptLoader(Session session) {
+        this(session, null);
+    }
+    /**
+     * 构造一个在内存和指定目录中缓存脚本的加载器。
+     * 
+     * @param session 发送请求的Session
+     * @param directory 缓存目录，为null时只在内存中缓存
+     */
+    public ScriptLoader(Session session, File directory) {
+        if(session == null) {
+            throw new NullPointerException();
+        }
+        this.session = session;
+        this.directory = directory;
+    }
+    /**
+     * 加载url地址对应的js脚本。
+     * <p> 已缓存时向服务端确认脚本是否更新，未更新则返回缓存的脚本。
+     * 确认过程中发生错误或服务端返回200、304以外的状态码时，如果已有缓存的脚本，则返回缓存的脚本。
+     * 
+     * @param url js文件地址，该方法不会自动将url字符串进行urlencode编码
+     * @return js脚本
+     * @throws JSException 如果下载过程中发生错误或服务端返回的状态码不为200，且没有缓存的脚本
+     */
+    public String load(String url) throws JSException {
+        Entry cached = cache.get(url);
+        if(cached == null && directory != null) {
+            cached = readEntry(url);
+            if(cached != null) {
+                cache.put(url, cached);
+            }
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        if(cached != null && cached.etag != null) {
+            headers.put("If-None-Match", cached.etag);
+        }
+        if(cached != null && cached.lastModified != null) {
+            headers.put("If-Modified-Since", cached.lastModified);
+        }
+        try(StreamingResponse response = session.stream(Request.get(url), headers)) {
+            int code = response.getStatusCode();
+            if(code == 304 && cached != null) {
+                notModified.incrementAndGet();
+                FlightRecorderEvents.cache("script", url, "revalidated");
+                return cached.script;
+            }
+            if(code != 200) {
+                if(cached != null) {
+                    FlightRecorderEvents.cache("script", url, "stale");
+                    return cached.script;
+                }
+                throw new JSException("下载js文件失败，状态码：" + code);
+            }
+            String length = response.getHeader("Content-Length");
+            BodyReader reader = BodyReader.read(response.getInputStream(), length != null ? Long.parseLong(length.trim()) : -1);
+            String script = new String(reader.getBytes(), 0, reader.getLength(), StandardCharsets.UTF_8);
+            Entry entry = new Entry(script, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            cache.put(url, entry);
+            downloads.incrementAndGet();
+            FlightRecorderEvents.cache("script", url, "miss");
+            if(directory != null) {
+                writeEntry(url, entry);
+            }
+            return script;
+        }catch(RequestException | IOException | NumberFormatException e) {
+            if(cached != null) {
+                FlightRecorderEvents.cache("script", url, "stale");
+                return cached.script;
+            }
+            throw new JSException(e.getMessage(), e);
+        }
+    }
+    /**
+     * 移除url地址对应的缓存，包括磁盘上的缓存文件。
+     * 
+     * @param url js文件地址
+     */
+    public void invalidate(String url) {
+        cache.remove(url);
+        if(directory != null) {
+            String name = JSEngine.hash(url);
+            directory.toPath().resolve(name + ".js").toFile().delete();
+            directory.toPath().resolve(name + ".properties").toFile().delete();
+        }
+    }
+    /**
+     * 获得下载完整脚本的次数。
+     * 
+     * @return 下载完整脚本的次数
+     */
+    public long getDownloadCount() {
+        return downloads.get();
+    }
+    /**
+     * 获得服务端确认脚本未更新的次数。
+     * 
+     * @return 服务端返回304的次数
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+    /**
+     * 从缓存目录中读取url地址对应的缓存。
+     * 
+     * @param url js文件地址
+     * @return 缓存，如果不存在或无法读取，则返回null
+     */
+    private Entry readEntry(String url) {
+        String name = JSEngine.hash(url);
+        Path script = directory.toPath().resolve(name + ".js");
+        Path meta = directory.toPath().resolve(name + ".properties");
+        if(!Files.isRegularFile(script) || !Files.isRegularFile(meta)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(meta)) {
+            properties.load(in);
+            if(!url.equals(properties.getProperty("url"))) {
+                return null;
+            }
+            return new Entry(new String(Files.readAllBytes(script), StandardCharsets.UTF_8), properties.getProperty("etag"), properties.getProperty("lastModified"));
+        }catch(IOException e) {
+            return null;
+        }
+    }
+    /**
+     * 将缓存写入缓存目录，先写入临时文件再替换，写入失败时删除临时文件，只保留内存中的缓存。
+     * 
+     * @param url js文件地址
+     * @param entry 缓存
+     */
+    private void writeEntry(String url, Entry entry) {
+        String name = JSEngine.hash(url);
+        Path dir = directory.toPath();
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if(entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        if(entry.lastModified != null) {
+            properties.setProperty("lastModified", entry.lastModified);
+        }
+        Path script = null;
+        Path meta = null;
+        try {
+            Files.createDirectories(dir);
+            script = Files.createTempFile(dir, name, ".tmp");
+            Files.write(script, entry.script.getBytes(StandardCharsets.UTF_8));
+            Files.move(script, dir.resolve(name + ".js"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            script = null;
+            meta = Files.createTempFile(dir, name, ".tmp");
+            try(OutputStream out = Files.newOutputStream(meta)) {
+                properties.store(out, null);
+            }
+            Files.move(meta, dir.resolve(name + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            meta = null;
+        }catch(IOException e) {
+            // 磁盘缓存不可用时只使用内存中的缓存
+            delete(script);
+            delete(meta);
+        }
+    }
+    /**
+     * 删除写入失败后留下的临时文件。
+     * 
+     * @param file 临时文件，为null时不做任何操作
+     */
+    private static void delete(Path file) {
+        if(file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        }catch(IOException e) {
+            // 无法删除时保留临时文件
+        }
+    }
+    /**
+     * 一个已缓存的脚本及其校验信息。
+     */
+    private static class Entry {
+        private final String script;
+        private final String etag;
+        private final String lastModified;
+        Entry(String script, String etag, String lastModified) {
+            this.script = script;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
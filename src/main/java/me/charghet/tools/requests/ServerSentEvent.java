@@ -0,0 +1,53 @@
+package me.charghet.tools.requests;
+
+/**
+ * 服务端推送的一个事件（Server-Sent Event）。
+ *
+ * @author charghet
+ *
+ */
+public class ServerSentEvent {
+    private final String id;
+    private final String event;
+    private final String data;
+    /**
+     * 构造一个事件。
+     *
+     * @param id 事件的id，即最近一次收到的 id 字段
+     * @param event 事件的类型，默认为"message"
+     * @param data 事件的数据，多个 data 字段以换行符连接
+     */
+    ServerSentEvent(String id, String event, String data) {
+        this.id = id;
+        this.event = event;
+        this.data = data;
+    }
+    /**
+     * 获得事件的id，即最近一次收到的 id 字段，重新连接时通过 Last-Event-ID 请求头发送。
+     *
+     * @return 事件的id，如果服务端未发送过 id 字段，则返回空字符串
+     */
+    public String getId() {
+        return id;
+    }
+    /**
+     * 获得事件的类型。
+     *
+     * @return 事件的类型，如果服务端未发送 event 字段，则返回"message"
+     */
+    public String getEvent() {
+        return event;
+    }
+    /**
+     * 获得事件的数据。
+     *
+     * @return 事件的数据，多个 data 字段以换行符连接
+     */
+    public String getData() {
+        return data;
+    }
+    @Override
+    public String toString() {
+        return "id: " + id + ", event: " + event + ", data: " + data;
+    }
+}
@@ -1,20 +1,63 @@
 package me.charghet.tools.requests;
 
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.net.*;
 import java.io.*;
 
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
 /**
  * 发送url请求，能够自动保存请求过程中的cookie信息。
  * @author charghet
  *
  */
 public class Session {
+    private static final ExecutorService DEFAULT_EXECUTOR = VirtualThreads.newExecutor("requests-fanout");
     private CookieManager cookieManager = new CookieManager();
     private Properties headers;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private RetryPolicy retryPolicy;
+    private HedgePolicy hedgePolicy;
+    private CircuitBreaker circuitBreaker;
+    private volatile RequestCoalescer requestCoalescer;
+    private volatile BodyStorage bodyStorage;
+    private volatile RequestListener requestListener;
+    private volatile TrafficRecorder trafficRecorder;
+    private volatile Timeout timeout = Timeout.NONE;
+    private volatile RedirectPolicy redirectPolicy;
+    private volatile int maxRedirects = 20;
+    private final RedirectCache redirectCache = new RedirectCache(256);
+    private volatile Resolver resolver;
+    private final Map<String, SSLSocketFactory> hostSocketFactories = new ConcurrentHashMap<>();
+    private volatile SSLSocketFactory sslSocketFactory;
+    private volatile NioEngine nioEngine;
+    private volatile int pipelineDepth = 0;
+    private volatile ExecutorService executor;
     /**
      * 构造一个请求头为空的Session实例。
      */
@@ -54,6 +97,9 @@ public class Session {
     }
     /**
      * 设置此类是否应该自动执行 HTTP 重定向（响应代码为 3xx 的请求）。默认情况下为 true。
+     * <p> 此设置通过 HttpURLConnection.setFollowRedirects(boolean set) 实现，对整个JVM生效，
+     * 只影响未调用 setRedirectPolicy(RedirectPolicy policy) 的Session实例。
+     * <p> 推荐使用 setRedirectPolicy(RedirectPolicy policy) 单独设置每个Session的重定向策略。
      * 
      * @param set 指示是否进行 HTTP 重定向的 boolean 值
      */
@@ -68,6 +114,59 @@ public class Session {
     public static boolean getFollowRedirects() {
         return HttpURLConnection.getFollowRedirects();
     }
+    /**
+     * 设置Session的重定向策略。
+     * <p> 重定向由Session执行，每次重定向的响应中的Cookie都会被保存。
+     * <p> 默认为null，即由 getFollowRedirects() 决定：为true时使用RedirectPolicy.NORMAL，否则使用RedirectPolicy.NEVER。
+     * 
+     * @param redirectPolicy 重定向策略
+     */
+    public void setRedirectPolicy(RedirectPolicy redirectPolicy) {
+        this.redirectPolicy = redirectPolicy;
+    }
+    /**
+     * 获得Session当前生效的重定向策略。
+     * 
+     * @return 重定向策略
+     */
+    public RedirectPolicy getRedirectPolicy() {
+        RedirectPolicy policy = redirectPolicy;
+        if(policy != null) {
+            return policy;
+        }
+        return getFollowRedirects() ? RedirectPolicy.NORMAL : RedirectPolicy.NEVER;
+    }
+    /**
+     * 设置一个请求最多执行的重定向次数，默认为20。
+     * 
+     * @param maxRedirects 最多执行的重定向次数
+     */
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+    /**
+     * 获得一个请求最多执行的重定向次数。
+     * 
+     * @return 最多执行的重定向次数
+     */
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+    /**
+     * 设置永久重定向缓存的容量，默认为256。
+     * <p> Session会缓存301、308重定向的目标地址，之后对原地址的请求直接发送到目标地址。
+     * 
+     * @param capacity 最多缓存的重定向数，为0时不缓存
+     */
+    public void setRedirectCacheSize(int capacity) {
+        redirectCache.setCapacity(capacity);
+    }
+    /**
+     * 清空永久重定向缓存。
+     */
+    public void clearRedirectCache() {
+        redirectCache.clear();
+    }
     /**
      * 设置请求头。
      * <p> 此操作将替换Session中的请求头为指定的请求头。
@@ -191,6 +290,284 @@ public class Session {
     public void setCookieManager(CookieManager cookieManager) {
         this.cookieManager = cookieManager;
     }
+    /**
+     * 设置按主机自适应调整并发请求数的限流器。
+     * <p> 默认为null，即不限制并发请求数。多个Session可以共享同一个限流器。
+     * 
+     * @param concurrencyLimiter 限流器，为null时不限制并发请求数
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+    /**
+     * 获得Session使用的限流器。
+     * 
+     * @return 限流器，如果未设置，则返回null
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+    /**
+     * 设置请求失败时的重试策略。
+     * <p> 默认为null，即不重试。
+     * 
+     * @param retryPolicy 重试策略，为null时不重试
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+    /**
+     * 获得Session使用的重试策略。
+     * 
+     * @return 重试策略，如果未设置，则返回null
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+    /**
+     * 设置GET请求的对冲请求策略。
+     * <p> 默认为null，即不发送对冲请求。
+     * 
+     * @param hedgePolicy 对冲请求策略，为null时不发送对冲请求
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+    /**
+     * 获得Session使用的对冲请求策略。
+     * 
+     * @return 对冲请求策略，如果未设置，则返回null
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+    /**
+     * 设置按主机熔断请求的熔断器。
+     * <p> 默认为null，即不熔断。熔断器打开时，请求会立即以CircuitOpenException失败。多个Session可以共享同一个熔断器。
+     * 
+     * @param circuitBreaker 熔断器，为null时不熔断
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    /**
+     * 获得Session使用的熔断器。
+     * 
+     * @return 熔断器，如果未设置，则返回null
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    /**
+     * 设置合并相同的并发GET请求的RequestCoalescer。
+     * <p> 默认为null，即不合并请求。设置后，url地址、请求头和cookie信息都相同的并发GET请求只发送一次，
+     * 所有调用者得到同一个Response。多个Session可以共享同一个RequestCoalescer。
+     * 
+     * @param requestCoalescer RequestCoalescer，为null时不合并请求
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+    /**
+     * 获得Session使用的RequestCoalescer。
+     * 
+     * @return RequestCoalescer，如果未设置，则返回null
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+    /**
+     * 设置保存响应体的BodyStorage。
+     * <p> 默认为null，即响应体保存在堆中的字节数组里。设置后，通过HttpURLConnection发送的请求的响应体
+     * 保存在堆外内存或临时文件中，使用完毕后应调用 Response.close() 释放；重定向和重试丢弃的响应会自动释放。
+     * <p> 同时设置了RequestCoalescer时，被合并的请求共享同一个Response，应在所有调用者使用完毕后再关闭。
+     * 
+     * @param bodyStorage BodyStorage，为null时响应体保存在堆中
+     */
+    public void setBodyStorage(BodyStorage bodyStorage) {
+        this.bodyStorage = bodyStorage;
+    }
+    /**
+     * 获得保存响应体的BodyStorage。
+     * 
+     * @return BodyStorage，如果未设置，则返回null
+     */
+    public BodyStorage getBodyStorage() {
+        return bodyStorage;
+    }
+    /**
+     * 设置监听每次请求交换各个阶段的RequestListener。
+     * <p> 默认为null，即不记录各个阶段的时刻。可使用RequestMetrics按主机汇总各阶段的延迟。
+     * 
+     * @param requestListener RequestListener，为null时不监听
+     */
+    public void setRequestListener(RequestListener requestListener) {
+        this.requestListener = requestListener;
+    }
+    /**
+     * 获得Session使用的RequestListener。
+     * 
+     * @return RequestListener，如果未设置，则返回null
+     */
+    public RequestListener getRequestListener() {
+        return requestListener;
+    }
+    /**
+     * 设置录制每次请求交换的TrafficRecorder。
+     * <p> 默认为null，即不录制。录制时每个请求体会额外写出一次，响应体会额外复制一次。TrafficRecorder需要由调用者关闭。
+     * 
+     * @param trafficRecorder TrafficRecorder，为null时不录制
+     */
+    public void setTrafficRecorder(TrafficRecorder trafficRecorder) {
+        this.trafficRecorder = trafficRecorder;
+    }
+    /**
+     * 获得Session使用的TrafficRecorder。
+     * 
+     * @return TrafficRecorder，如果未设置，则返回null
+     */
+    public TrafficRecorder getTrafficRecorder() {
+        return trafficRecorder;
+    }
+    /**
+     * 设置Session的超时设置，此设置应用于未指定超时设置的所有请求。
+     * <p> 默认为Timeout.NONE，即不限制任何时间。
+     * 
+     * @param timeout 超时设置
+     */
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout == null ? Timeout.NONE : timeout;
+    }
+    /**
+     * 获得Session的超时设置。
+     * 
+     * @return 超时设置
+     */
+    public Timeout getTimeout() {
+        return timeout;
+    }
+    /**
+     * 设置建立连接的超时时间，保留Session超时设置中的其他时限。
+     * 
+     * @param millis 连接超时时间（毫秒），为0时不限制
+     */
+    public void setConnectTimeout(int millis) {
+        Timeout t = timeout;
+        timeout = new Timeout(millis, t.getReadTimeout(), t.getDeadline());
+    }
+    /**
+     * 设置两次读取之间的超时时间，保留Session超时设置中的其他时限。
+     * 
+     * @param millis 读取超时时间（毫秒），为0时不限制
+     */
+    public void setReadTimeout(int millis) {
+        Timeout t = timeout;
+        timeout = new Timeout(t.getConnectTimeout(), millis, t.getDeadline());
+    }
+    /**
+     * 设置每个请求的总时限，保留Session超时设置中的其他时限。
+     * <p> 总时限涵盖建立连接、发送请求体、读取完整响应体，以及所有重试。
+     * 
+     * @param millis 总时限（毫秒），为0时不限制
+     */
+    public void setDeadline(long millis) {
+        Timeout t = timeout;
+        timeout = new Timeout(t.getConnectTimeout(), t.getReadTimeout(), millis);
+    }
+    /**
+     * 设置解析主机名的解析器。
+     * <p> 默认为null，即使用JVM的默认解析方式。设置后，Session直接连接解析器返回的第一个地址，
+     * 并通过 Host 请求头和TLS的SNI保留原主机名。
+     * <p> 可使用CachingResolver在进程内缓存解析结果，或使用StaticResolver将主机名固定到指定的地址。
+     * 
+     * @param resolver 解析器，为null时使用JVM的默认解析方式
+     */
+    public void setResolver(Resolver resolver) {
+        this.resolver = resolver;
+    }
+    /**
+     * 获得Session使用的解析器。
+     * 
+     * @return 解析器，如果未设置，则返回null
+     */
+    public Resolver getResolver() {
+        return resolver;
+    }
+    /**
+     * 设置https连接使用的SSLSocketFactory。
+     * <p> 默认为null，即使用 HttpsURLConnection.getDefaultSSLSocketFactory()。
+     * <p> 多个Session共享同一个SSLSocketFactory时，也共享其TLS会话缓存和keep-alive连接。
+     * 可使用TLSSocketFactory设置会话缓存、信任的证书、协议和加密套件，并统计会话恢复的比例。
+     * 
+     * @param sslSocketFactory SSLSocketFactory，为null时使用默认的SSLSocketFactory
+     */
+    public void setSSLSocketFactory(SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+        hostSocketFactories.clear();
+    }
+    /**
+     * 获得https连接使用的SSLSocketFactory。
+     * 
+     * @return SSLSocketFactory，如果未设置，则返回 HttpsURLConnection.getDefaultSSLSocketFactory()
+     */
+    public SSLSocketFactory getSSLSocketFactory() {
+        SSLSocketFactory factory = sslSocketFactory;
+        return factory != null ? factory : HttpsURLConnection.getDefaultSSLSocketFactory();
+    }
+    /**
+     * 设置发送http请求使用的NioEngine。
+     * <p> 默认为null，即使用HttpURLConnection。设置后，http请求通过NioEngine的事件循环发送，
+     * 多个Session可以共享同一个NioEngine及其连接池；https请求仍通过HttpURLConnection发送。
+     * <p> 设置NioEngine后才能使用 getAsync 和 postAsync 发送异步请求。NioEngine需要由调用者关闭。
+     * 
+     * @param nioEngine NioEngine，为null时使用HttpURLConnection
+     */
+    public void setNioEngine(NioEngine nioEngine) {
+        this.nioEngine = nioEngine;
+    }
+    /**
+     * 获得发送http请求使用的NioEngine。
+     * 
+     * @return NioEngine，如果未设置，则返回null
+     */
+    public NioEngine getNioEngine() {
+        return nioEngine;
+    }
+    /**
+     * 设置 pipeline(List&lt;Request&gt; requests) 在一个连接上最多同时等待响应的请求数。
+     * <p> 默认为0，即不使用管线化，逐个发送请求。设置为2或以上时启用HTTP/1.1管线化。
+     * 
+     * @param depth 最多同时等待响应的请求数
+     */
+    public void setPipelineDepth(int depth) {
+        this.pipelineDepth = depth;
+    }
+    /**
+     * 获得管线化时在一个连接上最多同时等待响应的请求数。
+     * 
+     * @return 最多同时等待响应的请求数，为0或1时不使用管线化
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+    /**
+     * 设置 fanOut(List&lt;Request&gt; requests) 执行请求使用的线程池。
+     * <p> 默认为null，即使用共享的线程池：在支持虚拟线程的JDK上每个请求使用一个虚拟线程，否则使用守护线程组成的缓存线程池。
+     * 
+     * @param executor 线程池，为null时使用共享的线程池
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+    /**
+     * 获得 fanOut(List&lt;Request&gt; requests) 执行请求使用的线程池。
+     * 
+     * @return 线程池
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService e = executor;
+        return e != null ? e : DEFAULT_EXECUTOR;
+    }
     /**
      * 添加一条Cookie信息。
      * <p> 通过调用CookieManager.add(String name, String value)实现。
@@ -225,120 +602,1527 @@ public class Session {
     /**
      * 获取多个"Set-Cookie"字段值。
      * 
-     * @param connection HttpURLConnection实例
+     * @param headerFields 响应头字段的Map集合
      */
-    private void setCookies(HttpURLConnection connection) {
-        List<String> cookies = connection.getHeaderFields().get("Set-Cookie");
-        if(cookies != null) {
-            for(String cookie : cookies) {
-                cookieManager.add(cookie);
+    void setCookies(Map<String, List<String>> headerFields) {
+        boolean found = false;
+        for(Map.Entry<String, List<String>> field : headerFields.entrySet()) {
+            if("Set-Cookie".equalsIgnoreCase(field.getKey())) {
+                for(String cookie : field.getValue()) {
+                    cookieManager.add(cookie);
+                }
+                found = true;
             }
+        }
+        if(found) {
             headers.setProperty("Cookie", cookieManager.getString());
         }
     }
     /**
-     * 发送get请求。
-     * <p> 注意：
-     * <p> 该方法不会自动将url字符串进行urlencode编码，如果url字符串包含中文字符等，请先将url字符串进行urlencode编码。
-     * <p> 推荐使用 get(String url, URLParam param)，该方法能够自动将url字符串和url参数进行urlencode编码。
+     * 发送请求并读取响应。
+     * <p> get和post请求最终都通过此方法发送。
      * 
+     * @param method 请求方法
      * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param timeout 超时设置，为null时使用Session的超时设置
      * @return Response 响应url请求的类
      * @throws RequestException 如果在请求过程中发生错误
      */
-    public Response get(String url) throws RequestException{
-        URL myurl;
-        HttpURLConnection connection;
-        Response response;
-            try {
-                myurl = new URL(url);
-                connection = (HttpURLConnection)myurl.openConnection();
-                connection.setRequestMethod("GET");
-                setConnectionHeaders(connection);
-                connection.setRequestProperty("Cookie", cookieManager.getString());
-                connection.connect();
-                response = new Response(connection);
-                setCookies(connection);
-            }catch(Exception e) {
-                throw new RequestException(e.toString(),e.getCause());
-            }
-        return response;
-        
+    private Response send(String method, String url, String body, Timeout timeout) throws RequestException {
+        URL myurl = resolveURL(method, url);
+        RequestCoalescer coalescer = requestCoalescer;
+        if(coalescer != null && "GET".equals(method) && body == null) {
+            return coalescer.execute(coalescingKey(myurl), timeout != null ? timeout : getTimeout(), () -> send(method, myurl, null, timeout));
+        }
+        return send(method, myurl, body == null ? null : RequestBody.of(body), timeout);
     }
     /**
-     * 发送get请求。
-     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
-     * <p> url地址和url参数应该分开，请勿将url参数附加到url字符串中。
+     * 获得合并请求时区分请求的键，由url地址、请求头和cookie信息组成。
      * 
      * @param url 目标url地址
-     * @param param 封装了需要传递的参数的URLParam类
+     * @return 区分请求的键
+     */
+    private String coalescingKey(URL url) {
+        Map<String, String> fields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        fields.putAll(getRequestFields());
+        StringBuilder key = new StringBuilder(url.toString());
+        for(Map.Entry<String, String> field : fields.entrySet()) {
+            key.append('\n').append(field.getKey()).append(": ").append(field.getValue());
+        }
+        return key.toString();
+    }
+    /**
+     * 按重试策略、熔断器和并发限制发送请求并读取响应。
+     * 
+     * @param method 请求方法
+     * @param myurl 已解析的目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param timeout 超时设置，为null时使用Session的超时设置
      * @return Response 响应url请求的类
      * @throws RequestException 如果在请求过程中发生错误
-     * @throws FormatException 如果对url字符串或url参数进行urlencode编码过程中发生错误
      */
-    public Response get(String url, URLParam param) throws RequestException, FormatException{
-        url = URLUtil.encodeURL(url) + "?" + param.getEncodeString();
-        return get(url);
+    private Response send(String method, URL myurl, RequestBody body, Timeout timeout) throws RequestException {
+        if(timeout == null) {
+            timeout = getTimeout();
+        }
+        long deadline = Exchange.deadlineOf(timeout);
+        RetryPolicy policy = retryPolicy;
+        if(policy != null) {
+            policy.deposit();
+        }
+        for(int retries = 0;;retries++) {
+            Response response = null;
+            RequestException error = null;
+            CircuitBreaker breaker = circuitBreaker;
+            CircuitBreaker.Call call = breaker == null ? null : breaker.acquire(myurl.getHost());
+            ConcurrencyLimiter limiter = concurrencyLimiter;
+            ConcurrencyLimiter.Permit permit;
+            try {
+                permit = limiter == null ? null : limiter.acquire(myurl.getHost());
+            }catch(RequestException e) {
+                if(call != null) {
+                    call.cancel();
+                }
+                throw e;
+            }
+            try {
+                response = attempt(method, myurl, body, timeout, deadline);
+            }catch(RequestException e) {
+                if(isLocalError(e)) {
+                    // 请求头中的非法字符是本地的错误，不计入熔断器和限流器，也不重试
+                    if(permit != null) {
+                        permit.cancel();
+                    }
+                    if(call != null) {
+                        call.cancel();
+                    }
+                    throw e;
+                }
+                error = e;
+            }finally {
+                boolean success = response != null && isSuccess(response);
+                if(permit != null) {
+                    permit.release(success);
+                }
+                if(call != null) {
+                    call.record(success);
+                }
+            }
+            long delay = policy == null ? -1 : policy.retryDelay(method, retries, response, error);
+            if(delay < 0 || delay >= Exchange.remaining(deadline)) {
+                if(error != null) {
+                    throw error;
+                }
+                return response;
+            }
+            if(response != null) {
+                response.close();
+            }
+            sleep(delay);
+        }
     }
     /**
-     * 发送post请求。
-     * <p> 注意：
-     * <p> 该方法能够自动将url字符串进行urlencode编码，但不会对url参数进行urlencode编码。
-     * <p> 推荐使用post(String url, URLParam param)，该方法能够该方法能够自动将url字符串和url参数进行urlencode编码。
+     * 判断错误是否在请求发出之前由本地的参数引起，如请求头中包含回车或换行符。
+     * 
+     * @param e 请求过程中发生的错误
+     * @return 如果是本地的错误，返回true，否则返回false
+     */
+    private static boolean isLocalError(RequestException e) {
+        return e.getCause() instanceof IllegalArgumentException;
+    }
+    /**
+     * 判断响应是否表示服务端工作正常，429和5xx状态码视为失败。
+     * 
+     * @param response 请求的响应
+     * @return 如果服务端工作正常，返回true，否则返回false
+     */
+    private static boolean isSuccess(Response response) {
+        int code = response.getStatusCode();
+        return code != -1 && code != 429 && code < 500;
+    }
+    /**
+     * 使当前线程休眠指定的时间。
+     * 
+     * @param millis 休眠时间（毫秒）
+     * @throws RequestException 如果休眠过程中被中断
+     */
+    private static void sleep(long millis) throws RequestException {
+        try {
+            Thread.sleep(millis);
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e.toString(), e);
+        }
+    }
+    /**
+     * 发送一次请求，如果设置了对冲请求策略且请求方法为GET，则按策略发送对冲请求。
      * 
+     * @param method 请求方法
      * @param url 目标url地址
-     * @param param 需要传递的参数，如："name1=vdalue1&amp;name2=value2" 如果包含中文字符等，请先进行urlencode编码
+     * @param body 请求体，为null时不发送请求体
+     * @param timeout 超时设置
+     * @param deadline 截止时刻（System.nanoTime()），为0时不限制
      * @return Response 响应url请求的类
-     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
      * @throws RequestException 如果在请求过程中发生错误
      */
-    public Response post(String url, String param) throws FormatException, RequestException{
-        URL myurl;
-        HttpURLConnection connection;
-        Response response;
-        url = URLUtil.encodeURL(url);
-        try {
-            myurl = new URL(url);
-            connection = (HttpURLConnection)myurl.openConnection();
-            connection.setDoOutput(true);
-            connection.setRequestMethod("POST");
-            setConnectionHeaders(connection);
-            connection.setRequestProperty("Cookie", cookieManager.getString());
-            connection.connect();
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
-            bw.write(param);
-            bw.flush();
-            bw.close();
-            response = new Response(connection);
-            setCookies(connection);
-        }catch(Exception e) {
-            throw new RequestException(e.toString(),e.getCause());
+    private Response attempt(String method, URL url, RequestBody body, Timeout timeout, long deadline) throws RequestException {
+        HedgePolicy hedge = hedgePolicy;
+        if(hedge == null || !"GET".equals(method)) {
+            return execute(method, url, body, new Exchange(timeout, deadline));
         }
+        long start = System.nanoTime();
+        long delay = hedge.getHedgeDelay();
+        Response response = delay < 0 ? execute(method, url, body, new Exchange(timeout, deadline)) : race(hedge, delay, method, url, body, timeout, deadline);
+        hedge.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         return response;
     }
     /**
-     * 发送post请求。
-     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
+     * 发送请求，如果在指定时间内未响应，则再发送一个相同的请求，返回先成功的响应并取消另一个请求。
      * 
+     * @param hedge 对冲请求策略
+     * @param delay 发送对冲请求前的等待时间（毫秒）
+     * @param method 请求方法
      * @param url 目标url地址
-     * @param param 封装了url参数的URLParm类
+     * @param body 请求体，为null时不发送请求体
+     * @param timeout 超时设置
+     * @param deadline 截止时刻（System.nanoTime()），为0时不限制
      * @return Response 响应url请求的类
-     * @throws FormatException 如果对url字符串和url参数进行urlencode编码过程中发生错误
-     * @throws RequestException 如果在请求过程中发生错误
+     * @throws RequestException 如果两个请求都发生错误
      */
-    public Response post(String url, URLParam param) throws FormatException, RequestException{
-        return post(url, param.getEncodeString());
+    private Response race(HedgePolicy hedge, long delay, String method, URL url, RequestBody body, Timeout timeout, long deadline) throws RequestException {
+        CompletionService<Response> service = new ExecutorCompletionService<>(hedge.getExecutor());
+        Map<Future<Response>, Hedge> hedges = new HashMap<>();
+        Hedge primary = new Hedge(method, url, body, new Exchange(timeout, deadline));
+        hedges.put(service.submit(primary), primary);
+        Future<Response> done = null;
+        try {
+            done = service.poll(delay, TimeUnit.MILLISECONDS);
+            if(done == null) {
+                Hedge backup = new Hedge(method, url, body, new Exchange(timeout, deadline));
+                hedges.put(service.submit(backup), backup);
+                done = service.take();
+            }
+            try {
+                return done.get();
+            }catch(ExecutionException e) {
+                if(hedges.size() == 1) {
+                    throw unwrap(e);
+                }
+                done = service.take();
+                try {
+                    return done.get();
+                }catch(ExecutionException ex) {
+                    throw unwrap(ex);
+                }
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e.toString(), e);
+        }finally {
+            for(Map.Entry<Future<Response>, Hedge> entry : hedges.entrySet()) {
+                if(entry.getKey() != done) {
+                    entry.getValue().lose();
+                }
+            }
+        }
     }
     /**
-     * 发送post请求。
-     * <p> 该方法能够自动将url字符串进行urlencode编码，请勿将urlencode编码后的字符串传入。
+     * 对冲请求中的一个请求。
+     * <p> 未被采用的请求会被取消，如果它仍然得到了响应，则在响应到达时将其关闭。
+     */
+    private final class Hedge implements Callable<Response> {
+        private final String method;
+        private final URL url;
+        private final RequestBody body;
+        private final Exchange exchange;
+        private final AtomicBoolean lost = new AtomicBoolean(false);
+        private volatile Response response;
+
+        Hedge(String method, URL url, RequestBody body, Exchange exchange) {
+            this.method = method;
+            this.url = url;
+            this.body = body;
+            this.exchange = exchange;
+        }
+        @Override
+        public Response call() throws RequestException {
+            Response response = execute(method, url, body, exchange);
+            this.response = response;
+            if(lost.get()) {
+                response.close();
+            }
+            return response;
+        }
+        /**
+         * 放弃此请求：取消请求，并关闭已经得到的响应。
+         */
+        void lose() {
+            lost.set(true);
+            exchange.cancel();
+            Response response = this.response;
+            if(response != null) {
+                response.close();
+            }
+        }
+    }
+    /**
+     * 获得异步请求中发生的RequestException。
+     * 
+     * @param e 异步请求抛出的ExecutionException
+     * @return RequestException
+     */
+    private static RequestException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if(cause instanceof RequestException) {
+            return (RequestException)cause;
+        }
+        return new RequestException(cause.toString(), cause);
+    }
+    /**
+     * 发送请求并按Session的重定向策略执行重定向，返回最终的响应。
+     * <p> 每次重定向的响应中的Cookie都会被保存。
+     * <p> 301、302重定向会将POST请求改为GET请求，303重定向会将请求改为GET请求；307、308重定向保留请求方法和请求体。
      * 
+     * @param method 请求方法
      * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
      * @return Response 响应url请求的类
-     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
-     * @throws RequestException 如果在请求过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误，或重定向次数超过上限
      */
-    public Response post(String url) throws FormatException, RequestException {
-        return post(url, "");
+    private Response execute(String method, URL url, RequestBody body, Exchange exchange) throws RequestException {
+        RedirectPolicy policy = getRedirectPolicy();
+        try {
+            for(int hops = 0;;hops++) {
+                Response response = executeOnce(method, url, body, exchange);
+                int code = response.getStatusCode();
+                URL target;
+                try {
+                    target = redirectTarget(url, code, response.getHeader("Location"), policy, hops);
+                }catch(RequestException e) {
+                    response.close();
+                    throw e;
+                }
+                if(target == null) {
+                    return response;
+                }
+                response.close();
+                String redirected = redirectMethod(method, code);
+                if(!redirected.equals(method) || code == 303) {
+                    method = redirected;
+                    body = null;
+                }
+                url = target;
+            }
+        }finally {
+            exchange.finish();
+        }
+    }
+    /**
+     * 打开到url地址的连接。
+     * <p> 如果设置了解析器，则由解析器解析主机名并直接连接解析得到的地址，
+     * 同时设置 Host 请求头；对于https连接，以原主机名发送SNI并校验服务器证书。
+     * 
+     * @param url 目标url地址
+     * @return HttpURLConnection
+     * @throws IOException 如果无法解析主机名或打开连接
+     */
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        Resolver r = resolver;
+        String host = url.getHost();
+        if(r == null || StaticResolver.isLiteral(host)) {
+            HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+            SSLSocketFactory factory = sslSocketFactory;
+            if(factory != null && connection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection)connection).setSSLSocketFactory(factory);
+            }
+            return connection;
+        }
+        InetAddress address = r.resolve(host)[0];
+        String literal = address instanceof Inet6Address ? "[" + address.getHostAddress() + "]" : address.getHostAddress();
+        URL target = new URL(url.getProtocol(), literal, url.getPort(), url.getFile());
+        HttpURLConnection connection = (HttpURLConnection)target.openConnection();
+        connection.setRequestProperty("Host", url.getPort() == -1 ? host : host + ":" + url.getPort());
+        if(connection instanceof HttpsURLConnection) {
+            SSLSocketFactory factory = hostSocketFactories.computeIfAbsent(host.toLowerCase(),
+                    h -> new HostSSLSocketFactory(getSSLSocketFactory(), h));
+            ((HttpsURLConnection)connection).setSSLSocketFactory(factory);
+        }
+        return connection;
+    }
+    /**
+     * 判断响应状态码是否为可执行的重定向。
+     * 
+     * @param code 响应状态码
+     * @return 如果是可执行的重定向，返回true，否则返回false
+     */
+    private static boolean isRedirect(int code) {
+        return code == 301 || code == 302 || code == 303 || code == 307 || code == 308;
+    }
+    /**
+     * 根据重定向策略计算重定向的目标地址，并缓存永久重定向。
+     * 
+     * @param url 请求的url地址
+     * @param code 响应状态码
+     * @param location 响应的 Location 字段
+     * @param policy 重定向策略
+     * @param hops 已执行的重定向次数
+     * @return 重定向的目标地址，如果不执行重定向，则返回null
+     * @throws RequestException 如果 Location 字段格式错误，或重定向次数超过上限
+     */
+    URL redirectTarget(URL url, int code, String location, RedirectPolicy policy, int hops) throws RequestException {
+        if(location == null || !isRedirect(code)) {
+            return null;
+        }
+        URL target;
+        try {
+            target = new URL(url, location);
+        }catch(MalformedURLException e) {
+            throw new RequestException(e.toString(), e);
+        }
+        if(!policy.allows(url, target)) {
+            return null;
+        }
+        if(hops >= maxRedirects) {
+            throw new RequestException("重定向次数超过上限：" + maxRedirects);
+        }
+        if(code == 301 || code == 308) {
+            redirectCache.put(url, target, code);
+        }
+        return target;
+    }
+    /**
+     * 获得重定向后的请求方法：303，以及POST请求的301和302重定向改用GET请求，并且不再发送请求体。
+     * 
+     * @param method 原请求方法
+     * @param code 响应状态码
+     * @return 重定向后的请求方法
+     */
+    private static String redirectMethod(String method, int code) {
+        if(code == 303 || ((code == 301 || code == 302) && "POST".equals(method))) {
+            return "HEAD".equals(method) ? method : "GET";
+        }
+        return method;
+    }
+    /**
+     * 建立连接，设置请求头和cookie信息并发送请求体，不读取响应。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @return 已发送请求的HttpURLConnection
+     * @throws IOException 如果在请求过程中发生I/O错误
+     * @throws RequestException 如果已超过截止时刻
+     */
+    private HttpURLConnection connect(String method, URL url, String body, Exchange exchange) throws IOException, RequestException {
+        return connect(method, url, body, exchange, Collections.emptyMap());
+    }
+    /**
+     * 建立连接，设置请求头、附加的请求头和cookie信息并发送请求体，不读取响应。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @param extraHeaders 仅用于本次请求的请求头，覆盖Session中的同名请求头
+     * @return 已发送请求的HttpURLConnection
+     * @throws IOException 如果在请求过程中发生I/O错误
+     * @throws RequestException 如果已超过截止时刻
+     */
+    private HttpURLConnection connect(String method, URL url, String body, Exchange exchange, Map<String, String> extraHeaders) throws IOException, RequestException {
+        return connect(method, url, body == null ? null : RequestBody.of(body), exchange, extraHeaders);
+    }
+    /**
+     * 建立连接，设置请求头、附加的请求头和cookie信息并以流的方式写出请求体，不读取响应。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @param extraHeaders 仅用于本次请求的请求头，覆盖Session中的同名请求头
+     * @return 已发送请求的HttpURLConnection
+     * @throws IOException 如果在请求过程中发生I/O错误
+     * @throws RequestException 如果已超过截止时刻
+     */
+    private HttpURLConnection connect(String method, URL url, RequestBody body, Exchange exchange, Map<String, String> extraHeaders) throws IOException, RequestException {
+        HttpURLConnection connection = openConnection(url);
+        exchange.attach(connection);
+        connection.setInstanceFollowRedirects(false);
+        if(body != null) {
+            connection.setDoOutput(true);
+            if(body.length() >= 0) {
+                connection.setFixedLengthStreamingMode(body.length());
+            }
+        }
+        connection.setRequestMethod(method);
+        setConnectionHeaders(connection);
+        if(body != null && body.contentType() != null) {
+            connection.setRequestProperty("Content-Type", body.contentType());
+        }
+        for(Map.Entry<String, String> header : extraHeaders.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setRequestProperty("Cookie", cookieManager.getString());
+        connection.connect();
+        RequestListener listener = exchange.getListener();
+        RequestEvent event = exchange.getEvent();
+        if(listener != null) {
+            event.connected();
+            listener.connectionAcquired(event);
+        }
+        long sent = 0;
+        if(body != null) {
+            try(OutputStream out = connection.getOutputStream()) {
+                if(listener == null) {
+                    body.writeTo(out);
+                }else {
+                    CountingOutputStream counter = new CountingOutputStream(out);
+                    body.writeTo(counter);
+                    sent = counter.getCount();
+                }
+            }
+        }
+        if(listener != null) {
+            // 没有请求体时HttpURLConnection在getResponseCode()中才写出请求头，此处的时刻只对带请求体的请求是准确的
+            event.sent(sent);
+            listener.headersSent(event);
+        }
+        return connection;
+    }
+    /**
+     * 建立连接，发送一次请求并读取完整的响应，不执行重定向。
+     * <p> 如果设置了RequestListener，则报告各个阶段。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @param extraHeaders 仅用于本次请求的请求头，覆盖Session中的同名请求头
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    private Response exchange(String method, URL url, RequestBody body, Exchange exchange, Map<String, String> extraHeaders) throws RequestException {
+        RequestListener listener = FlightRecorderEvents.with(requestListener);
+        RequestEvent event = null;
+        if(listener != null) {
+            event = new RequestEvent(method, url);
+            exchange.observe(listener, event);
+            listener.requestStart(event);
+        }
+        TrafficRecorder recorder = trafficRecorder;
+        long startMillis = 0;
+        long start = 0;
+        Map<String, String> requestFields = null;
+        if(recorder != null) {
+            startMillis = System.currentTimeMillis();
+            start = System.nanoTime();
+            requestFields = getRequestFields();
+            if(body != null && body.contentType() != null) {
+                requestFields.put("Content-Type", body.contentType());
+            }
+            requestFields.putAll(extraHeaders);
+        }
+        try {
+            HttpURLConnection connection = connect(method, url, body, exchange, extraHeaders);
+            if(listener != null) {
+                event.firstByte(connection.getResponseCode());
+                listener.firstByte(event);
+            }
+            long firstByte = 0;
+            if(recorder != null) {
+                connection.getResponseCode();
+                firstByte = System.nanoTime() - start;
+            }
+            Response response = new Response(connection, bodyStorage);
+            setCookies(connection.getHeaderFields());
+            if(listener != null) {
+                event.end(response.getLength());
+                listener.bodyComplete(event);
+            }
+            if(recorder != null) {
+                recorder.record(startMillis, method, url, requestFields, body, response, firstByte, System.nanoTime() - start, exchange.nextHop() > 0);
+            }
+            return response;
+        }catch(RequestException e) {
+            throw failed(listener, event, e);
+        }catch(Exception e) {
+            if(exchange.isExpired()) {
+                throw failed(listener, event, exchange.expiredException());
+            }
+            throw failed(listener, event, new RequestException(e.toString(), e));
+        }finally {
+            exchange.observe(null, null);
+        }
+    }
+    /**
+     * 向RequestListener报告请求失败。
+     * 
+     * @param listener 监听器，为null时不报告
+     * @param event 请求事件
+     * @param e 发生的错误
+     * @return 发生的错误
+     */
+    private static RequestException failed(RequestListener listener, RequestEvent event, RequestException e) {
+        if(listener != null) {
+            event.end(0);
+            listener.failed(event, e);
+        }
+        return e;
+    }
+    /**
+     * 以流的方式发送请求体，发送post请求并读取响应。
+     * <p> 与其他post方法相同，经过限流器、重试策略、熔断器并执行重定向；重试时重新写出请求体，请求体需要能够多次写出。
+     * 
+     * @param url 目标url地址，需要已进行urlencode编码
+     * @param body 请求体，其 Content-Type 由 RequestBody.contentType() 给出
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    Response post(String url, RequestBody body) throws RequestException {
+        return send("POST", resolveURL("POST", url), body, null);
+    }
+    /**
+     * 建立连接，发送一次请求并读取响应，不执行重定向。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    private Response executeOnce(String method, URL url, RequestBody body, Exchange exchange) throws RequestException {
+        NioEngine engine = nioEngine;
+        if(engine != null && "http".equals(url.getProtocol())) {
+            return executeNio(engine, method, url, body, exchange);
+        }
+        return exchange(method, url, body, exchange, Collections.emptyMap());
+    }
+    /**
+     * 通过NioEngine发送一次请求，并等待响应。
+     * 
+     * @param engine NioEngine
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    private Response executeNio(NioEngine engine, String method, URL url, RequestBody body, Exchange exchange) throws RequestException {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        RequestListener listener = FlightRecorderEvents.with(requestListener);
+        RequestEvent event = listener != null ? new RequestEvent(method, url) : null;
+        NioRequest request = createNioRequest(method, url, body, exchange, new ResponseCallback() {
+            @Override
+            public void completed(Response response) {
+                future.complete(response);
+            }
+            @Override
+            public void failed(RequestException e) {
+                future.completeExceptionally(e);
+            }
+            @Override
+            public void connected() {
+                if(listener != null) {
+                    event.connected();
+                    listener.connectionAcquired(event);
+                }
+            }
+            @Override
+            public void requestSent(long bytes) {
+                if(listener != null) {
+                    event.sent(bytes);
+                    listener.headersSent(event);
+                }
+            }
+            @Override
+            public void headersReceived(int statusCode) {
+                if(listener != null) {
+                    event.firstByte(statusCode);
+                    listener.firstByte(event);
+                }
+            }
+        });
+        exchange.attach(request::cancel);
+        if(listener != null) {
+            listener.requestStart(event);
+        }
+        TrafficRecorder recorder = trafficRecorder;
+        long startMillis = recorder != null ? System.currentTimeMillis() : 0;
+        long start = recorder != null ? System.nanoTime() : 0;
+        Map<String, String> requestFields = recorder != null ? getRequestFields() : null;
+        engine.execute(request);
+        Response response;
+        try {
+            response = future.get();
+        }catch(InterruptedException e) {
+            request.cancel();
+            Thread.currentThread().interrupt();
+            throw failed(listener, event, new RequestException(e.toString(), e));
+        }catch(ExecutionException e) {
+            if(exchange.isExpired()) {
+                throw failed(listener, event, exchange.expiredException());
+            }
+            throw failed(listener, event, unwrap(e));
+        }
+        setCookies(response.getHeaderFields());
+        if(listener != null) {
+            event.end(response.getStatusCode(), response.getLength());
+            listener.bodyComplete(event);
+        }
+        if(recorder != null) {
+            recorder.record(startMillis, method, url, requestFields, body, response, -1,
+                    System.nanoTime() - start, exchange.nextHop() > 0);
+        }
+        return response;
+    }
+    /**
+     * 根据Session的请求头和cookie信息构造通过NioEngine发送的请求。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态，用于计算超时时间和截止时刻
+     * @param callback 请求完成时的回调
+     * @return NioRequest
+     * @throws RequestException 如果无法解析主机名，或请求头中包含回车或换行符
+     */
+    private NioRequest createNioRequest(String method, URL url, RequestBody body, Exchange exchange, ResponseCallback callback) throws RequestException {
+        InetSocketAddress address;
+        byte[] bytes;
+        try {
+            address = resolveAddress(url);
+            bytes = body == null ? null : body.toBytes();
+        }catch(IOException e) {
+            throw new RequestException(e.toString(), e);
+        }
+        Map<String, String> fields = getRequestFields();
+        if(body != null && body.contentType() != null) {
+            fields.put("Content-Type", body.contentType());
+        }
+        byte[] data = encodeRequest(method, url, fields, bytes);
+        return new NioRequest(method, url, address, data, bytes == null ? 0 : bytes.length, exchange.getConnectTimeout(), exchange.getReadTimeout(), exchange.getDeadline(), callback);
+    }
+    /**
+     * 将请求编码为HTTP/1.1请求字节。
+     * <p> 与HttpURLConnection的请求相同，请求头或url地址中包含回车或换行符时抛出RequestException，
+     * 而不是IllegalArgumentException，这是本地的错误，不计入熔断器和限流器的失败。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param fields 请求头字段
+     * @param body 请求体，为null时不发送请求体
+     * @return 已编码的请求字节
+     * @throws RequestException 如果请求方法、url地址或请求头中包含回车或换行符
+     */
+    static byte[] encodeRequest(String method, URL url, Map<String, String> fields, byte[] body) throws RequestException {
+        try {
+            return NioRequest.encode(method, url, fields, body);
+        }catch(IllegalArgumentException e) {
+            throw new RequestException(e.getMessage(), e);
+        }
+    }
+    /**
+     * 解析url地址的主机名，获得需要连接的地址。
+     * <p> 如果设置了解析器，则使用解析器返回的第一个地址。
+     * 
+     * @param url 目标url地址
+     * @return 需要连接的地址
+     * @throws IOException 如果无法解析主机名
+     */
+    private InetSocketAddress resolveAddress(URL url) throws IOException {
+        String host = url.getHost();
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        Resolver r = resolver;
+        if(r == null || StaticResolver.isLiteral(host)) {
+            return new InetSocketAddress(InetAddress.getByName(host), port);
+        }
+        return new InetSocketAddress(r.resolve(host)[0], port);
+    }
+    /**
+     * 获得Session中的所有请求头信息和当前的cookie信息。
+     * 
+     * @return 请求头字段的Map集合
+     */
+    Map<String, String> getRequestFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for(String[] header : getHeaders()) {
+            if(!"Cookie".equalsIgnoreCase(header[0])) {
+                fields.put(header[0], header[1]);
+            }
+        }
+        String cookie = cookieManager.getString();
+        if(!cookie.isEmpty()) {
+            fields.put("Cookie", cookie);
+        }
+        return fields;
+    }
+    /**
+     * 通过NioEngine异步发送请求，并在回调中按重定向策略执行重定向。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param exchange 本次请求交换的状态
+     * @param hops 已执行的重定向次数
+     * @param callback 请求完成时的回调
+     */
+    private void sendAsync(String method, URL url, String body, Exchange exchange, int hops, ResponseCallback callback) {
+        NioEngine engine = nioEngine;
+        NioRequest request;
+        try {
+            if(engine == null) {
+                throw new RequestException("未设置NioEngine");
+            }
+            if(!"http".equals(url.getProtocol())) {
+                throw new RequestException("NioEngine不支持的协议：" + url.getProtocol());
+            }
+            if(Exchange.remaining(exchange.getDeadline()) <= 0) {
+                throw exchange.expiredException();
+            }
+            request = createNioRequest(method, url, body == null ? null : RequestBody.of(body), exchange, new ResponseCallback() {
+                @Override
+                public void completed(Response response) {
+                    setCookies(response.getHeaderFields());
+                    int code = response.getStatusCode();
+                    URL target;
+                    try {
+                        target = redirectTarget(url, code, response.getHeader("Location"), getRedirectPolicy(), hops);
+                    }catch(RequestException e) {
+                        response.close();
+                        callback.failed(e);
+                        return;
+                    }
+                    if(target == null) {
+                        callback.completed(response);
+                        return;
+                    }
+                    String nextMethod = redirectMethod(method, code);
+                    String nextBody = nextMethod.equals(method) && code != 303 ? body : null;
+                    sendAsync(nextMethod, target, nextBody, exchange, hops + 1, callback);
+                }
+                @Override
+                public void failed(RequestException e) {
+                    callback.failed(Exchange.remaining(exchange.getDeadline()) <= 0 ? exchange.expiredException() : e);
+                }
+                @Override
+                public void connected() {
+                    callback.connected();
+                }
+                @Override
+                public void requestSent(long bytes) {
+                    callback.requestSent(bytes);
+                }
+                @Override
+                public void headersReceived(int statusCode) {
+                    callback.headersReceived(statusCode);
+                }
+            });
+        }catch(RequestException e) {
+            callback.failed(e);
+            return;
+        }
+        engine.execute(request);
+    }
+    /**
+     * 解析url字符串，并按永久重定向缓存替换为最终的url地址。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @return URL
+     * @throws RequestException 如果url字符串格式错误
+     */
+    URL resolveURL(String method, String url) throws RequestException {
+        URL myurl;
+        try {
+            myurl = new URL(url);
+        }catch(MalformedURLException e) {
+            throw new RequestException(e.toString(), e.getCause());
+        }
+        if(getRedirectPolicy() != RedirectPolicy.NEVER) {
+            myurl = redirectCache.resolve(myurl, method, maxRedirects);
+        }
+        return myurl;
+    }
+    /**
+     * 判断请求能否以管线化方式发送，只有不带请求体的幂等请求才能管线化。
+     * 
+     * @param request 请求
+     * @return 如果能以管线化方式发送，返回true，否则返回false
+     */
+    private static boolean isPipelinable(Request request) {
+        return request.getBody() == null && RetryPolicy.isIdempotent(request.getMethod());
+    }
+    /**
+     * 以管线化方式发送一组目标为同一个源的请求，并将响应保存到responses中对应的位置。
+     * <p> 服务端在返回部分响应后关闭连接时，在新的连接上继续以管线化方式发送剩余的请求；
+     * 如果在一个连接上未收到任何响应，则逐个发送剩余的请求。
+     * 
+     * @param requests 请求
+     * @param urls 请求的url地址
+     * @param from 本组第一个请求的位置
+     * @param to 本组最后一个请求之后的位置
+     * @param responses 保存响应的数组
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    private void pipeline(List<Request> requests, List<URL> urls, int from, int to, Response[] responses) throws RequestException {
+        Timeout timeout = requests.get(from).getTimeout();
+        if(timeout == null) {
+            timeout = getTimeout();
+        }
+        Exchange exchange = new Exchange(timeout, Exchange.deadlineOf(timeout));
+        int next = from;
+        try {
+            while(next < to) {
+                int received = 0;
+                // 在建立连接之前编码，请求头中的非法字符在发送任何请求之前就以RequestException报告
+                List<byte[]> data = new ArrayList<>(to - next);
+                List<Boolean> heads = new ArrayList<>(to - next);
+                Map<String, String> fields = getRequestFields();
+                for(int i = next;i < to;i++) {
+                    String method = requests.get(i).getMethod();
+                    data.add(encodeRequest(method, urls.get(i), fields, null));
+                    heads.add("HEAD".equals(method));
+                }
+                try(PipelinedConnection connection = openPipelinedConnection(urls.get(next), exchange)) {
+                    for(Response response : connection.send(data, heads, pipelineDepth)) {
+                        setCookies(response.getHeaderFields());
+                        responses[next] = followRedirect(requests.get(next), urls.get(next), response);
+                        next++;
+                        received++;
+                    }
+                }catch(IOException e) {
+                    // 无法建立连接时逐个发送剩余的请求
+                }
+                if(exchange.isExpired()) {
+                    throw exchange.expiredException();
+                }
+                if(received == 0) {
+                    break;
+                }
+            }
+        }finally {
+            exchange.finish();
+        }
+        for(;next < to;next++) {
+            Request request = requests.get(next);
+            responses[next] = send(request.getMethod(), request.getUrl(), null, request.getTimeout());
+        }
+    }
+    /**
+     * 建立用于管线化的连接。
+     * 
+     * @param url 目标url地址
+     * @param exchange 本次请求交换的状态，截止时刻到达时关闭连接
+     * @return PipelinedConnection
+     * @throws IOException 如果无法建立连接
+     * @throws RequestException 如果已超过截止时刻
+     */
+    private PipelinedConnection openPipelinedConnection(URL url, Exchange exchange) throws IOException, RequestException {
+        Socket socket = openSocket(url, exchange);
+        try {
+            return new PipelinedConnection(socket);
+        }catch(IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+    /**
+     * 建立到url地址的连接，按超时设置设置连接和读取的超时时间，取消请求时关闭连接。
+     * <p> 对于https连接，以原主机名发送SNI并校验服务器证书。
+     * 
+     * @param url 目标url地址
+     * @param exchange 本次请求交换的状态
+     * @return 已建立的连接
+     * @throws IOException 如果无法建立连接
+     * @throws RequestException 如果已超过截止时刻
+     */
+    Socket openSocket(URL url, Exchange exchange) throws IOException, RequestException {
+        Socket socket = new Socket();
+        exchange.attach(() -> {
+            try {
+                socket.close();
+            }catch(IOException e) {
+                // 忽略关闭时的错误
+            }
+        });
+        try {
+            InetSocketAddress address = resolveAddress(url);
+            socket.connect(address, exchange.getConnectTimeout());
+            socket.setSoTimeout(exchange.getReadTimeout());
+            socket.setTcpNoDelay(true);
+            if(!"https".equals(url.getProtocol())) {
+                return socket;
+            }
+            SSLSocket ssl = (SSLSocket)getSSLSocketFactory().createSocket(socket, url.getHost(), address.getPort(), true);
+            SSLParameters parameters = ssl.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            ssl.setSSLParameters(parameters);
+            ssl.startHandshake();
+            return ssl;
+        }catch(IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+    /**
+     * 如果管线化请求的响应为可执行的重定向，则按重定向策略以普通方式发送重定向后的请求。
+     * 
+     * @param request 请求
+     * @param url 请求的url地址
+     * @param response 请求的响应
+     * @return 最终的响应
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    private Response followRedirect(Request request, URL url, Response response) throws RequestException {
+        int code = response.getStatusCode();
+        URL target;
+        try {
+            target = redirectTarget(url, code, response.getHeader("Location"), getRedirectPolicy(), 0);
+        }catch(RequestException e) {
+            response.close();
+            throw e;
+        }
+        if(target == null) {
+            return response;
+        }
+        return send(redirectMethod(request.getMethod(), code), target.toString(), null, request.getTimeout());
+    }
+    /**
+     * 预先建立到一组源的连接，以减少首个请求的延迟。
+     * <p> 对每个源并发建立指定数量的连接，在每个连接上发送一个 HEAD 请求后将其放回JVM的keep-alive连接池，
+     * 之后对这些源的get和post请求会复用这些连接，无需再次进行DNS解析、TCP连接和TLS握手。
+     * <p> 注意：
+     * <p> JVM对每个目标最多保留 http.maxConnections（默认为5）个空闲连接，空闲连接在服务端指定的时间（默认为5秒）后关闭。
+     * 
+     * @param origins 源的集合，如："https://www.charghet.com"，路径和参数会被忽略
+     * @param connectionsPerOrigin 每个源建立的连接数
+     * @return 每个源的预热结果，顺序与origins相同
+     * @throws FormatException 如果源的格式错误
+     */
+    public List<PrewarmResult> prewarm(Collection<String> origins, int connectionsPerOrigin) throws FormatException {
+        List<String> names = new ArrayList<>(origins);
+        List<URL> urls = new ArrayList<>();
+        for(String origin : names) {
+            try {
+                URL url = new URL(origin);
+                urls.add(new URL(url.getProtocol(), url.getHost(), url.getPort(), "/"));
+            }catch(MalformedURLException e) {
+                throw new FormatException(e.toString(), e);
+            }
+        }
+        List<PrewarmResult> results = new ArrayList<>();
+        if(urls.isEmpty()) {
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(urls.size(), 16), r -> {
+            Thread thread = new Thread(r, "requests-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<PrewarmResult>> futures = new ArrayList<>();
+            for(int i = 0;i < urls.size();i++) {
+                String origin = names.get(i);
+                URL url = urls.get(i);
+                futures.add(executor.submit(() -> prewarm(origin, url, connectionsPerOrigin)));
+            }
+            for(int i = 0;i < futures.size();i++) {
+                try {
+                    results.add(futures.get(i).get());
+                }catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.add(new PrewarmResult(names.get(i), new long[0], Collections.singletonList(new RequestException(e.toString(), e))));
+                }catch(ExecutionException e) {
+                    results.add(new PrewarmResult(names.get(i), new long[0], Collections.singletonList(unwrap(e))));
+                }
+            }
+        }finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+    /**
+     * 预先建立到一个源的连接。
+     * <p> 先依次建立所有连接，再依次发送 HEAD 请求，以保证每个连接都是新建立的。
+     * 
+     * @param origin 源
+     * @param url 源的根路径
+     * @param count 建立的连接数
+     * @return 预热结果
+     */
+    private PrewarmResult prewarm(String origin, URL url, int count) {
+        Timeout timeout = getTimeout();
+        List<HttpURLConnection> connections = new ArrayList<>();
+        List<Exchange> exchanges = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        List<RequestException> errors = new ArrayList<>();
+        for(int i = 0;i < count;i++) {
+            Exchange exchange = new Exchange(timeout, Exchange.deadlineOf(timeout));
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = openConnection(url);
+                exchange.attach(connection);
+                connection.setInstanceFollowRedirects(false);
+                connection.setRequestMethod("HEAD");
+                setConnectionHeaders(connection);
+                connection.connect();
+                times.add(System.nanoTime() - start);
+                connections.add(connection);
+                exchanges.add(exchange);
+            }catch(RequestException e) {
+                exchange.finish();
+                errors.add(e);
+            }catch(IOException e) {
+                exchange.finish();
+                errors.add(new RequestException(e.toString(), e));
+            }
+        }
+        List<Long> warmed = new ArrayList<>();
+        for(int i = 0;i < connections.size();i++) {
+            HttpURLConnection connection = connections.get(i);
+            try {
+                connection.getResponseCode();
+                drain(connection);
+                warmed.add(times.get(i));
+            }catch(IOException e) {
+                errors.add(new RequestException(e.toString(), e));
+            }finally {
+                exchanges.get(i).finish();
+            }
+        }
+        long[] handshakeTimes = new long[warmed.size()];
+        for(int i = 0;i < handshakeTimes.length;i++) {
+            handshakeTimes[i] = warmed.get(i);
+        }
+        return new PrewarmResult(origin, handshakeTimes, errors);
+    }
+    /**
+     * 读取并关闭连接的响应流，使连接能够被放回keep-alive连接池。
+     * 
+     * @param connection HttpURLConnection实例
+     * @throws IOException 如果发生I/O错误
+     */
+    private static void drain(HttpURLConnection connection) throws IOException {
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        }catch(IOException e) {
+            in = connection.getErrorStream();
+        }
+        if(in != null) {
+            byte[] b = new byte[1024];
+            while(in.read(b) != -1) {
+                // 丢弃响应体
+            }
+            in.close();
+        }
+    }
+    /**
+     * 发送get请求。
+     * <p> 注意：
+     * <p> 该方法不会自动将url字符串进行urlencode编码，如果url字符串包含中文字符等，请先将url字符串进行urlencode编码。
+     * <p> 推荐使用 get(String url, URLParam param)，该方法能够自动将url字符串和url参数进行urlencode编码。
+     * 
+     * @param url 目标url地址
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public Response get(String url) throws RequestException{
+        return send("GET", url, null, null);
+    }
+    /**
+     * 以指定的超时设置发送get请求。
+     * <p> 注意：
+     * <p> 该方法不会自动将url字符串进行urlencode编码，如果url字符串包含中文字符等，请先将url字符串进行urlencode编码。
+     * 
+     * @param url 目标url地址
+     * @param timeout 本次请求的超时设置，替换Session的超时设置
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误或超时
+     */
+    public Response get(String url, Timeout timeout) throws RequestException{
+        return send("GET", url, null, timeout);
+    }
+    /**
+     * 发送get请求。
+     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
+     * <p> url地址和url参数应该分开，请勿将url参数附加到url字符串中。
+     * 
+     * @param url 目标url地址
+     * @param param 封装了需要传递的参数的URLParam类
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     * @throws FormatException 如果对url字符串或url参数进行urlencode编码过程中发生错误
+     */
+    public Response get(String url, URLParam param) throws RequestException, FormatException{
+        url = URLUtil.encodeURL(url) + "?" + param.getEncodeString();
+        return get(url);
+    }
+    /**
+     * 以指定的超时设置发送get请求。
+     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
+     * 
+     * @param url 目标url地址
+     * @param param 封装了需要传递的参数的URLParam类
+     * @param timeout 本次请求的超时设置，替换Session的超时设置
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误或超时
+     * @throws FormatException 如果对url字符串或url参数进行urlencode编码过程中发生错误
+     */
+    public Response get(String url, URLParam param, Timeout timeout) throws RequestException, FormatException{
+        url = URLUtil.encodeURL(url) + "?" + param.getEncodeString();
+        return get(url, timeout);
+    }
+    /**
+     * 发送post请求。
+     * <p> 注意：
+     * <p> 该方法能够自动将url字符串进行urlencode编码，但不会对url参数进行urlencode编码。
+     * <p> 推荐使用post(String url, URLParam param)，该方法能够该方法能够自动将url字符串和url参数进行urlencode编码。
+     * 
+     * @param url 目标url地址
+     * @param param 需要传递的参数，如："name1=vdalue1&amp;name2=value2" 如果包含中文字符等，请先进行urlencode编码
+     * @return Response 响应url请求的类
+     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public Response post(String url, String param) throws FormatException, RequestException{
+        url = URLUtil.encodeURL(url);
+        return send("POST", url, param, null);
+    }
+    /**
+     * 以指定的超时设置发送post请求。
+     * <p> 该方法能够自动将url字符串进行urlencode编码，但不会对url参数进行urlencode编码。
+     * 
+     * @param url 目标url地址
+     * @param param 需要传递的参数，如："name1=vdalue1&amp;name2=value2" 如果包含中文字符等，请先进行urlencode编码
+     * @param timeout 本次请求的超时设置，替换Session的超时设置
+     * @return Response 响应url请求的类
+     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误或超时
+     */
+    public Response post(String url, String param, Timeout timeout) throws FormatException, RequestException{
+        url = URLUtil.encodeURL(url);
+        return send("POST", url, param, timeout);
+    }
+    /**
+     * 发送post请求。
+     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
+     * 
+     * @param url 目标url地址
+     * @param param 封装了url参数的URLParm类
+     * @return Response 响应url请求的类
+     * @throws FormatException 如果对url字符串和url参数进行urlencode编码过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public Response post(String url, URLParam param) throws FormatException, RequestException{
+        return post(url, param.getEncodeString());
+    }
+    /**
+     * 以指定的超时设置发送post请求。
+     * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
+     * 
+     * @param url 目标url地址
+     * @param param 封装了url参数的URLParm类
+     * @param timeout 本次请求的超时设置，替换Session的超时设置
+     * @return Response 响应url请求的类
+     * @throws FormatException 如果对url字符串和url参数进行urlencode编码过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误或超时
+     */
+    public Response post(String url, URLParam param, Timeout timeout) throws FormatException, RequestException{
+        return post(url, param.getEncodeString(), timeout);
+    }
+    /**
+     * 发送post请求。
+     * <p> 该方法能够自动将url字符串进行urlencode编码，请勿将urlencode编码后的字符串传入。
+     * 
+     * @param url 目标url地址
+     * @return Response 响应url请求的类
+     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public Response post(String url) throws FormatException, RequestException {
+        return post(url, "");
+    }
+    /**
+     * 通过NioEngine异步发送get请求，请求完成后调用回调，不阻塞当前线程。
+     * <p> 与同步请求一样保存cookie信息并执行重定向，使用Session的超时设置，
+     * 但不经过限流器、重试策略、对冲策略和熔断器。
+     * <p> 注意：
+     * <p> 回调在NioEngine的事件循环线程中执行，请勿在回调中执行耗时的操作。
+     * 
+     * @param url 目标url地址，只支持http
+     * @param callback 请求完成时的回调
+     * @throws RequestException 如果未设置NioEngine或url字符串格式错误
+     */
+    public void getAsync(String url, ResponseCallback callback) throws RequestException {
+        sendAsync("GET", url, null, callback);
+    }
+    /**
+     * 通过NioEngine异步发送post请求，请求完成后调用回调，不阻塞当前线程。
+     * <p> 该方法能够自动将url字符串进行urlencode编码，但不会对url参数进行urlencode编码。
+     * <p> 与同步请求一样保存cookie信息并执行重定向，使用Session的超时设置，
+     * 但不经过限流器、重试策略、对冲策略和熔断器。回调在NioEngine的事件循环线程中执行。
+     * 
+     * @param url 目标url地址，只支持http
+     * @param param 需要传递的参数，如："name1=vdalue1&amp;name2=value2" 如果包含中文字符等，请先进行urlencode编码
+     * @param callback 请求完成时的回调
+     * @throws FormatException 如果对url字符串进行urlencode编码过程中发生错误
+     * @throws RequestException 如果未设置NioEngine或url字符串格式错误
+     */
+    public void postAsync(String url, String param, ResponseCallback callback) throws FormatException, RequestException {
+        sendAsync("POST", URLUtil.encodeURL(url), param, callback);
+    }
+    /**
+     * 检查NioEngine和url地址后异步发送请求。
+     * 
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param body 请求体，为null时不发送请求体
+     * @param callback 请求完成时的回调
+     * @throws RequestException 如果未设置NioEngine或url字符串格式错误
+     */
+    private void sendAsync(String method, String url, String body, ResponseCallback callback) throws RequestException {
+        if(nioEngine == null) {
+            throw new RequestException("未设置NioEngine");
+        }
+        URL myurl = resolveURL(method, url);
+        Timeout t = getTimeout();
+        sendAsync(method, myurl, body, new Exchange(t, Exchange.deadlineOf(t)), 0, callback);
+    }
+    /**
+     * 批量发送请求，返回的响应顺序与请求相同。
+     * <p> 通过 setPipelineDepth(int depth) 启用管线化后，目标为同一个源的连续的幂等请求（如GET、HEAD）
+     * 在同一个连接上连续写出，不等待前一个请求的响应，从而减少往返次数；
+     * 带请求体的请求和非幂等的请求（如POST）总是逐个以普通方式发送。
+     * <p> 服务端中途关闭连接时，尚未收到响应的请求会在新的连接上重新发送；如果服务端不支持管线化，则逐个发送。
+     * 未启用管线化时，与逐个调用get和post方法相同。
+     * <p> 注意：
+     * <p> 管线化请求不经过限流器、重试策略、对冲策略和熔断器，重定向后的请求以普通方式发送。
+     * 
+     * @param requests 请求的列表
+     * @return 响应的列表，顺序与请求相同
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public List<Response> pipeline(List<Request> requests) throws RequestException {
+        Response[] responses = new Response[requests.size()];
+        List<URL> urls = new ArrayList<>(requests.size());
+        for(Request request : requests) {
+            urls.add(resolveURL(request.getMethod(), request.getUrl()));
+        }
+        int depth = pipelineDepth;
+        int i = 0;
+        try {
+            while(i < requests.size()) {
+                Request request = requests.get(i);
+                if(depth < 2 || !isPipelinable(request)) {
+                    responses[i] = send(request);
+                    i++;
+                    continue;
+                }
+                int j = i + 1;
+                while(j < requests.size() && isPipelinable(requests.get(j))
+                        && requests.get(j).getTimeout() == request.getTimeout()
+                        && sameOrigin(urls.get(i), urls.get(j))) {
+                    j++;
+                }
+                pipeline(requests, urls, i, j, responses);
+                i = j;
+            }
+        }catch(RequestException | RuntimeException e) {
+            // 不返回已收到的响应，关闭它们以释放保存在BodyStorage中的响应体
+            for(Response response : responses) {
+                if(response != null) {
+                    response.close();
+                }
+            }
+            throw e;
+        }
+        List<Response> list = new ArrayList<>(responses.length);
+        Collections.addAll(list, responses);
+        return list;
+    }
+    /**
+     * 判断两个url地址是否属于同一个源。
+     * 
+     * @param a url地址
+     * @param b url地址
+     * @return 如果协议、主机名和端口都相同，返回true，否则返回false
+     */
+    private static boolean sameOrigin(URL a, URL b) {
+        return a.getProtocol().equals(b.getProtocol()) && a.getHost().equalsIgnoreCase(b.getHost())
+                && (a.getPort() == -1 ? a.getDefaultPort() : a.getPort()) == (b.getPort() == -1 ? b.getDefaultPort() : b.getPort());
+    }
+    /**
+     * 订阅服务端推送的事件流（Server-Sent Events），在Session的线程池中持续读取事件并调用监听器。
+     * <p> 连接断开后，按服务端通过 retry 字段指定的间隔（默认为3000毫秒）重新连接，
+     * 并通过 Last-Event-ID 请求头发送最近收到的事件id，请求中包含Session的请求头和cookie信息。
+     * <p> 使用完毕后应调用 EventSource.close() 停止读取。
+     * 
+     * @param url 目标url地址
+     * @param listener 接收事件的监听器
+     * @return EventSource
+     */
+    public EventSource eventSource(String url, EventSourceListener listener) {
+        return eventSource(url, null, listener);
+    }
+    /**
+     * 从指定的事件id之后订阅服务端推送的事件流（Server-Sent Events）。
+     * 
+     * @param url 目标url地址
+     * @param lastEventId 最近收到的事件id，首次连接时通过 Last-Event-ID 请求头发送，为null时不发送
+     * @param listener 接收事件的监听器
+     * @return EventSource
+     * @see #eventSource(String, EventSourceListener)
+     */
+    public EventSource eventSource(String url, String lastEventId, EventSourceListener listener) {
+        EventSource source = new EventSource(this, url, lastEventId, listener);
+        getExecutor().execute(source::run);
+        return source;
+    }
+    /**
+     * 发送get请求，只读取状态行和响应头，响应体以流的方式按需读取。
+     * <p> 该方法不会自动将url字符串进行urlencode编码。
+     * 
+     * @param url 目标url地址
+     * @return StreamingResponse 以流的方式读取响应体的类，使用完毕后应关闭
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public StreamingResponse stream(String url) throws RequestException {
+        return stream(Request.get(url));
+    }
+    /**
+     * 发送请求，只读取状态行和响应头，响应体以流的方式按需读取。
+     * <p> 与get和post方法一样保存cookie信息并执行重定向，但不经过限流器、重试策略、对冲策略和熔断器，也不使用NioEngine。
+     * <p> 总时限只限制建立连接和读取响应头的时间，读取超时时间限制每次读取响应体的等待时间。
+     * 
+     * @param request 请求
+     * @return StreamingResponse 以流的方式读取响应体的类，使用完毕后应关闭
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    public StreamingResponse stream(Request request) throws RequestException {
+        return stream(request, Collections.emptyMap());
+    }
+    /**
+     * 发送附加了请求头的请求，只读取状态行和响应头，响应体以流的方式按需读取。
+     * <p> 附加的请求头在每次重定向时都会发送，用于条件请求等只属于单个请求的请求头。
+     * 
+     * @param request 请求
+     * @param extraHeaders 仅用于本次请求的请求头，覆盖Session中的同名请求头
+     * @return StreamingResponse 以流的方式读取响应体的类，使用完毕后应关闭
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    StreamingResponse stream(Request request, Map<String, String> extraHeaders) throws RequestException {
+        String method = request.getMethod();
+        String body = request.getBody();
+        URL url = resolveURL(method, request.getUrl());
+        Timeout timeout = request.getTimeout() != null ? request.getTimeout() : getTimeout();
+        Exchange exchange = new Exchange(timeout, Exchange.deadlineOf(timeout));
+        RedirectPolicy policy = getRedirectPolicy();
+        try {
+            for(int hops = 0;;hops++) {
+                HttpURLConnection connection = null;
+                try {
+                    connection = connect(method, url, body, exchange, extraHeaders);
+                    int code = connection.getResponseCode();
+                    setCookies(connection.getHeaderFields());
+                    URL target = redirectTarget(url, code, connection.getHeaderField("Location"), policy, hops);
+                    if(target == null) {
+                        return new StreamingResponse(connection, getExecutor());
+                    }
+                    drain(connection);
+                    String redirected = redirectMethod(method, code);
+                    if(!redirected.equals(method) || code == 303) {
+                        method = redirected;
+                        body = null;
+                    }
+                    url = target;
+                }catch(RequestException e) {
+                    if(connection != null) {
+                        connection.disconnect();
+                    }
+                    throw e;
+                }catch(IOException e) {
+                    if(exchange.isExpired()) {
+                        throw exchange.expiredException();
+                    }
+                    throw new RequestException(e.toString(), e);
+                }
+            }
+        }finally {
+            exchange.finish();
+        }
+    }
+    /**
+     * 发送一个请求并读取响应，与调用get和post方法相同。
+     * 
+     * @param request 请求
+     * @return Response 响应url请求的类
+     * @throws RequestException 如果在请求过程中发生错误
+     */
+    Response send(Request request) throws RequestException {
+        if(request.getBody() == null) {
+            return send(request.getMethod(), request.getUrl(), null, request.getTimeout());
+        }
+        return send(request.getMethod(), resolveURL(request.getMethod(), request.getUrl()), request.toRequestBody(), request.getTimeout());
+    }
+    /**
+     * 并发发送一组请求，等待所有请求完成后返回响应，响应顺序与请求相同。
+     * <p> 每个请求在 getExecutor() 返回的线程池中以阻塞方式发送，与调用get和post方法相同，经过限流器、重试策略、对冲策略和熔断器。
+     * <p> 所有请求处于同一个作用域中：任一请求失败或当前线程被中断时，取消其余尚未完成的请求，关闭已得到的响应，并抛出第一个发生的错误。
+     * 
+     * @param requests 请求的列表
+     * @return 响应的列表，顺序与请求相同
+     * @throws RequestException 如果任一请求发生错误，或等待过程中被中断
+     */
+    public List<Response> fanOut(List<Request> requests) throws RequestException {
+        CompletionService<Response> service = new ExecutorCompletionService<>(getExecutor());
+        Map<Future<Response>, Integer> futures = new HashMap<>();
+        Scope scope = new Scope();
+        Queue<Response> received = new ConcurrentLinkedQueue<>();
+        Response[] responses = new Response[requests.size()];
+        int done = 0;
+        try {
+            for(int i = 0;i < requests.size();i++) {
+                Request request = requests.get(i);
+                futures.put(service.submit(() -> {
+                    Response response = scope.call(() -> send(request));
+                    received.add(response);
+                    // 作用域已取消时结果不会再被取走，由得到响应的线程关闭
+                    if(scope.isCancelled() && received.remove(response)) {
+                        response.close();
+                    }
+                    return response;
+                }), i);
+            }
+            for(;done < responses.length;done++) {
+                Future<Response> future = service.take();
+                try {
+                    responses[futures.get(future)] = future.get();
+                }catch(ExecutionException e) {
+                    throw unwrap(e);
+                }
+            }
+        }catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e.toString(), e);
+        }finally {
+            if(done < responses.length) {
+                scope.cancel();
+                for(Future<Response> future : futures.keySet()) {
+                    future.cancel(true);
+                }
+                Response response;
+                while((response = received.poll()) != null) {
+                    response.close();
+                }
+            }
+        }
+        List<Response> list = new ArrayList<>(responses.length);
+        Collections.addAll(list, responses);
+        return list;
     }
 }
@@ -0,0 +1,69 @@
+package me.charghet.tools.requests;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 根据预先设置的主机名和IP地址对应关系进行解析的解析器，不会进行DNS查询。
+ * <p> 可用于测试，或将主机名固定到指定的地址。
+ *
+ * @author charghet
+ *
+ */
+public class StaticResolver implements Resolver {
+    private final Map<String, InetAddress[]> hosts = new ConcurrentHashMap<>();
+    /**
+     * 设置主机名对应的IP地址，替换该主机名已有的地址。
+     *
+     * @param host 主机名
+     * @param addresses IP地址字符串，如："127.0.0.1"、"::1"
+     * @throws FormatException 如果IP地址字符串格式错误
+     */
+    public void add(String host, String... addresses) throws FormatException {
+        if(addresses.length == 0) {
+            throw new FormatException("addresses.length:0");
+        }
+        InetAddress[] result = new InetAddress[addresses.length];
+        for(int i = 0;i < addresses.length;i++) {
+            if(!isLiteral(addresses[i])) {
+                throw new FormatException("IP地址格式错误：" + addresses[i]);
+            }
+            try {
+                result[i] = InetAddress.getByAddress(host, InetAddress.getByName(addresses[i]).getAddress());
+            }catch(UnknownHostException e) {
+                throw new FormatException(e.toString(), e);
+            }
+        }
+        hosts.put(host.toLowerCase(), result);
+    }
+    /**
+     * 删除主机名对应的IP地址。
+     *
+     * @param host 主机名
+     */
+    public void remove(String host) {
+        hosts.remove(host.toLowerCase());
+    }
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        InetAddress[] addresses = hosts.get(host.toLowerCase());
+        if(addresses == null) {
+            throw new UnknownHostException(host);
+        }
+        return addresses.clone();
+    }
+    /**
+     * 判断字符串是否为IP地址字面量。
+     *
+     * @param host 主机名或IP地址字符串
+     * @return 如果是IPv4或IPv6地址字面量，返回true，否则返回false
+     */
+    static boolean isLiteral(String host) {
+        if(host.indexOf(':') != -1 || host.startsWith("[")) {
+            return true;
+        }
+        return host.matches("\\d{1,3}(\\.\\d{1,3}){3}");
+    }
+}
@@ -0,0 +1,183 @@
+package me.charghet.tools.requests;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * 以流的方式读取响应体的url请求结果。
+ * <p> 与Response不同，构造时只读取状态行和响应头，响应体需要通过 getBody() 或 getInputStream() 按需读取。
+ * <p> 使用完毕后应调用 close() 关闭响应流；完整读取响应体后，连接会被放回keep-alive连接池。
+ *
+ * @author charghet
+ *
+ */
+public class StreamingResponse implements Closeable {
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_LINE = 1024 * 1024;
+    private static final Field HTTP;
+    private static final Field DELEGATE;
+    private static final Method CLOSE_SERVER;
+    static {
+        Field http = null;
+        Field delegate = null;
+        Method closeServer = null;
+        try {
+            http = Class.forName("sun.net.www.protocol.http.HttpURLConnection").getDeclaredField("http");
+            http.setAccessible(true);
+            closeServer = Class.forName("sun.net.NetworkClient").getMethod("closeServer");
+            closeServer.setAccessible(true);
+            delegate = Class.forName("sun.net.www.protocol.https.HttpsURLConnectionImpl").getDeclaredField("delegate");
+            delegate.setAccessible(true);
+        }catch(ReflectiveOperationException | RuntimeException e) {
+            http = null;
+        }
+        HTTP = http;
+        DELEGATE = delegate;
+        CLOSE_SERVER = closeServer;
+    }
+    private final HttpURLConnection connection;
+    private final InputStream in;
+    private final BodyPublisher body;
+    /**
+     * 构造一个包含HttpURLConnection的StreamingResponse类，只读取状态行和响应头。
+     *
+     * @param connection 已发送请求的HttpURLConnection
+     * @param executor 读取响应体的线程池
+     * @throws IOException 如果在读取过程中发生错误
+     */
+    StreamingResponse(HttpURLConnection connection, Executor executor) throws IOException {
+        this.connection = connection;
+        connection.getResponseCode();
+        InputStream stream;
+        try {
+            stream = connection.getInputStream();
+        }catch(IOException e) {
+            stream = connection.getErrorStream();
+        }
+        this.in = stream != null ? stream : new ByteArrayInputStream(new byte[0]);
+        this.body = new BodyPublisher(in, this::abort, executor, CHUNK_SIZE);
+    }
+    /**
+     * 断开连接，使阻塞在读取响应体中的线程立即返回，调用者不会被阻塞。
+     * <p> HttpURLConnection.disconnect() 要等到正在进行的读取返回后才能关闭输入流，因此直接关闭底层的Socket；
+     * 在无法访问底层Socket的JDK上，在另一个线程中断开连接，读取在收到数据或超时后结束。
+     */
+    private void abort() {
+        if(HTTP != null) {
+            try {
+                Object target = DELEGATE != null && DELEGATE.getDeclaringClass().isInstance(connection) ? DELEGATE.get(connection) : connection;
+                Object http = HTTP.getDeclaringClass().isInstance(target) ? HTTP.get(target) : null;
+                if(http != null) {
+                    CLOSE_SERVER.invoke(http);
+                    return;
+                }
+            }catch(ReflectiveOperationException | RuntimeException e) {
+                // 改为断开连接
+            }
+        }
+        Thread thread = new Thread(connection::disconnect, "requests-abort");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * 获得StreamingResponse中的HttpURLConnection类，以调用HttpURLConnection类中的方法。
+     *
+     * @return HttpURLConnection
+     */
+    public HttpURLConnection getConnection() {
+        return connection;
+    }
+    /**
+     * 获得url请求结果的状态码。
+     *
+     * @return 状态码，如果发生错误，则返回-1
+     */
+    public int getStatusCode() {
+        try {
+            return connection.getResponseCode();
+        }catch(IOException e) {
+            return -1;
+        }
+    }
+    /**
+     * 获得响应头字段的Map集合。
+     *
+     * @return 响应头字段的Map集合，键为null的字段为状态行
+     */
+    public Map<String, List<String>> getHeaderFields() {
+        return connection.getHeaderFields();
+    }
+    /**
+     * 获得响应头中指定字段的值。
+     *
+     * @param name 字段名
+     * @return 字段值，如果不存在该字段，则返回null
+     */
+    public String getHeader(String name) {
+        return connection.getHeaderField(name);
+    }
+    /**
+     * 获得以响应式流的方式发布响应体的BodyPublisher。
+     * <p> 与 getInputStream() 只能选择其一使用。
+     * <p> 取消订阅时直接关闭底层的Socket，阻塞在读取中的线程立即返回。在JDK 9及以上版本，需要以
+     * --add-opens java.base/sun.net=ALL-UNNAMED --add-opens java.base/sun.net.www.protocol.http=ALL-UNNAMED
+     * --add-opens java.base/sun.net.www.protocol.https=ALL-UNNAMED 启动，否则读取在收到下一块数据或读取超时后才结束。
+     *
+     * @return BodyPublisher
+     */
+    public BodyPublisher getBody() {
+        return body;
+    }
+    /**
+     * 获得响应体的输入流，以阻塞方式逐段读取响应体。
+     * <p> 与 getBody() 只能选择其一使用。
+     *
+     * @return 响应体的输入流
+     */
+    public InputStream getInputStream() {
+        return in;
+    }
+    /**
+     * 以UTF-8编码逐行读取响应体，每读取到一行调用一次操作，直到响应体读取完毕。
+     * <p> 支持 CR、LF 和 CRLF 三种换行符，传入的行不包含换行符。读取缓冲区的大小固定，一行最多为1MB。
+     * <p> 适用于逐行输出的长连接，如以换行符分隔的JSON流。与 getBody() 只能选择其一使用。
+     *
+     * @param action 处理每一行的操作
+     * @throws RequestException 如果在读取过程中发生错误，或一行超过最大长度
+     */
+    public void forEachLine(Consumer<String> action) throws RequestException {
+        LineSplitter splitter = new LineSplitter(MAX_LINE);
+        LineSplitter.Handler handler = (bytes, length) -> action.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            int n;
+            while((n = in.read(buffer)) != -1) {
+                splitter.feed(buffer, 0, n, handler);
+            }
+            splitter.finish(handler);
+        }catch(IOException e) {
+            throw new RequestException(e.toString(), e);
+        }
+    }
+    /**
+     * 关闭响应流。如果响应体尚未读取完毕，则不再复用该连接。
+     */
+    @Override
+    public void close() {
+        try {
+            in.close();
+        }catch(IOException e) {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package me.charghet.tools.requests;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * 可在多个Session之间共享的SSLSocketFactory，复用同一个SSLContext及其TLS会话缓存，使握手能够恢复已有的会话。
+ * <p> 可设置会话缓存的大小和超时时间、启用的协议和加密套件，并统计完整握手和会话恢复的次数。
+ * <p> 握手统计在JSSE的握手完成事件中更新，该事件由单独的线程分发，因此统计结果可能略晚于请求完成。
+ * <p> 通过 Session.setSSLSocketFactory(SSLSocketFactory factory) 使用。
+ *
+ * @author charghet
+ *
+ */
+public class TLSSocketFactory extends SSLSocketFactory {
+    private final SSLContext context;
+    private final SSLSocketFactory delegate;
+    private final Map<SSLSession, Boolean> sessions = Collections.synchronizedMap(new WeakHashMap<>());
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private volatile String[] protocols;
+    private volatile String[] cipherSuites;
+    /**
+     * 构造一个使用新的SSLContext和JVM默认信任配置的实例。
+     *
+     * @throws RequestException 如果无法创建SSLContext
+     */
+    public TLSSocketFactory() throws RequestException {
+        this(newContext(null));
+    }
+    /**
+     * 构造一个信任指定证书库中证书的实例，可用于信任自签名证书。
+     *
+     * @param trustStore 包含受信任证书的证书库
+     * @throws RequestException 如果无法创建SSLContext
+     */
+    public TLSSocketFactory(KeyStore trustStore) throws RequestException {
+        this(newContext(trustStore));
+    }
+    /**
+     * 构造一个使用指定SSLContext的实例。
+     *
+     * @param context 已初始化的SSLContext
+     */
+    public TLSSocketFactory(SSLContext context) {
+        this.context = context;
+        this.delegate = context.getSocketFactory();
+    }
+    private static SSLContext newContext(KeyStore trustStore) throws RequestException {
+        try {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(trustStore);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, tmf.getTrustManagers(), null);
+            return context;
+        }catch(GeneralSecurityException e) {
+            throw new RequestException(e.toString(), e);
+        }
+    }
+    /**
+     * 获得使用的SSLContext。
+     *
+     * @return SSLContext
+     */
+    public SSLContext getContext() {
+        return context;
+    }
+    /**
+     * 设置客户端TLS会话缓存最多保存的会话数。
+     *
+     * @param size 最多保存的会话数，为0时不限制
+     */
+    public void setSessionCacheSize(int size) {
+        context.getClientSessionContext().setSessionCacheSize(size);
+    }
+    /**
+     * 设置客户端TLS会话缓存中会话的超时时间。
+     *
+     * @param seconds 超时时间（秒），为0时不限制
+     */
+    public void setSessionTimeout(int seconds) {
+        context.getClientSessionContext().setSessionTimeout(seconds);
+    }
+    /**
+     * 获得客户端TLS会话缓存。
+     *
+     * @return 客户端TLS会话缓存
+     */
+    public SSLSessionContext getSessionContext() {
+        return context.getClientSessionContext();
+    }
+    /**
+     * 设置启用的协议，如："TLSv1.2"、"TLSv1.3"。
+     *
+     * @param protocols 启用的协议，为null时使用默认设置
+     */
+    public void setProtocols(String... protocols) {
+        this.protocols = protocols == null ? null : protocols.clone();
+    }
+    /**
+     * 设置启用的加密套件。
+     *
+     * @param cipherSuites 启用的加密套件，为null时使用默认设置
+     */
+    public void setCipherSuites(String... cipherSuites) {
+        this.cipherSuites = cipherSuites == null ? null : cipherSuites.clone();
+    }
+    /**
+     * 获得完成的握手总次数。
+     *
+     * @return 握手总次数
+     */
+    public long getHandshakeCount() {
+        return fullHandshakes.get() + resumedHandshakes.get();
+    }
+    /**
+     * 获得完整握手的次数。
+     *
+     * @return 完整握手的次数
+     */
+    public long getFullHandshakeCount() {
+        return fullHandshakes.get();
+    }
+    /**
+     * 获得恢复已有会话的握手次数。
+     *
+     * @return 恢复会话的握手次数
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakes.get();
+    }
+    /**
+     * 获得恢复会话的握手占所有握手的比例。
+     *
+     * @return 恢复会话的比例，如果尚未完成握手，则返回0
+     */
+    public double getResumptionRatio() {
+        long resumed = resumedHandshakes.get();
+        long total = resumed + fullHandshakes.get();
+        return total == 0 ? 0 : (double)resumed / total;
+    }
+    @Override
+    public String[] getDefaultCipherSuites() {
+        String[] suites = cipherSuites;
+        return suites != null ? suites.clone() : delegate.getDefaultCipherSuites();
+    }
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return configure(delegate.createSocket(s, host, port, autoClose));
+    }
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+    /**
+     * 为新创建的SSLSocket设置协议和加密套件，并统计握手结果。
+     *
+     * @param socket 新创建的Socket
+     * @return 设置后的Socket
+     */
+    private Socket configure(Socket socket) {
+        if(socket instanceof SSLSocket) {
+            SSLSocket ssl = (SSLSocket)socket;
+            String[] p = protocols;
+            if(p != null) {
+                ssl.setEnabledProtocols(p);
+            }
+            String[] c = cipherSuites;
+            if(c != null) {
+                ssl.setEnabledCipherSuites(c);
+            }
+            long created = System.currentTimeMillis();
+            ssl.addHandshakeCompletedListener(event -> handshakeCompleted(event, created));
+        }
+        return socket;
+    }
+    /**
+     * 统计一次握手。
+     * <p> 如果握手得到的会话已经出现过（TLS 1.2），或会话的创建时间早于Socket的创建时间（TLS 1.3会复制原会话的创建时间），则视为会话恢复。
+     *
+     * @param event 握手完成事件
+     * @param created Socket的创建时间（毫秒）
+     */
+    private void handshakeCompleted(HandshakeCompletedEvent event, long created) {
+        SSLSession session = event.getSession();
+        boolean seen = sessions.put(session, Boolean.TRUE) != null;
+        if(seen || session.getCreationTime() < created) {
+            resumedHandshakes.incrementAndGet();
+        }else {
+            fullHandshakes.incrementAndGet();
+        }
+    }
+    @Override
+    public String toString() {
+        return "TLSSocketFactory[handshakes=" + getHandshakeCount() + ", resumed=" + getResumedHandshakeCount()
+                + ", protocols=" + (protocols == null ? "default" : Arrays.toString(protocols)) + "]";
+    }
+}
@@ -0,0 +1,61 @@
+package me.charghet.tools.requests;
+
+/**
+ * 请求的超时设置。
+ * <p> 包含三项时限，单位均为毫秒，值为0时表示不限制：
+ * <p> connectTimeout：建立连接的超时时间。
+ * <p> readTimeout：两次读取之间的超时时间。
+ * <p> deadline：整个请求的总时限，涵盖建立连接、发送请求体、读取完整响应体，以及重定向和重试。
+ * <p> 此类的实例不可变，可在多个线程和多个请求之间共享。
+ *
+ * @author charghet
+ *
+ */
+public class Timeout {
+    /**
+     * 不限制任何时间的超时设置。
+     */
+    public static final Timeout NONE = new Timeout(0, 0, 0);
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final long deadline;
+    /**
+     * 构造一个指定连接超时时间、读取超时时间和总时限的超时设置。
+     *
+     * @param connectTimeout 连接超时时间（毫秒），为0时不限制
+     * @param readTimeout 读取超时时间（毫秒），为0时不限制
+     * @param deadline 总时限（毫秒），为0时不限制
+     */
+    public Timeout(int connectTimeout, int readTimeout, long deadline) {
+        if(connectTimeout < 0 || readTimeout < 0 || deadline < 0) {
+            throw new IllegalArgumentException("connectTimeout:" + connectTimeout + " readTimeout:" + readTimeout + " deadline:" + deadline);
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.deadline = deadline;
+    }
+    /**
+     * 获得连接超时时间。
+     *
+     * @return 连接超时时间（毫秒），为0时表示不限制
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+    /**
+     * 获得读取超时时间。
+     *
+     * @return 读取超时时间（毫秒），为0时表示不限制
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+    /**
+     * 获得总时限。
+     *
+     * @return 总时限（毫秒），为0时表示不限制
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+}
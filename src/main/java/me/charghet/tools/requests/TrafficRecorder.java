@@ -0,0 +1,456 @@
+package me.charghet.tools.requests;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpCookie;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 将Session实际发送的请求和收到的响应追加写入文件的录制器。
+ * <p> 通过 Session.setTrafficRecorder(TrafficRecorder recorder) 启用，每次成功读取完响应后写入一条记录，
+ * 包括请求方法、url、请求头（含cookie）、请求体、状态码、响应头、响应体、收到响应头和读取完毕的耗时。
+ * 重定向时每一跳各写入一条记录；失败的请求不写入。
+ * <p> 文件为紧凑的二进制格式，只追加写入，每条记录前有长度，进程中途退出时只会丢失最后一条不完整的记录；
+ * 再次打开该文件录制时，先截去末尾不完整的记录，再追加写入。
+ * 可以通过 read(File file) 读取，通过 writeHAR(List&lt;RecordedExchange&gt; exchanges, File file) 转换为HAR文件，
+ * 或通过TrafficReplayer回放。
+ * <p> 此类是线程安全的，写入时使用ReentrantLock。写入失败不影响请求，失败次数见 getErrorCount()。
+ *
+ * @author charghet
+ *
+ */
+public class TrafficRecorder implements Closeable {
+    private static final int MAGIC = 0x4A485452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6;
+    /**
+     * 一条记录的最小长度：各字段均为空时的长度。
+     */
+    private static final int MIN_RECORD = 8 + 4 + 4 + 4 + 4 + 2 + 4 + 4 + 8 + 8 + 1;
+    private final DataOutputStream out;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private boolean closed = false;
+    /**
+     * 构造一个追加写入指定文件的录制器，文件不存在时创建。
+     * <p> 文件末尾有不完整的记录（如录制时进程中途退出）时，先截去该记录，之后的记录紧接在最后一条完整的记录后写入。
+     *
+     * @param file 录制文件
+     * @throws IOException 如果无法打开文件，或文件不是录制文件
+     */
+    public TrafficRecorder(File file) throws IOException {
+        boolean empty = !file.exists() || file.length() == 0;
+        if(!empty) {
+            long end = scan(file, null);
+            if(end < file.length()) {
+                try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(end);
+                }
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+        if(empty) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.flush();
+        }
+    }
+    /**
+     * 获得已写入的记录数。
+     *
+     * @return 记录数
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+    /**
+     * 获得写入失败的次数。
+     *
+     * @return 失败次数
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+    /**
+     * 写入一次请求交换。
+     *
+     * @param startMillis 开始时刻（System.currentTimeMillis()）
+     * @param method 请求方法
+     * @param url 目标url地址
+     * @param requestHeaders 请求头
+     * @param body 请求体，为null时没有请求体
+     * @param response 响应
+     * @param firstByteNanos 收到响应头的耗时（纳秒），未知时为-1
+     * @param durationNanos 总耗时（纳秒）
+     * @param redirected 是否是执行重定向时发出的请求
+     */
+    void record(long startMillis, String method, URL url, Map<String, String> requestHeaders, RequestBody body, Response response,
+            long firstByteNanos, long durationNanos, boolean redirected) {
+        try {
+            byte[] requestBody = null;
+            if(body != null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                body.writeTo(buffer);
+                requestBody = buffer.toByteArray();
+            }
+            Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+            for(Map.Entry<String, List<String>> field : response.getHeaderFields().entrySet()) {
+                if(field.getKey() != null) {
+                    responseHeaders.put(field.getKey(), field.getValue());
+                }
+            }
+            write(new RecordedExchange(startMillis, method, url.toString(), requestHeaders, requestBody, response.getStatusCode(),
+                    responseHeaders, response.getBytes(), firstByteNanos, durationNanos, redirected));
+        }catch(IOException | RuntimeException e) {
+            errors.incrementAndGet();
+        }
+    }
+    private void write(RecordedExchange exchange) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + exchange.getResponseBody().length);
+        DataOutputStream record = new DataOutputStream(buffer);
+        record.writeLong(exchange.getStartMillis());
+        writeString(record, exchange.getMethod());
+        writeString(record, exchange.getUrl());
+        record.writeInt(exchange.getRequestHeaders().size());
+        for(Map.Entry<String, String> header : exchange.getRequestHeaders().entrySet()) {
+            writeString(record, header.getKey());
+            writeString(record, header.getValue());
+        }
+        writeBytes(record, exchange.getRequestBody());
+        record.writeShort(exchange.getStatusCode());
+        record.writeInt(exchange.getResponseHeaders().size());
+        for(Map.Entry<String, List<String>> field : exchange.getResponseHeaders().entrySet()) {
+            writeString(record, field.getKey());
+            record.writeInt(field.getValue().size());
+            for(String value : field.getValue()) {
+                writeString(record, value);
+            }
+        }
+        writeBytes(record, exchange.getResponseBody());
+        record.writeLong(exchange.getFirstByteNanos());
+        record.writeLong(exchange.getDurationNanos());
+        record.writeBoolean(exchange.isRedirected());
+        lock.lock();
+        try {
+            if(closed) {
+                throw new IOException("TrafficRecorder已关闭");
+            }
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+            out.flush();
+            recorded.incrementAndGet();
+        }finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * 关闭录制文件，之后的请求不再写入。
+     *
+     * @throws IOException 如果关闭时发生I/O错误
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if(!closed) {
+                closed = true;
+                out.close();
+            }
+        }finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * 读取录制文件中的全部记录，忽略末尾不完整的记录。
+     *
+     * @param file 录制文件
+     * @return 按写入顺序排列的请求交换
+     * @throws IOException 如果读取时发生I/O错误，或文件不是录制文件
+     */
+    public static List<RecordedExchange> read(File file) throws IOException {
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        scan(file, exchanges);
+        return exchanges;
+    }
+    /**
+     * 依次读取录制文件中的记录，直到文件末尾或第一条不完整的记录为止。
+     * <p> 长度为负数、小于最小记录长度或超出文件剩余长度的记录，以及内容无法解析的记录，都视为不完整的记录。
+     *
+     * @param file 录制文件
+     * @param exchanges 保存读取到的请求交换的列表，为null时只检查记录的长度，不解析记录
+     * @return 最后一条完整的记录结束的位置
+     * @throws IOException 如果读取时发生I/O错误，或文件不是录制文件
+     */
+    private static long scan(File file, List<RecordedExchange> exchanges) throws IOException {
+        long length = file.length();
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            checkHeader(in);
+            long position = HEADER_SIZE;
+            while(length - position >= 4) {
+                int size = in.readInt();
+                if(size < MIN_RECORD || size > length - position - 4) {
+                    break;
+                }
+                if(exchanges == null) {
+                    if(in.skipBytes(size) != size) {
+                        break;
+                    }
+                }else {
+                    byte[] data = new byte[size];
+                    try {
+                        in.readFully(data);
+                        exchanges.add(parse(new DataInputStream(new ByteArrayInputStream(data))));
+                    }catch(EOFException e) {
+                        break;
+                    }
+                }
+                position += 4 + size;
+            }
+            return position;
+        }
+    }
+    private static RecordedExchange parse(DataInputStream in) throws IOException {
+        long startMillis = in.readLong();
+        String method = readString(in);
+        String url = readString(in);
+        Map<String, String> requestHeaders = new LinkedHashMap<>();
+        for(int i = in.readInt();i > 0;i--) {
+            requestHeaders.put(readString(in), readString(in));
+        }
+        byte[] requestBody = readBytes(in);
+        int statusCode = in.readShort();
+        Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+        for(int i = in.readInt();i > 0;i--) {
+            String name = readString(in);
+            List<String> values = new ArrayList<>();
+            for(int j = in.readInt();j > 0;j--) {
+                values.add(readString(in));
+            }
+            responseHeaders.put(name, values);
+        }
+        byte[] responseBody = readBytes(in);
+        return new RecordedExchange(startMillis, method, url, requestHeaders, requestBody, statusCode, responseHeaders,
+                responseBody == null ? new byte[0] : responseBody, in.readLong(), in.readLong(), in.readBoolean());
+    }
+    private static void checkHeader(DataInputStream in) throws IOException {
+        if(in.readInt() != MAGIC) {
+            throw new IOException("不是录制文件");
+        }
+        int version = in.readShort();
+        if(version != VERSION) {
+            throw new IOException("不支持的录制文件版本：" + version);
+        }
+    }
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        writeBytes(out, s == null ? null : s.getBytes(StandardCharsets.UTF_8));
+    }
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = readBytes(in);
+        return b == null ? null : new String(b, StandardCharsets.UTF_8);
+    }
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        if(b == null) {
+            out.writeInt(-1);
+        }else {
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0) {
+            return null;
+        }
+        if(length > in.available()) {
+            // 只从一条记录的字节数组中读取，超出记录长度说明记录已损坏
+            throw new EOFException();
+        }
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return b;
+    }
+    /**
+     * 将请求交换写入HAR 1.2格式的文件，可以在浏览器的开发者工具等支持HAR的工具中查看。
+     * <p> 能以UTF-8解码的请求体和响应体保存为文本，否则以Base64编码保存。
+     * 耗时分为等待（收到响应头之前）和接收（读取响应体）两部分。
+     *
+     * @param exchanges 请求交换
+     * @param file 目标文件
+     * @throws IOException 如果写入时发生I/O错误
+     */
+    public static void writeHAR(List<RecordedExchange> exchanges, File file) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        JSONArray entries = new JSONArray();
+        for(RecordedExchange exchange : exchanges) {
+            JSONObject request = new JSONObject(true);
+            request.put("method", exchange.getMethod());
+            request.put("url", exchange.getUrl());
+            request.put("httpVersion", "HTTP/1.1");
+            JSONArray requestCookies = new JSONArray();
+            JSONArray requestHeaders = new JSONArray();
+            for(Map.Entry<String, String> header : exchange.getRequestHeaders().entrySet()) {
+                requestHeaders.add(pair(header.getKey(), header.getValue()));
+                if("Cookie".equalsIgnoreCase(header.getKey())) {
+                    for(String cookie : header.getValue().split(";")) {
+                        int eq = cookie.indexOf('=');
+                        if(eq > 0) {
+                            requestCookies.add(pair(cookie.substring(0, eq).trim(), cookie.substring(eq + 1).trim()));
+                        }
+                    }
+                }
+            }
+            request.put("cookies", requestCookies);
+            request.put("headers", requestHeaders);
+            JSONArray query = new JSONArray();
+            String q = new URL(exchange.getUrl()).getQuery();
+            if(q != null) {
+                for(String param : q.split("&")) {
+                    int eq = param.indexOf('=');
+                    query.add(eq < 0 ? pair(param, "") : pair(param.substring(0, eq), param.substring(eq + 1)));
+                }
+            }
+            request.put("queryString", query);
+            byte[] requestBody = exchange.getRequestBody();
+            if(requestBody != null) {
+                JSONObject postData = new JSONObject(true);
+                String contentType = exchange.getRequestHeaders().get("Content-Type");
+                postData.put("mimeType", contentType != null ? contentType : "application/x-www-form-urlencoded");
+                String text = decode(requestBody);
+                postData.put("text", text != null ? text : Base64.getEncoder().encodeToString(requestBody));
+                request.put("postData", postData);
+            }
+            request.put("headersSize", -1);
+            request.put("bodySize", requestBody == null ? 0 : requestBody.length);
+
+            JSONObject response = new JSONObject(true);
+            response.put("status", exchange.getStatusCode());
+            response.put("statusText", "");
+            response.put("httpVersion", "HTTP/1.1");
+            JSONArray responseCookies = new JSONArray();
+            JSONArray responseHeaders = new JSONArray();
+            for(Map.Entry<String, List<String>> field : exchange.getResponseHeaders().entrySet()) {
+                for(String value : field.getValue()) {
+                    responseHeaders.add(pair(field.getKey(), value));
+                    if("Set-Cookie".equalsIgnoreCase(field.getKey())) {
+                        try {
+                            for(HttpCookie cookie : HttpCookie.parse(value)) {
+                                JSONObject c = pair(cookie.getName(), cookie.getValue());
+                                if(cookie.getPath() != null) {
+                                    c.put("path", cookie.getPath());
+                                }
+                                if(cookie.getDomain() != null) {
+                                    c.put("domain", cookie.getDomain());
+                                }
+                                c.put("httpOnly", cookie.isHttpOnly());
+                                c.put("secure", cookie.getSecure());
+                                responseCookies.add(c);
+                            }
+                        }catch(IllegalArgumentException e) {
+                            // 忽略无法解析的cookie
+                        }
+                    }
+                }
+            }
+            response.put("cookies", responseCookies);
+            response.put("headers", responseHeaders);
+            JSONObject content = new JSONObject(true);
+            byte[] responseBody = exchange.getResponseBody();
+            String contentType = exchange.getResponseHeader("Content-Type");
+            content.put("size", responseBody.length);
+            content.put("mimeType", contentType != null ? contentType : "");
+            String text = decode(responseBody);
+            if(text != null) {
+                content.put("text", text);
+            }else {
+                content.put("text", Base64.getEncoder().encodeToString(responseBody));
+                content.put("encoding", "base64");
+            }
+            response.put("content", content);
+            String location = exchange.getResponseHeader("Location");
+            response.put("redirectURL", location != null ? location : "");
+            response.put("headersSize", -1);
+            response.put("bodySize", responseBody.length);
+
+            double total = exchange.getDurationNanos() / 1e6;
+            double wait = exchange.getFirstByteNanos() >= 0 ? exchange.getFirstByteNanos() / 1e6 : total;
+            JSONObject timings = new JSONObject(true);
+            timings.put("send", 0);
+            timings.put("wait", wait);
+            timings.put("receive", total - wait);
+            JSONObject entry = new JSONObject(true);
+            entry.put("startedDateTime", format.format(new Date(exchange.getStartMillis())));
+            entry.put("time", total);
+            entry.put("request", request);
+            entry.put("response", response);
+            entry.put("cache", new JSONObject());
+            entry.put("timings", timings);
+            entries.add(entry);
+        }
+        JSONObject creator = new JSONObject(true);
+        creator.put("name", "JavaHttpRequests");
+        creator.put("version", "1.0");
+        JSONObject log = new JSONObject(true);
+        log.put("version", "1.2");
+        log.put("creator", creator);
+        log.put("entries", entries);
+        JSONObject har = new JSONObject(true);
+        har.put("log", log);
+        try(OutputStream stream = new FileOutputStream(file);
+                Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
+            JSON.writeJSONString(writer, har);
+        }
+    }
+    private static JSONObject pair(String name, String value) {
+        JSONObject pair = new JSONObject(true);
+        pair.put("name", name);
+        pair.put("value", value);
+        return pair;
+    }
+    /**
+     * 以UTF-8解码字节数组。
+     *
+     * @return 解码后的字符串，如果不是有效的UTF-8文本，则返回null
+     */
+    private static String decode(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(bytes)).toString();
+        }catch(CharacterCodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package me.charghet.tools.requests;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 回放TrafficRecorder录制的请求交换。
+ * <ul>
+ * <li>serve(int port, double speed)：启动本地http服务器，按录制时的耗时返回录制的响应，用于在没有真实服务端时测试客户端的设置。</li>
+ * <li>replay(Session session, String baseURL, double speed)：按录制时的时间间隔通过Session重新发送录制的请求，可以加速，
+ * 得到与LoadGenerator相同的测量结果。</li>
+ * </ul>
+ *
+ * @author charghet
+ *
+ */
+public class TrafficReplayer {
+    private final List<RecordedExchange> exchanges;
+    /**
+     * 构造一个回放录制文件中全部记录的回放器。
+     *
+     * @param file TrafficRecorder录制的文件
+     * @throws IOException 如果读取时发生I/O错误，或文件不是录制文件
+     */
+    public TrafficReplayer(File file) throws IOException {
+        this(TrafficRecorder.read(file));
+    }
+    /**
+     * 构造一个回放指定请求交换的回放器，请求交换按开始时刻排序。
+     *
+     * @param exchanges 请求交换
+     */
+    public TrafficReplayer(List<RecordedExchange> exchanges) {
+        List<RecordedExchange> list = new ArrayList<>(exchanges);
+        list.sort(Comparator.comparingLong(RecordedExchange::getStartMillis));
+        this.exchanges = Collections.unmodifiableList(list);
+    }
+    /**
+     * 获得按开始时刻排序的请求交换。
+     *
+     * @return 请求交换
+     */
+    public List<RecordedExchange> getExchanges() {
+        return exchanges;
+    }
+    /**
+     * 将全部请求交换写入HAR文件。
+     *
+     * @param file 目标文件
+     * @throws IOException 如果写入时发生I/O错误
+     */
+    public void writeHAR(File file) throws IOException {
+        TrafficRecorder.writeHAR(exchanges, file);
+    }
+    /**
+     * 在127.0.0.1的指定端口上启动返回录制的响应的http服务器。
+     * <p> 按请求方法、路径和查询字符串匹配录制的请求，忽略主机名；同一请求有多条记录时按录制顺序轮流返回。
+     * 没有匹配的记录时返回404。
+     * <p> 每个响应延迟录制时收到响应头的耗时除以speed后返回，等待期间不占用处理线程。
+     *
+     * @param port 端口，为0时使用随机端口
+     * @param speed 加速倍数，为1时与录制时的耗时相同，为0时不延迟
+     * @return 已启动的服务器
+     * @throws IOException 如果无法启动服务器
+     */
+    public Server serve(int port, double speed) throws IOException {
+        return new Server(port, speed);
+    }
+    /**
+     * 按录制时的时间间隔通过Session重新发送录制的请求，并等待所有请求完成。
+     * <p> 请求的url地址替换为baseURL中的协议、主机和端口，请求头和cookie使用Session中的设置；
+     * 执行重定向时自动发出的请求不重新发送，由Session自行执行重定向。请求体按录制的字节原样发送。
+     * <p> 与LoadGenerator相同，请求按计划时刻发出，不等待之前的请求完成，延迟从计划时刻算起。
+     *
+     * @param session 发送请求的Session
+     * @param baseURL 替换录制的url地址中协议、主机和端口的地址，如 http://127.0.0.1:8080，为null时不替换
+     * @param speed 加速倍数，为2时以两倍速度发送
+     * @return 测量结果
+     * @throws RequestException 如果url地址格式错误，或等待过程中被中断
+     */
+    public LoadResult replay(Session session, String baseURL, double speed) throws RequestException {
+        if(!(speed > 0)) {
+            throw new IllegalArgumentException("speed:" + speed);
+        }
+        List<Request> requests = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        long first = -1;
+        for(RecordedExchange exchange : exchanges) {
+            if(exchange.isRedirected()) {
+                continue;
+            }
+            if(first < 0) {
+                first = exchange.getStartMillis();
+            }
+            String url = baseURL == null ? exchange.getUrl() : rebase(exchange.getUrl(), baseURL);
+            requests.add(Request.of(exchange.getMethod(), url, exchange.getRequestBody()));
+            offsets.add((long)(TimeUnit.MILLISECONDS.toNanos(exchange.getStartMillis() - first) / speed));
+        }
+        if(requests.isEmpty()) {
+            throw new RequestException("没有可以回放的请求");
+        }
+        long[] schedule = new long[offsets.size()];
+        for(int i = 0;i < schedule.length;i++) {
+            schedule[i] = offsets.get(i);
+        }
+        return new LoadGenerator(session, requests).run(schedule);
+    }
+    private static String rebase(String url, String baseURL) throws RequestException {
+        try {
+            URL u = new URL(url);
+            String base = baseURL.endsWith("/") ? baseURL.substring(0, baseURL.length() - 1) : baseURL;
+            return base + u.getFile();
+        }catch(MalformedURLException e) {
+            throw new RequestException(e.toString(), e);
+        }
+    }
+    private static String key(String method, String file) {
+        return method + " " + file;
+    }
+    /**
+     * 返回录制的响应的本地http服务器。
+     */
+    public class Server implements Closeable {
+        private final HttpServer server;
+        private final ExecutorService executor;
+        private final ScheduledExecutorService scheduler;
+        private final Map<String, List<RecordedExchange>> responses = new HashMap<>();
+        private final Map<String, AtomicInteger> cursors = new HashMap<>();
+        private final AtomicLong served = new AtomicLong();
+        private final AtomicLong missed = new AtomicLong();
+        private final double speed;
+        private Server(int port, double speed) throws IOException {
+            this.speed = speed;
+            for(RecordedExchange exchange : exchanges) {
+                String key = key(exchange.getMethod(), new URL(exchange.getUrl()).getFile());
+                responses.computeIfAbsent(key, k -> new ArrayList<>()).add(exchange);
+                cursors.put(key, new AtomicInteger());
+            }
+            // 响应头和响应体分两次写出，不关闭Nagle算法时每个响应都会多等待客户端的延迟确认；该属性在第一次创建服务器时读取
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+            executor = Executors.newCachedThreadPool(daemon("requests-replay"));
+            scheduler = Executors.newSingleThreadScheduledExecutor(daemon("requests-replay-delay"));
+            server.setExecutor(executor);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+        private void handle(HttpExchange http) throws IOException {
+            try(InputStream in = http.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while(in.read(buffer) != -1) {
+                    // 丢弃请求体
+                }
+            }
+            String query = http.getRequestURI().getRawQuery();
+            String key = key(http.getRequestMethod(), http.getRequestURI().getRawPath() + (query != null ? "?" + query : ""));
+            List<RecordedExchange> list = responses.get(key);
+            if(list == null) {
+                missed.incrementAndGet();
+                byte[] body = ("没有录制的响应：" + key).getBytes(StandardCharsets.UTF_8);
+                http.sendResponseHeaders(404, body.length);
+                try(OutputStream out = http.getResponseBody()) {
+                    out.write(body);
+                }
+                return;
+            }
+            RecordedExchange exchange = list.get(Math.floorMod(cursors.get(key).getAndIncrement(), list.size()));
+            long latency = exchange.getFirstByteNanos() >= 0 ? exchange.getFirstByteNanos() : exchange.getDurationNanos();
+            long delay = speed > 0 ? (long)(latency / speed) : 0;
+            if(delay <= 0) {
+                respond(http, exchange);
+            }else {
+                // 计时线程只负责计时，写出响应交给处理线程，避免一个慢的客户端拖慢其他延迟响应
+                scheduler.schedule(() -> executor.execute(() -> {
+                    try {
+                        respond(http, exchange);
+                    }catch(IOException e) {
+                        http.close();
+                    }
+                }), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        private void respond(HttpExchange http, RecordedExchange exchange) throws IOException {
+            Headers headers = http.getResponseHeaders();
+            for(Map.Entry<String, List<String>> field : exchange.getResponseHeaders().entrySet()) {
+                String name = field.getKey();
+                if(!"Content-Length".equalsIgnoreCase(name) && !"Transfer-Encoding".equalsIgnoreCase(name)
+                        && !"Connection".equalsIgnoreCase(name) && !"Keep-Alive".equalsIgnoreCase(name) && !"Date".equalsIgnoreCase(name)) {
+                    headers.put(name, new ArrayList<>(field.getValue()));
+                }
+            }
+            served.incrementAndGet();
+            byte[] body = exchange.getResponseBody();
+            boolean empty = "HEAD".equals(http.getRequestMethod()) || exchange.getStatusCode() == 204 || exchange.getStatusCode() == 304;
+            http.sendResponseHeaders(exchange.getStatusCode(), empty || body.length == 0 ? -1 : body.length);
+            try(OutputStream out = http.getResponseBody()) {
+                if(!empty) {
+                    out.write(body);
+                }
+            }
+        }
+        /**
+         * 获得服务器监听的端口。
+         *
+         * @return 端口
+         */
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+        /**
+         * 获得服务器的根地址，可以作为 replay 的baseURL。
+         *
+         * @return 如 http://127.0.0.1:端口
+         */
+        public String getBaseURL() {
+            return "http://127.0.0.1:" + getPort();
+        }
+        /**
+         * 获得已返回录制的响应的请求数。
+         *
+         * @return 请求数
+         */
+        public long getServedCount() {
+            return served.get();
+        }
+        /**
+         * 获得没有匹配的记录、返回404的请求数。
+         *
+         * @return 请求数
+         */
+        public long getMissedCount() {
+            return missed.get();
+        }
+        /**
+         * 停止服务器。
+         */
+        @Override
+        public void close() {
+            server.stop(0);
+            scheduler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
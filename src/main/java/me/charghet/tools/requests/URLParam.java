@@ -5,16 +5,18 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 用于保存url参数的类。
  * <p> 此类通过成员变量 LinkedHashMap&lt;String, LinkedHashSet&lt;String&gt;&gt; param 来保存url参数的键值对。
  * <p> 其中，String用于保存参数名，LinkedHashSet&lt;String&gt;用于保存同一个参数名的所有参数值。
- * <p> 对于url参数的所有操作都是同步的。
+ * <p> 对于url参数的所有操作都是同步的，使用ReentrantLock实现，在虚拟线程中不会固定载体线程。
  * @author charghet
  */
 public class URLParam {
     private Map<String, Set<String>> param;
+    private final ReentrantLock lock = new ReentrantLock();
     /**
      * 构造一个空的URLParam实例。
      */
@@ -35,9 +37,14 @@ public class URLParam {
      * @param key 参数名
      * @param value 参数值
      */
-    public synchronized void add(String key, String value) {
-        Set<String> set = param.computeIfAbsent(key, k -> new LinkedHashSet<>());
-        set.add(value);
+    public void add(String key, String value) {
+        lock.lock();
+        try {
+            Set<String> set = param.computeIfAbsent(key, k -> new LinkedHashSet<>());
+            set.add(value);
+        }finally {
+            lock.unlock();
+        }
     }
     /**
      * 根据参数名删除一条url参数。
@@ -46,9 +53,14 @@ public class URLParam {
      * @param key 参数名
      * @return 如果不存在与参数名相同的url参数，返回false，否则返回true
      */
-    public synchronized boolean remove(String key) {
-        Set<String> set = param.remove(key);
-        return set != null;
+    public boolean remove(String key) {
+        lock.lock();
+        try {
+            Set<String> set = param.remove(key);
+            return set != null;
+        }finally {
+            lock.unlock();
+        }
     }
     /**
      * 根据参数名和参数值删除一条url参数。
@@ -58,19 +70,24 @@ public class URLParam {
      * @param value 参数值
      * @return 如果不存在与参数名和参数值相同的url参数，返回false，否则返回true
      */
-    public synchronized boolean remove(String key, String value) {
-        Set<String> set = param.get(key);
-        if(set != null) {
-            boolean result = set.remove(value);
-            if(!result) {
-                return false;
-            }
-            if(set.size() == 0) {
-                param.remove(key);
+    public boolean remove(String key, String value) {
+        lock.lock();
+        try {
+            Set<String> set = param.get(key);
+            if(set != null) {
+                boolean result = set.remove(value);
+                if(!result) {
+                    return false;
+                }
+                if(set.size() == 0) {
+                    param.remove(key);
+                }
+                return true;
             }
-            return true;
+            return false;
+        }finally {
+            lock.unlock();
         }
-        return false;
     }
     /**
      * 获得指定参数名的Set视图。
@@ -78,8 +95,13 @@ public class URLParam {
      * @param key 参数名
      * @return 指定参数名的Set视图
      */
-    public synchronized Set<String> getSet(String key) {
-        return param.get(key);
+    public Set<String> getSet(String key) {
+        lock.lock();
+        try {
+            return param.get(key);
+        }finally {
+            lock.unlock();
+        }
     }
     /**
      * 获得指定参数名的参数值，如果存在多条同名url参数，则只返回匹配的第一条url参数的值。
@@ -87,70 +109,90 @@ public class URLParam {
      * @param key 参数名
      * @return 匹配的第一条url参数的值，如果未包含与参数名同名的url参数，则返回null
      */
-    public synchronized String get(String key) {
-        Set<String> set = param.get(key);
-        if(set != null && set.size() != 0) {
-            return (String)set.toArray()[0];
+    public String get(String key) {
+        lock.lock();
+        try {
+            Set<String> set = param.get(key);
+            if(set != null && set.size() != 0) {
+                return (String)set.toArray()[0];
+            }
+            return null;
+        }finally {
+            lock.unlock();
         }
-        return null;
     }
     /**
      * 获得经过urlencode编码后的url参数的字符串。
      * 
      * @return url参数字符串 如果并未包含任何url参数，则返回空字符串
      */
-    public synchronized String getEncodeString() {
-        StringBuilder result = new StringBuilder();
-        Set<String> keySet = param.keySet();
-        for(String key : keySet) {
-            Set<String> valueSet = param.get(key);
-            for(String value : valueSet) {
-                try {
-                    String s = URLEncoder.encode(key,"utf-8")+"="+URLEncoder.encode(value,"utf-8")+"&";
-                    result.append(s);
-                }catch(Exception e) {
-                    e.printStackTrace();
+    public String getEncodeString() {
+        lock.lock();
+        try {
+            StringBuilder result = new StringBuilder();
+            Set<String> keySet = param.keySet();
+            for(String key : keySet) {
+                Set<String> valueSet = param.get(key);
+                for(String value : valueSet) {
+                    try {
+                        String s = URLEncoder.encode(key,"utf-8")+"="+URLEncoder.encode(value,"utf-8")+"&";
+                        result.append(s);
+                    }catch(Exception e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+            if(result.length() > 0) {
+                return result.substring(0,result.length()-1);
+            }
+            return "";
+        }finally {
+            lock.unlock();
         }
-        if(result.length() > 0) {
-            return result.substring(0,result.length()-1);
-        }
-        return "";
     }
     /**
      * 获得url参数的字符串。
      * 
      * @return url参数字符串 如果并未包含任何url参数，则返回空字符串
      */
-    public synchronized String getString() {
-        StringBuilder result = new StringBuilder();
-        Set<String> keySet = param.keySet();
-        for(String key : keySet) {
-            Set<String> valueSet = param.get(key);
-            for(String value : valueSet) {
-                String s = key+"="+value+"&";
-                result.append(s);
+    public String getString() {
+        lock.lock();
+        try {
+            StringBuilder result = new StringBuilder();
+            Set<String> keySet = param.keySet();
+            for(String key : keySet) {
+                Set<String> valueSet = param.get(key);
+                for(String value : valueSet) {
+                    String s = key+"="+value+"&";
+                    result.append(s);
+                }
             }
+            if(result.length() > 0) {
+                return result.substring(0,result.length()-1);
+            }
+            return "";
+        }finally {
+            lock.unlock();
         }
-        if(result.length() > 0) {
-            return result.substring(0,result.length()-1);
-        }
-        return "";
     }
     /**
      * 向控制台输出url参数。
      * <p> 此方法用于调试。
      * 
      */
-    public synchronized void print() {
-        System.out.println("Param:");
-        Set<String> keySet = param.keySet();
-        for(String key : keySet) {
-            Set<String> valueSet = param.get(key);
-            for(String value : valueSet) {
-                System.out.println(key+": "+value);
+    public void print() {
+        lock.lock();
+        try {
+            System.out.println("Param:");
+            Set<String> keySet = param.keySet();
+            for(String key : keySet) {
+                Set<String> valueSet = param.get(key);
+                for(String value : valueSet) {
+                    System.out.println(key+": "+value);
+                }
             }
+        }finally {
+            lock.unlock();
         }
     }
 }
@@ -14,8 +14,43 @@ import java.nio.charset.StandardCharsets;
  *
  */
 public class URLUtil {
+    private static volatile int connectTimeout = 0;
+    private static volatile int readTimeout = 0;
+    /**
+     * 设置URLUtil发送请求时建立连接的超时时间。默认为0，即不限制。
+     * 
+     * @param millis 连接超时时间（毫秒），为0时不限制
+     */
+    public static void setConnectTimeout(int millis) {
+        connectTimeout = millis;
+    }
+    /**
+     * 获得URLUtil发送请求时建立连接的超时时间。
+     * 
+     * @return 连接超时时间（毫秒），为0时表示不限制
+     */
+    public static int getConnectTimeout() {
+        return connectTimeout;
+    }
+    /**
+     * 设置URLUtil发送请求时两次读取之间的超时时间。默认为0，即不限制。
+     * 
+     * @param millis 读取超时时间（毫秒），为0时不限制
+     */
+    public static void setReadTimeout(int millis) {
+        readTimeout = millis;
+    }
+    /**
+     * 获得URLUtil发送请求时两次读取之间的超时时间。
+     * 
+     * @return 读取超时时间（毫秒），为0时表示不限制
+     */
+    public static int getReadTimeout() {
+        return readTimeout;
+    }
     /**
      * 将url地址进行urlencode编码，请勿在url地址中附加参数。
+     * <p> 只编码路径部分，主机名和端口号保持不变。
      * 
      * @param url 目标url地址
      * @return 编码后的url地址
@@ -23,12 +58,17 @@ public class URLUtil {
      */
     public static String encodeURL(String url) throws FormatException {
         try {
-            String end = url.substring(url.indexOf(":")+3);
-            String[] words = end.split("/");
+            int start = url.indexOf(":")+3;
+            int slash = url.indexOf("/", start);
+            if(slash == -1) {
+                return url;
+            }
+            StringBuilder sb = new StringBuilder(url.substring(0, slash));
+            String[] words = url.substring(slash + 1).split("/", -1);
             for(String word : words) {
-                url = url.replaceFirst(word,URLEncoder.encode(word,"utf-8"));
+                sb.append('/').append(URLEncoder.encode(word,"utf-8"));
             }
-            return url;
+            return sb.toString();
         }catch(Exception e) {
             throw new FormatException("url格式错误！");
         }
@@ -78,15 +118,24 @@ public class URLUtil {
         URL myurl;
         HttpURLConnection connection;
         Response response;
+        RequestListener listener = FlightRecorderEvents.with(null);
+        RequestEvent event = null;
             try {
                 myurl = new URL(url);
+                if(listener != null) {
+                    event = new RequestEvent("GET", myurl);
+                    listener.requestStart(event);
+                }
                 connection = (HttpURLConnection)myurl.openConnection();
+                connection.setConnectTimeout(connectTimeout);
+                connection.setReadTimeout(readTimeout);
                 connection.setRequestMethod("GET");
                 connection.connect();
                 response = new Response(connection);
             }catch(Exception e) {
-                throw new RequestException(e.toString(),e.getCause());
+                throw failed(listener, event, new RequestException(e.toString(),e.getCause()));
             }
+            completed(listener, event, response);
         return response;
         
     }
@@ -122,9 +171,17 @@ public class URLUtil {
         HttpURLConnection connection;
         Response response;
         url = URLUtil.encodeURL(url);
+        RequestListener listener = FlightRecorderEvents.with(null);
+        RequestEvent event = null;
         try {
             myurl = new URL(url);
+            if(listener != null) {
+                event = new RequestEvent("POST", myurl);
+                listener.requestStart(event);
+            }
             connection = (HttpURLConnection)myurl.openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
             connection.setDoOutput(true);
             connection.setRequestMethod("POST");
             connection.connect();
@@ -132,12 +189,44 @@ public class URLUtil {
             bw.write(param);
             bw.flush();
             bw.close();
+            if(event != null) {
+                event.sent(param.getBytes(StandardCharsets.UTF_8).length);
+            }
             response = new Response(connection);
         }catch(Exception e) {
-            throw new RequestException(e.toString(),e.getCause());
+            throw failed(listener, event, new RequestException(e.toString(),e.getCause()));
         }
+        completed(listener, event, response);
         return response;
     }
+    /**
+     * 向JFR报告请求完成。
+     * 
+     * @param listener 监听器，不录制时为null
+     * @param event 请求事件
+     * @param response 响应
+     */
+    private static void completed(RequestListener listener, RequestEvent event, Response response) {
+        if(event != null) {
+            event.end(response.getStatusCode(), response.getLength());
+            listener.bodyComplete(event);
+        }
+    }
+    /**
+     * 向JFR报告请求失败。
+     * 
+     * @param listener 监听器，不录制时为null
+     * @param event 请求事件，尚未开始时为null
+     * @param e 发生的错误
+     * @return 发生的错误
+     */
+    private static RequestException failed(RequestListener listener, RequestEvent event, RequestException e) {
+        if(event != null) {
+            event.end(0);
+            listener.failed(event, e);
+        }
+        return e;
+    }
     /**
      * 发送post请求。
      * <p> 该方法能够自动将url字符串和url参数进行urlencode编码，请勿将urlencode编码后的参数传入。
@@ -0,0 +1,61 @@
+package me.charghet.tools.requests;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建执行阻塞请求的线程池。
+ * <p> 在支持虚拟线程的JDK（21及以上）上，每个任务使用一个新的虚拟线程，阻塞的get和post请求不会占用平台线程；
+ * 在不支持虚拟线程的JDK上，使用由守护线程组成的缓存线程池。
+ * <p> 可以通过 Session.setExecutor(ExecutorService executor) 设置 Session.fanOut(List&lt;Request&gt; requests) 使用的线程池。
+ *
+ * @author charghet
+ *
+ */
+public final class VirtualThreads {
+    private static final Method NEW_EXECUTOR = findNewExecutor();
+    private VirtualThreads() {
+    }
+    private static Method findNewExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ((ExecutorService)method.invoke(null)).shutdown();
+            return method;
+        }catch(NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // JDK不支持虚拟线程，或未启用预览功能
+            return null;
+        }
+    }
+    /**
+     * 判断当前JDK是否支持虚拟线程。
+     *
+     * @return 如果支持虚拟线程，返回true，否则返回false
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+    /**
+     * 创建一个线程池，支持虚拟线程时每个任务使用一个新的虚拟线程，否则使用缓存线程池。
+     *
+     * @param name 不支持虚拟线程时，线程名称的前缀
+     * @return 线程池
+     */
+    public static ExecutorService newExecutor(String name) {
+        if(NEW_EXECUTOR != null) {
+            try {
+                return (ExecutorService)NEW_EXECUTOR.invoke(null);
+            }catch(IllegalAccessException | InvocationTargetException e) {
+                // 使用缓存线程池
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}